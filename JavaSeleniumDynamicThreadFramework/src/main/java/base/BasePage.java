@@ -1,53 +1,101 @@
 package base;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.openqa.selenium.By;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.Keys;
+import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
 
+import core.StepTimer;
+
 /**
  * BasePage is a utility class that encapsulates common WebDriver operations to interact with web pages.
- * This class provides synchronized methods to perform actions like navigating to a URL, clicking elements,
+ * This class provides methods to perform actions like navigating to a URL, clicking elements,
  * sending keystrokes, and more, which are common to all pages.
+ * A page object is confined to the thread that owns its WebDriver, so its methods take no locks
+ * and a long wait on one thread never holds up another. Every action is timed into a "page.*" StepTimer histogram.
  */
 public class BasePage {
-    private WebDriver driver;
+    // Script returning the text of every cell under the element matching arguments[0], row by row
+    private static final String TABLE_TEXT_SCRIPT =
+            "var table = document.querySelector(arguments[0]);"
+            + "if (!table) { return null; }"
+            + "var trs = table.querySelectorAll('tr'), rows = [];"
+            + "for (var r = 0; r < trs.length; r++) {"
+            + "  var cells = trs[r].querySelectorAll('td');"
+            + "  var texts = [];"
+            + "  for (var c = 0; c < cells.length; c++) { texts.push(cells[c].innerText.trim()); }"
+            + "  rows.push(texts);"
+            + "}"
+            + "return rows;";
+
+    // Wait of the driver this thread last created a page for, shared by all pages of that driver
+    private static final ThreadLocal<DriverWait> lastWait = new ThreadLocal<>();
+
+    private final WebDriver driver;
+    // Wait shared by all actions on this page, instead of a new one per call
+    private final WebDriverWait wait;
 
     /**
      * Constructor to initialize the BasePage with a WebDriver instance.
+     * Pages created on the same thread for the same driver share one wait.
      * @param driver the WebDriver instance to interact with the web browser
      */
     public BasePage(WebDriver driver) {
         this.driver = driver;
+        DriverWait last = lastWait.get();
+        if (last == null || last.driver != driver) {
+            last = new DriverWait(driver, new WebDriverWait(driver, 50));
+            lastWait.set(last);
+        }
+        this.wait = last.wait;
     }
 
     /**
      * Navigates to the specified URL.
      * @param url the web address to navigate to
      */
-    public synchronized void navigateToUrl(String url) {
-        driver.get(url);
+    public void navigateToUrl(String url) {
+        long start = StepTimer.start();
+        try {
+            driver.get(url);
+        } finally {
+            StepTimer.record("page.navigate", start);
+        }
     }
 
     /**
      * Clicks on the element located by the specified locator.
      * @param locator the By locator of the element to click
      */
-    public synchronized void click(By locator) {
-        WebElement element = waitForElementToBeClickable(locator);
-        element.click();
+    public void click(By locator) {
+        long start = StepTimer.start();
+        try {
+            WebElement element = waitForElementToBeClickable(locator);
+            element.click();
+        } finally {
+            StepTimer.record("page.click", start);
+        }
     }
     
     /**
      * Simulates pressing the Enter key on the element located by the specified locator.
      * @param locator the By locator of the element to receive the key press
      */
-    public synchronized void pressEnter(By locator) {
-        WebElement element = waitForElementToBeVisible(locator);
-        element.sendKeys(Keys.ENTER);
+    public void pressEnter(By locator) {
+        long start = StepTimer.start();
+        try {
+            WebElement element = waitForElementToBeVisible(locator);
+            element.sendKeys(Keys.ENTER);
+        } finally {
+            StepTimer.record("page.pressEnter", start);
+        }
     }
 
     /**
@@ -55,10 +103,15 @@ public class BasePage {
      * @param locator the By locator of the element to send keys to
      * @param text the text to send to the element
      */
-    public synchronized void sendKeys(By locator, String text) {
-        WebElement element = waitForElementToBeVisible(locator);
-        element.clear();
-        element.sendKeys(text);
+    public void sendKeys(By locator, String text) {
+        long start = StepTimer.start();
+        try {
+            WebElement element = waitForElementToBeVisible(locator);
+            element.clear();
+            element.sendKeys(text);
+        } finally {
+            StepTimer.record("page.sendKeys", start);
+        }
     }
 
     /**
@@ -66,19 +119,29 @@ public class BasePage {
      * @param locator the By locator of the element to retrieve the text from
      * @return the visible text of the element
      */
-    public synchronized String getText(By locator) {
-        WebElement element = waitForElementToBeVisible(locator);
-        return element.getText();
+    public String getText(By locator) {
+        long start = StepTimer.start();
+        try {
+            WebElement element = waitForElementToBeVisible(locator);
+            return element.getText();
+        } finally {
+            StepTimer.record("page.getText", start);
+        }
     }
 
     /**
      * Scrolls the web page until the element located by the specified locator is in view.
      * @param locator the By locator of the element to scroll into view
      */
-    public synchronized void scrollIntoView(By locator) {
-        WebElement element = driver.findElement(locator);
-        JavascriptExecutor js = (JavascriptExecutor) driver;
-        js.executeScript("arguments[0].scrollIntoView(true);", element);
+    public void scrollIntoView(By locator) {
+        long start = StepTimer.start();
+        try {
+            WebElement element = driver.findElement(locator);
+            JavascriptExecutor js = (JavascriptExecutor) driver;
+            js.executeScript("arguments[0].scrollIntoView(true);", element);
+        } finally {
+            StepTimer.record("page.scrollIntoView", start);
+        }
     }
 
     /**
@@ -86,9 +149,13 @@ public class BasePage {
      * @param locator the By locator of the element to wait for
      * @return the WebElement after it is visible
      */
-    public synchronized WebElement waitForElementToBeVisible(By locator) {
-        WebDriverWait wait = new WebDriverWait(driver, 50);
-        return wait.until(ExpectedConditions.visibilityOfElementLocated(locator));
+    public WebElement waitForElementToBeVisible(By locator) {
+        long start = StepTimer.start();
+        try {
+            return wait.until(ExpectedConditions.visibilityOfElementLocated(locator));
+        } finally {
+            StepTimer.record("page.waitVisible", start);
+        }
     }
 
     /**
@@ -96,9 +163,55 @@ public class BasePage {
      * @param locator the By locator of the element to wait for
      * @return the WebElement after it is clickable
      */
-    public synchronized WebElement waitForElementToBeClickable(By locator) {
-        WebDriverWait wait = new WebDriverWait(driver, 50);
-        return wait.until(ExpectedConditions.elementToBeClickable(locator));
+    public WebElement waitForElementToBeClickable(By locator) {
+        long start = StepTimer.start();
+        try {
+            return wait.until(ExpectedConditions.elementToBeClickable(locator));
+        } finally {
+            StepTimer.record("page.waitClickable", start);
+        }
+    }
+
+    /**
+     * Reads the text of every cell of a table in a single round trip to the browser,
+     * instead of one findElements and one getText call per row and cell.
+     *
+     * @param cssSelector the CSS selector of the table, or of an element containing its rows
+     * @return the text of the td cells of each row, in document order
+     * @throws NoSuchElementException if no element matches the selector
+     */
+    @SuppressWarnings("unchecked")
+    public List<List<String>> readTableText(String cssSelector) {
+        long start = StepTimer.start();
+        try {
+            Object result = ((JavascriptExecutor) driver).executeScript(TABLE_TEXT_SCRIPT, cssSelector);
+            if (!(result instanceof List)) {
+                throw new NoSuchElementException("No table matches " + cssSelector);
+            }
+            List<List<String>> rows = new ArrayList<>();
+            for (Object row : (List<Object>) result) {
+                List<String> cells = new ArrayList<>();
+                for (Object cell : (List<Object>) row) {
+                    cells.add(String.valueOf(cell));
+                }
+                rows.add(cells);
+            }
+            return rows;
+        } finally {
+            StepTimer.record("page.readTable", start);
+        }
     }
 
+    /**
+     * A driver and the wait created for it.
+     */
+    private static final class DriverWait {
+        final WebDriver driver;
+        final WebDriverWait wait;
+
+        DriverWait(WebDriver driver, WebDriverWait wait) {
+            this.driver = driver;
+            this.wait = wait;
+        }
+    }
 }
@@ -0,0 +1,137 @@
+package base;
+
+import java.util.Objects;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.openqa.selenium.support.ui.WebDriverWait;
+
+import core.StepTimer;
+
+/**
+ * PageWaits provides condition-based waits that replace fixed Thread.sleep calls.
+ * Each wait polls the browser at a short interval and returns as soon as the page has settled:
+ * the DOM has stopped changing, no new network requests are being made, a set of elements has stopped growing,
+ * or a custom JavaScript predicate holds. Every wait is timed into a "wait.*" StepTimer histogram.
+ */
+public class PageWaits {
+
+    // Interval between two polls of the browser
+    private static final long POLL_MILLIS = 100;
+    // Number of elements in a loaded document, or -1 while it is still loading
+    private static final String DOM_SIZE_SCRIPT =
+            "return document.readyState === 'complete' ? document.getElementsByTagName('*').length : -1;";
+    // Number of resources fetched by a loaded document, or -1 while it is still loading
+    private static final String RESOURCE_COUNT_SCRIPT =
+            "return document.readyState === 'complete' ? window.performance.getEntriesByType('resource').length : -1;";
+
+    private final WebDriver driver;
+    private final WebDriverWait wait;
+
+    /**
+     * Creates the waits for a WebDriver.
+     *
+     * @param driver The WebDriver whose page is waited on.
+     * @param timeoutSeconds The maximum time any single wait may take.
+     */
+    public PageWaits(WebDriver driver, long timeoutSeconds) {
+        this.driver = driver;
+        this.wait = new WebDriverWait(driver, timeoutSeconds, POLL_MILLIS);
+    }
+
+    /**
+     * Waits until the document has loaded and its element count has not changed for the quiet period.
+     *
+     * @param quietMillis The time in milliseconds the DOM must stay unchanged.
+     */
+    public void forDomStable(long quietMillis) {
+        long start = StepTimer.start();
+        try {
+            wait.until(unchangedFor(quietMillis, d -> script(DOM_SIZE_SCRIPT)));
+        } finally {
+            StepTimer.record("wait.domStable", start);
+        }
+    }
+
+    /**
+     * Waits until the document has loaded and no new resource has been fetched for the quiet period.
+     *
+     * @param quietMillis The time in milliseconds without new network requests.
+     */
+    public void forNetworkIdle(long quietMillis) {
+        long start = StepTimer.start();
+        try {
+            wait.until(unchangedFor(quietMillis, d -> script(RESOURCE_COUNT_SCRIPT)));
+        } finally {
+            StepTimer.record("wait.networkIdle", start);
+        }
+    }
+
+    /**
+     * Waits until at least one element matches the locator and the number of matches has not changed
+     * for the quiet period, e.g. until a results table has finished rendering its rows.
+     *
+     * @param locator The By locator of the elements to count.
+     * @param quietMillis The time in milliseconds the count must stay unchanged.
+     * @return The settled number of matching elements.
+     */
+    public int forElementCountSettled(By locator, long quietMillis) {
+        long start = StepTimer.start();
+        try {
+            return wait.until(unchangedFor(quietMillis, d -> {
+                int count = d.findElements(locator).size();
+                return count == 0 ? null : count;
+            }));
+        } finally {
+            StepTimer.record("wait.countSettled", start);
+        }
+    }
+
+    /**
+     * Waits until a JavaScript predicate returns a truthy value.
+     *
+     * @param predicate The script body, which must return the predicate's value, e.g. "return !!window.appReady;".
+     * @param args Arguments available to the script as arguments[0], arguments[1], ...
+     */
+    public void forJs(String predicate, Object... args) {
+        long start = StepTimer.start();
+        try {
+            wait.until((ExpectedCondition<Boolean>) d -> {
+                Object result = ((JavascriptExecutor) d).executeScript(predicate, args);
+                return result != null && !Boolean.FALSE.equals(result) && !"".equals(result) && !Long.valueOf(0).equals(result);
+            });
+        } finally {
+            StepTimer.record("wait.js", start);
+        }
+    }
+
+    private Object script(String script) {
+        Object value = ((JavascriptExecutor) driver).executeScript(script);
+        return Long.valueOf(-1).equals(value) ? null : value;
+    }
+
+    /**
+     * Builds a condition that is met once the probed value is non-null and has stayed equal for the quiet period.
+     * The condition is stateful, so a new one is built for every wait.
+     */
+    private static <T> ExpectedCondition<T> unchangedFor(long quietMillis, ExpectedCondition<T> probe) {
+        return new ExpectedCondition<T>() {
+            private T last;
+            private long unchangedSince;
+
+            @Override
+            public T apply(WebDriver d) {
+                T value = probe.apply(d);
+                long now = System.currentTimeMillis();
+                if (value == null || !Objects.equals(value, last)) {
+                    last = value;
+                    unchangedSince = now;
+                    return null;
+                }
+                return now - unchangedSince >= quietMillis ? value : null;
+            }
+        };
+    }
+}
@@ -0,0 +1,37 @@
+package base;
+
+import java.io.IOException;
+
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.Response;
+
+import core.StepTimer;
+
+/**
+ * TimedCommandExecutor wraps the executor a RemoteWebDriver sends its commands through and times every
+ * round trip to the grid into a "webdriver.&lt;command&gt;" StepTimer histogram, e.g. "webdriver.findElement".
+ */
+public class TimedCommandExecutor implements CommandExecutor {
+
+    private final CommandExecutor delegate;
+
+    /**
+     * Wraps a command executor.
+     *
+     * @param delegate The executor that sends the commands, usually an HttpCommandExecutor for the hub.
+     */
+    public TimedCommandExecutor(CommandExecutor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Response execute(Command command) throws IOException {
+        long start = StepTimer.start();
+        try {
+            return delegate.execute(command);
+        } finally {
+            StepTimer.record("webdriver." + command.getName(), start);
+        }
+    }
+}
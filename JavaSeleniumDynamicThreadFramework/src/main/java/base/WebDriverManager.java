@@ -6,37 +6,89 @@ import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.remote.CapabilityType;
 import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.HttpCommandExecutor;
 import org.openqa.selenium.remote.RemoteWebDriver;
 
 /**
  * WebDriverManager is a utility class that encapsulates the management of WebDriver instances.
- * It uses ThreadLocal to ensure that each thread has its own WebDriver instance.
+ * It uses ThreadLocal to ensure that each thread has its own WebDriver instance,
+ * borrowed from a shared WebDriverPool so grid sessions are reused across test methods.
  */
 public class WebDriverManager {
-    private static ThreadLocal<WebDriver> driver = new ThreadLocal<>();
+    // Selenium Grid hub address, overridable with -Dgrid.hub.url
+    public static final String HUB_URL = System.getProperty("grid.hub.url", "http://192.168.1.2:4444");
+    // Pool of reusable grid sessions, sized with -Dwebdriver.pool.size, -Dwebdriver.pool.maxReuses and -Dwebdriver.pool.maxIdleMillis
+    private static volatile WebDriverPool pool = new WebDriverPool(WebDriverManager::createDriver,
+            Integer.getInteger("webdriver.pool.size", 64),
+            Integer.getInteger("webdriver.pool.maxReuses", 20),
+            Long.getLong("webdriver.pool.maxIdleMillis", 60000));
+    // Idle sessions kept ready while a run is going on, overridable with -Dwebdriver.pool.reserve
+    private static final int RESERVE = Integer.getInteger("webdriver.pool.reserve", 2);
+    private static final ThreadLocal<WebDriver> driver = new ThreadLocal<>();
 
     /**
-     * Gets the WebDriver for the current thread, creating it if necessary.
+     * Gets the WebDriver for the current thread, borrowing it from the pool if necessary.
+     * The lookup is thread-confined and takes no class-level lock, so threads never wait on each other here.
+     *
+     * @return WebDriver the WebDriver instance for the current thread
+     */
+    public static WebDriver getDriver() {
+        if (driver.get() == null) {
+            try {
+                driver.set(pool.borrow());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                e.printStackTrace();
+            }
+        }
+        return driver.get();
+    }
+
+    /**
+     * Opens sessions ahead of demand, in parallel, and keeps a small reserve of idle sessions topped up
+     * for the rest of the run, so tests do not wait for a session to start. The reserve is part of the grid's
+     * slots, so it is only kept while fewer tests run than the grid has slots.
+     *
+     * @param sessions The number of sessions to open up front.
+     * @param gridSlots The number of sessions the grid can run at once.
+     */
+    public static void prewarm(int sessions, int gridSlots) {
+        pool.setGridCapacity(gridSlots);
+        pool.prewarm(sessions);
+        pool.setReserve(RESERVE);
+    }
+
+    /**
+     * Opens a new grid session.
      * It attempts to create a RemoteWebDriver using desired capabilities.
      * If MalformedURLException occurs, it will print the stack trace and continue
      * to set the system property for webdriver.chrome.driver and instantiate a ChromeDriver.
-     * 
-     * @return WebDriver the WebDriver instance for the current thread
+     *
+     * @return WebDriver the new WebDriver session
      */
-    public synchronized static WebDriver getDriver() {
+    private static WebDriver createDriver() {
         String homeDir = System.getProperty("user.dir");
-        if (driver.get() == null) {
-        	DesiredCapabilities caps = new DesiredCapabilities();
-    		caps.setCapability(CapabilityType.BROWSER_NAME, "chrome");
-    		try {
-				driver.set(new RemoteWebDriver(new URL("http://192.168.1.2:4444"), caps));
-			} catch (MalformedURLException e) {
-				e.printStackTrace();
-			}
-       	   System.setProperty("webdriver.chrome.driver", homeDir+"\\src\\main\\resources\\webdriver\\chromedriver\\chromedriver.exe");
-           //driver.set(new ChromeDriver());
+        DesiredCapabilities caps = new DesiredCapabilities();
+        caps.setCapability(CapabilityType.BROWSER_NAME, "chrome");
+        try {
+            // Every command to the grid is timed into the step histograms
+            return new RemoteWebDriver(new TimedCommandExecutor(new HttpCommandExecutor(new URL(HUB_URL))), caps);
+        } catch (MalformedURLException e) {
+            e.printStackTrace();
+        }
+        System.setProperty("webdriver.chrome.driver", homeDir+"\\src\\main\\resources\\webdriver\\chromedriver\\chromedriver.exe");
+        return new ChromeDriver();
+    }
+
+    /**
+     * Returns the WebDriver for the current thread to the pool and removes the instance from the thread local storage.
+     * Tests call this instead of quitting the driver so the session can serve the next test.
+     */
+    public static void releaseDriver() {
+        if (driver.get() != null) {
+            pool.returnDriver(driver.get());
+            driver.remove();
         }
-        return driver.get();
     }
 
     /**
@@ -44,8 +96,36 @@ public class WebDriverManager {
      */
     public static void quitDriver() {
         if (driver.get() != null) {
-            driver.get().quit();
+            pool.invalidate(driver.get());
             driver.remove();
         }
     }
+
+    /**
+     * Retrieves the session pool backing this manager.
+     *
+     * @return The shared WebDriverPool.
+     */
+    public static WebDriverPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Replaces the session pool, e.g. with a pool of stub drivers in tests and benchmarks, and closes the previous one.
+     * Must be called before any thread borrows a driver.
+     *
+     * @param replacement The pool to borrow drivers from from now on.
+     */
+    public static void usePool(WebDriverPool replacement) {
+        WebDriverPool previous = pool;
+        pool = replacement;
+        previous.close();
+    }
+
+    /**
+     * Closes the session pool, quitting all idle sessions. Called once at the end of a run.
+     */
+    public static void shutdown() {
+        pool.close();
+    }
 }
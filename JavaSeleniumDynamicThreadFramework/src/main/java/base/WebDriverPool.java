@@ -0,0 +1,483 @@
+package base;
+
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * WebDriverPool keeps a bounded set of WebDriver sessions that are reused across test methods.
+ * A session is health-checked when it is borrowed, reset (cookies, storage, about:blank) when it is returned,
+ * retired after a maximum number of uses, and evicted after it has been idle for too long.
+ * Sessions can be opened ahead of demand, in parallel on background threads, and a small reserve of idle
+ * sessions is kept topped up so tests take a ready session instead of waiting for a new one to start.
+ * Every session the pool holds, borrowed, idle or being opened, counts against its session limit, which is set
+ * to the grid's slots for a run, so the reserve never takes a slot a test needs.
+ * A borrower waits only for an opening nobody else is waiting for, and fails with that opening's error.
+ * A finished opening moves from the unclaimed openings to the idle sessions in one step under the handoff lock,
+ * which borrowers and the reserve also hold while they look at both, so a session is never seen in neither.
+ */
+public class WebDriverPool {
+
+    /**
+     * Opens new WebDriver sessions for the pool.
+     */
+    public interface SessionFactory {
+
+        /**
+         * @return A new WebDriver session.
+         */
+        WebDriver create();
+    }
+
+    // Time a borrower waits for a session to be returned while every slot is taken by sessions being quit
+    private static final long SLOT_WAIT_MILLIS = 100;
+
+    private final SessionFactory factory;
+    private final int maxSessions;
+    private final int maxReuses;
+    private final long maxIdleMillis;
+    // Permits for borrowing, one per session the pool may hand out at the same time
+    private final Semaphore permits;
+    // Idle sessions, most recently returned first so rarely needed sessions age out at the tail
+    private final BlockingDeque<PooledSession> idle = new LinkedBlockingDeque<>();
+    // Sessions currently borrowed, keyed by their driver
+    private final Map<WebDriver, PooledSession> borrowed = new ConcurrentHashMap<>();
+    // Total sessions opened by the pool
+    private final AtomicLong created = new AtomicLong();
+    // Sessions currently being opened in the background
+    private final AtomicInteger opening = new AtomicInteger();
+    // Background openings no borrower is waiting for yet, oldest first
+    private final Deque<Opening> unclaimed = new ConcurrentLinkedDeque<>();
+    // Guards moving a session between the unclaimed openings and the idle sessions, and decisions based on both
+    private final Object handoff = new Object();
+    // Sessions held by the pool: borrowed, idle or being opened
+    private final AtomicInteger sessions = new AtomicInteger();
+    // Largest number of sessions held at once
+    private volatile int sessionLimit;
+    // Number of idle sessions kept ready in the background
+    private volatile int reserve;
+    // Threads opening sessions ahead of demand, so several sessions start in parallel
+    private final ExecutorService opener = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "webdriver-pool-opener");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Periodic eviction of sessions idle for longer than maxIdleMillis
+    private final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "webdriver-pool-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool.
+     *
+     * @param factory The factory used to open new sessions.
+     * @param maxSessions The maximum number of sessions borrowed at the same time.
+     * @param maxReuses The number of tests a session serves before it is quit.
+     * @param maxIdleMillis The time in milliseconds after which an idle session is quit.
+     */
+    public WebDriverPool(SessionFactory factory, int maxSessions, int maxReuses, long maxIdleMillis) {
+        this.factory = factory;
+        this.maxSessions = maxSessions;
+        this.maxReuses = maxReuses;
+        this.maxIdleMillis = maxIdleMillis;
+        this.permits = new Semaphore(maxSessions, true);
+        this.sessionLimit = maxSessions;
+        long evictionInterval = Math.max(1, maxIdleMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens sessions in parallel in the background and adds them to the idle sessions.
+     * The pool never holds more than its maximum number of sessions, so surplus requests are ignored.
+     *
+     * @param count The number of sessions to open.
+     */
+    public void prewarm(int count) {
+        for (int i = 0; i < count; i++) {
+            openInBackground();
+        }
+    }
+
+    /**
+     * Limits the sessions the pool holds, borrowed, idle or being opened, to the slots of the grid,
+     * so sessions kept in reserve never hold a slot on top of the ones the running tests use.
+     *
+     * @param slots The number of sessions the grid can run at once.
+     */
+    public void setGridCapacity(int slots) {
+        this.sessionLimit = Math.max(1, Math.min(maxSessions, slots));
+    }
+
+    /**
+     * Sets the number of idle sessions the pool keeps ready, and starts opening the missing ones.
+     *
+     * @param reserve The number of idle sessions to keep ready.
+     */
+    public void setReserve(int reserve) {
+        this.reserve = reserve;
+        topUpReserve();
+    }
+
+    /**
+     * Borrows a healthy session, reusing an idle one if possible. Otherwise it takes over a session being opened
+     * in the background that no other borrower is waiting for, or opens a new one itself.
+     * Waits while the maximum number of sessions is borrowed.
+     *
+     * @return A WebDriver session that must be given back with {@link #returnDriver(WebDriver)}.
+     * @throws InterruptedException If the thread is interrupted while waiting for a session.
+     * @throws RuntimeException If the session opened for this borrower could not be opened.
+     */
+    public WebDriver borrow() throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("WebDriverPool is closed");
+        }
+        permits.acquire();
+        try {
+            PooledSession session = takeSession();
+            session.uses++;
+            borrowed.put(session.driver, session);
+            topUpReserve();
+            return session.driver;
+        } catch (InterruptedException | RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes a healthy idle session, else an unclaimed background opening, else opens a session if the limit allows.
+     */
+    private PooledSession takeSession() throws InterruptedException {
+        while (true) {
+            PooledSession session;
+            Opening opening = null;
+            boolean reserved = false;
+            synchronized (handoff) {
+                session = idle.pollFirst();
+                if (session == null) {
+                    opening = unclaimed.pollFirst();
+                    if (opening == null) {
+                        reserved = reserveSession();
+                    }
+                }
+            }
+            if (session != null) {
+                if (isHealthy(session.driver)) {
+                    return session;
+                }
+                discard(session.driver);
+                continue;
+            }
+            if (opening != null) {
+                return opening.await();
+            }
+            if (reserved) {
+                try {
+                    session = new PooledSession(factory.create());
+                } catch (RuntimeException | Error e) {
+                    sessions.decrementAndGet();
+                    throw e;
+                }
+                created.incrementAndGet();
+                return session;
+            }
+            // Every slot is held by a session being quit or returned; wait for one to come free
+            session = idle.pollFirst(SLOT_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            if (session != null) {
+                if (isHealthy(session.driver)) {
+                    return session;
+                }
+                discard(session.driver);
+            }
+        }
+    }
+
+    /**
+     * Counts a session about to be opened against the session limit.
+     *
+     * @return false if the pool already holds as many sessions as it may.
+     */
+    private boolean reserveSession() {
+        while (true) {
+            int held = sessions.get();
+            if (held >= sessionLimit) {
+                return false;
+            }
+            if (sessions.compareAndSet(held, held + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Starts opening idle sessions until the reserve is reached.
+     */
+    private void topUpReserve() {
+        synchronized (handoff) {
+            int missing = reserve - idle.size() - unclaimed.size();
+            for (int i = 0; i < missing; i++) {
+                openInBackground();
+            }
+        }
+    }
+
+    /**
+     * Opens one session on a background thread, for the borrower that claims it first or else for the idle sessions,
+     * unless the pool is closed or already holds as many sessions as it may.
+     */
+    private void openInBackground() {
+        Opening pending = new Opening();
+        synchronized (handoff) {
+            if (closed || !reserveSession()) {
+                return;
+            }
+            opening.incrementAndGet();
+            unclaimed.offerLast(pending);
+        }
+        opener.execute(() -> {
+            boolean opened = false;
+            try {
+                PooledSession session = new PooledSession(factory.create());
+                created.incrementAndGet();
+                opened = true;
+                session.idleSince = System.currentTimeMillis();
+                boolean claimed;
+                synchronized (handoff) {
+                    claimed = !unclaimed.remove(pending);
+                    if (!claimed && !closed) {
+                        idle.offerLast(session);
+                        return;
+                    }
+                }
+                // Hand the session to the borrower waiting for it, or keep it idle if it stopped waiting
+                if (claimed && pending.future.complete(session)) {
+                    return;
+                }
+                if (closed) {
+                    discard(session.driver);
+                } else {
+                    idle.offerFirst(session);
+                }
+            } catch (RuntimeException | Error e) {
+                sessions.decrementAndGet();
+                if (unclaimed.remove(pending) || !pending.future.completeExceptionally(e)) {
+                    e.printStackTrace();
+                }
+            } finally {
+                opening.decrementAndGet();
+                // A session borrowed before this opening was counted finished may have left the reserve short
+                if (opened) {
+                    topUpReserve();
+                }
+            }
+        });
+    }
+
+    /**
+     * Gives a borrowed session back. The session is reset for the next test, or quit if
+     * it has reached its maximum number of uses, cannot be reset, or the pool is closed.
+     *
+     * @param driver The borrowed WebDriver.
+     */
+    public void returnDriver(WebDriver driver) {
+        PooledSession session = borrowed.remove(driver);
+        if (session == null) {
+            return;
+        }
+        try {
+            if (!closed && session.uses < maxReuses && reset(driver)) {
+                session.idleSince = System.currentTimeMillis();
+                idle.offerFirst(session);
+            } else {
+                discard(driver);
+                topUpReserve();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Quits a borrowed session instead of returning it, e.g. after the browser has crashed.
+     *
+     * @param driver The borrowed WebDriver.
+     */
+    public void invalidate(WebDriver driver) {
+        if (borrowed.remove(driver) != null) {
+            discard(driver);
+            permits.release();
+        }
+    }
+
+    /**
+     * Quits idle sessions that have not been used for longer than the maximum idle time,
+     * keeping the reserve of idle sessions.
+     */
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - maxIdleMillis;
+        Iterator<PooledSession> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && idle.size() > reserve) {
+            PooledSession session = oldestFirst.next();
+            if (session.idleSince <= cutoff && idle.remove(session)) {
+                discard(session.driver);
+            }
+        }
+    }
+
+    /**
+     * Closes the pool and quits all idle sessions. Borrowed sessions are quit when they are returned.
+     */
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        opener.shutdown();
+        PooledSession session;
+        while ((session = idle.pollFirst()) != null) {
+            discard(session.driver);
+        }
+    }
+
+    /**
+     * Checks that a session still responds with a single cheap command.
+     */
+    private static boolean isHealthy(WebDriver driver) {
+        try {
+            driver.getWindowHandle();
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Clears cookies and web storage and navigates to about:blank so the next test starts clean.
+     * Storage is cleared before leaving the page, as about:blank has no storage of its own.
+     */
+    private static boolean reset(WebDriver driver) {
+        try {
+            driver.manage().deleteAllCookies();
+            if (driver instanceof JavascriptExecutor) {
+                ((JavascriptExecutor) driver).executeScript(
+                        "try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}");
+            }
+            driver.get("about:blank");
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Quits a session of the pool and frees its place under the session limit.
+     */
+    private void discard(WebDriver driver) {
+        try {
+            driver.quit();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            sessions.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return The number of sessions currently borrowed.
+     */
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    /**
+     * @return The number of idle sessions ready to be borrowed.
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return The number of sessions currently being opened in the background.
+     */
+    public int getOpeningCount() {
+        return opening.get();
+    }
+
+    /**
+     * @return The number of sessions the pool holds: borrowed, idle or being opened.
+     */
+    public int getSessionCount() {
+        return sessions.get();
+    }
+
+    /**
+     * @return The total number of sessions opened by the pool.
+     */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * A session being opened in the background, completed for the borrower that claimed it.
+     */
+    private class Opening {
+        final CompletableFuture<PooledSession> future = new CompletableFuture<>();
+
+        /**
+         * Waits for the session, failing with the error it could not be opened with.
+         */
+        PooledSession await() throws InterruptedException {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            } catch (InterruptedException e) {
+                // The opener keeps the session idle once it sees nobody waits for it; if it has already
+                // handed the session over, keep it idle here
+                if (!future.cancel(false) && !future.isCompletedExceptionally()) {
+                    PooledSession session = future.join();
+                    session.idleSince = System.currentTimeMillis();
+                    idle.offerFirst(session);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * A session together with its reuse bookkeeping.
+     */
+    private static class PooledSession {
+        final WebDriver driver;
+        int uses;
+        volatile long idleSince;
+
+        PooledSession(WebDriver driver) {
+            this.driver = driver;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AdaptiveConcurrencyLimiter admits tasks with an additive-increase / multiplicative-decrease (AIMD) limit.
+ * While per-test latency and host load stay healthy the limit grows by one per limit's worth of completed
+ * tasks; when a test runs markedly slower than its own history or the host is overloaded the limit is halved.
+ * After a decrease the limit is not cut again before the cooldown has passed, and never for a test that started
+ * before it, so one congestion episode is not answered with several halvings before the first can take effect.
+ * Waiting tasks are woken by a signal when a task completes, the limit grows or the host load drops.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Source of the host load signal.
+     */
+    public interface LoadSignal {
+
+        /**
+         * @return true if the host is too loaded to admit more tasks.
+         */
+        boolean isOverloaded();
+    }
+
+    // Factor the limit is multiplied by on congestion
+    private static final double DECREASE_FACTOR = 0.5;
+    // A test is considered slowed down when it takes this many times its usual latency
+    private static final double LATENCY_TOLERANCE = 2.0;
+    // Weight of the newest latency in the per-test baseline
+    private static final double LATENCY_ALPHA = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final LoadSignal load;
+    // Minimum time between two decreases, e.g. one load sample window
+    private final long decreaseCooldownNanos;
+    // Usual latency of each test in milliseconds
+    private final ConcurrentMap<String, Double> latencyBaselines = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Signalled whenever a waiting task may have become admissible
+    private final Condition capacityFreed = lock.newCondition();
+    // Current concurrency limit, fractional so additive increase can spread over many completions;
+    // written under the lock, volatile so it can be read without it
+    private volatile double limit;
+    // Tasks admitted and not yet released; written under the lock, volatile so it can be read without it
+    private volatile int inFlight;
+    // System.nanoTime() of the last decrease; written under the lock
+    private long lastDecreaseNanos;
+    // Whether the limit has been decreased yet; written under the lock
+    private boolean decreased;
+
+    /**
+     * Creates a limiter.
+     *
+     * @param initialLimit The limit to start with.
+     * @param minLimit The limit is never cut below this value.
+     * @param maxLimit The limit never grows above this value.
+     * @param load The host load signal.
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, LoadSignal load) {
+        this(initialLimit, minLimit, maxLimit, load, 0);
+    }
+
+    /**
+     * Creates a limiter that waits at least the given cooldown between two decreases.
+     *
+     * @param initialLimit The limit to start with.
+     * @param minLimit The limit is never cut below this value.
+     * @param maxLimit The limit never grows above this value.
+     * @param load The host load signal.
+     * @param decreaseCooldownMillis The minimum time in milliseconds between two decreases, e.g. the load sample interval.
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, LoadSignal load, long decreaseCooldownMillis) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.load = load;
+        this.decreaseCooldownNanos = TimeUnit.MILLISECONDS.toNanos(decreaseCooldownMillis);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Waits until a task may start. A task is admitted while fewer than limit tasks are in flight and the
+     * host is not overloaded; when nothing is in flight one task is always admitted so the run keeps progressing.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight > 0 && (inFlight >= (int) limit || load.isOverloaded())) {
+                capacityFreed.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks an admitted task as finished and wakes a waiting task.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            capacityFreed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Feeds the latency of a completed test into the limit. The limit is halved if the test ran markedly
+     * slower than usual or the host is overloaded, and otherwise grows additively while it is the constraint.
+     * Called while the test's own permit is still held.
+     *
+     * @param testKey The identifier of the test, latencies are only compared with the same test's history.
+     * @param latencyMillis The execution time of the test in milliseconds.
+     */
+    public void onLatency(String testKey, long latencyMillis) {
+        // The baseline before this latency, read in the same atomic step that updates it
+        Double[] previous = new Double[1];
+        latencyBaselines.compute(testKey, (key, current) -> {
+            previous[0] = current;
+            return current == null ? latencyMillis : LATENCY_ALPHA * latencyMillis + (1 - LATENCY_ALPHA) * current;
+        });
+        Double baseline = previous[0];
+        boolean slowedDown = baseline != null && latencyMillis > baseline * LATENCY_TOLERANCE;
+        if (slowedDown || load.isOverloaded()) {
+            decrease(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+        } else {
+            increase();
+        }
+    }
+
+    /**
+     * Reacts to a new host load sample: halves the limit while the host is overloaded,
+     * otherwise wakes waiting tasks that were held back by the load.
+     */
+    public void onLoadChanged() {
+        if (load.isOverloaded()) {
+            decrease(System.nanoTime());
+        } else {
+            lock.lock();
+            try {
+                capacityFreed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Grows the limit by 1/limit, i.e. by one per limit's worth of completions, as long as the limit
+     * is what holds tasks back. Otherwise the limit would drift up while another constraint is binding.
+     */
+    private void increase() {
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit && limit < maxLimit) {
+                int before = (int) limit;
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+                if ((int) limit > before) {
+                    capacityFreed.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Multiplies the limit by the decrease factor, never going below the minimum. Does nothing within the cooldown
+     * of the last decrease, or if the congestion was seen by a task started before it, under the previous limit.
+     *
+     * @param observedSinceNanos The System.nanoTime() since which the congestion signal was observed.
+     */
+    private void decrease(long observedSinceNanos) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (decreased && (now - lastDecreaseNanos < decreaseCooldownNanos || observedSinceNanos - lastDecreaseNanos < 0)) {
+                return;
+            }
+            double cut = Math.max(minLimit, limit * DECREASE_FACTOR);
+            if (cut < limit) {
+                limit = cut;
+                lastDecreaseNanos = now;
+                decreased = true;
+                System.out.println("Congestion detected, concurrency limit reduced to " + (int) limit);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the limit without taking the lock, so monitoring never delays admissions.
+     *
+     * @return The current concurrency limit.
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Reads the count without taking the lock, so monitoring never delays admissions.
+     *
+     * @return The number of tasks admitted and not yet released.
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,97 @@
+package core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * DurationHistory remembers how long each test method took in earlier runs, in a local properties file
+ * keyed by "TestCase.method". A new duration is blended with the remembered one, so a single slow
+ * or fast run does not reorder the next run on its own.
+ * Recording is thread-safe and does not touch the file; the history is written once by {@link #save()}.
+ */
+public class DurationHistory {
+
+    // Weight of the newest duration in the remembered one
+    private static final double ALPHA = 0.5;
+
+    private final Path file;
+    // Remembered duration in milliseconds by "TestCase.method"
+    private final ConcurrentMap<String, Long> durations = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the history from a file, or starts an empty one if the file does not exist yet.
+     *
+     * @param file The properties file the history is kept in.
+     * @throws IOException If the file exists but cannot be read.
+     */
+    public DurationHistory(Path file) throws IOException {
+        this.file = file;
+        if (Files.exists(file)) {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            for (String key : properties.stringPropertyNames()) {
+                try {
+                    durations.put(key, Long.parseLong(properties.getProperty(key).trim()));
+                } catch (NumberFormatException e) {
+                    // An edited or damaged entry is forgotten rather than failing the run
+                }
+            }
+        }
+    }
+
+    /**
+     * @param testCase The name of the test case.
+     * @param methodName The name of the test method.
+     * @return The key the duration of the method is remembered by.
+     */
+    public static String key(String testCase, String methodName) {
+        return testCase + "." + methodName;
+    }
+
+    /**
+     * @param key The key of a test method.
+     * @return The remembered duration in milliseconds, or null if the method has not run before.
+     */
+    public Long getMillis(String key) {
+        return durations.get(key);
+    }
+
+    /**
+     * Blends the duration of a run into the remembered one.
+     *
+     * @param key The key of the test method.
+     * @param millis The duration of this run in milliseconds.
+     */
+    public void record(String key, long millis) {
+        durations.merge(key, millis, (remembered, latest) -> Math.round(ALPHA * latest + (1 - ALPHA) * remembered));
+    }
+
+    /**
+     * Writes the history to its file, replacing the previous one in a single move.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public void save() throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Long> entry : durations.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().toString());
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, "durations", ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, "Duration in milliseconds of each test method, used to run the longest ones first");
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
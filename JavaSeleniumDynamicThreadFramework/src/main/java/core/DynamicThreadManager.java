@@ -1,64 +1,98 @@
 package core;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.CompletableFuture;
+
+import base.WebDriverManager;
 
 /**
- * Manages the execution of tasks in a thread pool with a limited number of permits to control the concurrency.
- * It ensures that no more than a specified number of tasks run concurrently.
+ * Manages the execution of tasks with a concurrency limit that follows the capacity of the Selenium Grid.
+ * It ensures that no more tasks run concurrently than the grid has slots, queuing the rest,
+ * and admits them adaptively based on host load and test latency.
+ * With -Dscheduler.threads=virtual each task runs on a virtual thread instead, bounded only by the grid slots:
+ * a blocked test then costs no OS thread, so host load no longer limits how many can wait on the grid.
  */
 public class DynamicThreadManager {
 
-    // Semaphore limiting the number of concurrent tasks to 5
-    private static final Semaphore semaphore = new Semaphore(5);
-    // Cached thread pool for task execution
-    private static  ExecutorService executor = Executors.newCachedThreadPool();
+    // Kind of threads the tests run on, set with -Dscheduler.threads
+    private static final WorkerThreads.Mode threadMode = WorkerThreads.configuredMode();
+    // Whether tasks run on virtual threads and skip the adaptive limiter
+    private static final boolean virtualThreads = threadMode == WorkerThreads.Mode.VIRTUAL && WorkerThreads.isVirtualAvailable();
+
+    // Limiter adapting concurrency to host load and per-test latency, never exceeding the grid slots;
+    // it waits one load sample between two decreases so each cut can take effect before the next
+    private static final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+            Runtime.getRuntime().availableProcessors(), 1, 256,
+            () -> SystemInfoUtil.getSmoothedCpuLoad() >= 80 || SystemInfoUtil.getMemoryUtilization() >= 95,
+            SystemInfoUtil.getSampleIntervalMillis());
+
+    // Scheduler limiting concurrent tasks to the grid slots this process can use, 5 until the hub has answered;
+    // on platform threads it admits each task through the limiter before the task takes a slot or a thread.
+    // It starts with the first task, so loading this class never contacts the hub
+    private static final GridCapacityScheduler scheduler = new GridCapacityScheduler(WebDriverManager.HUB_URL, 5, 5000,
+            WorkerThreads.newExecutor(threadMode), virtualThreads ? null : limiter);
+
+    static {
+        // Sessions held by the WebDriver pool, idle ones included, are this process' own slots
+        scheduler.setOwnSessions(() -> WebDriverManager.getPool().getSessionCount());
+        SystemInfoUtil.addSampleListener(limiter::onLoadChanged);
+    }
 
     /**
      * Submits a task for execution in a controlled concurrency environment.
-     * Before running the task, it checks system CPU and memory load to make decisions on task execution.
-     * If the system load is too high, it waits and retries execution.
+     * The task first waits for admission by the adaptive limiter, which accounts for the host's CPU and memory load
+     * and the latency of recent tests, then for a free grid slot; only then is a worker thread taken.
+     * On virtual threads the adaptive limiter is skipped: neither host load nor test latency holds the task back,
+     * it starts as soon as a grid slot is free, and the grid slots are the only bound on concurrency.
      * 
      * @param testCaseName The name of the test case, used for informational purposes.
      * @param methodName The name of the method to be executed in the task.
      * @param task The task to be executed, encapsulated in a Runnable object.
+     * @return A future completed once the task has run, exceptionally if the task could not be run.
+     */
+    public static CompletableFuture<Void> submitTask(String testCaseName, String methodName, Runnable task) {
+        return scheduler.submit(task);
+    }
+
+    /**
+     * Records the execution time of a completed test so the limiter can adapt concurrency.
+     * Must be called from within the submitted task.
+     *
+     * @param methodName The name of the executed test method.
+     * @param executionTimeMillis The execution time of the test in milliseconds.
+     */
+    public static void recordLatency(String methodName, long executionTimeMillis) {
+        limiter.onLatency(methodName, executionTimeMillis);
+    }
+
+    /**
+     * @return true if tasks run on virtual threads.
      */
-    public static void submitTask(String testCaseName, String methodName, Runnable task) {
-        executor.submit(() -> {
-            try {
-                semaphore.acquire();  // Acquire a permit
-                
-                boolean taskExecuted = false;
-                while (!taskExecuted) {
-                    // Check CPU and Memory load before running the task
-                    double cpuLoad = SystemInfoUtil.getSystemCpuLoad();
-                    double memoryUtilization = SystemInfoUtil.getMemoryUtilization();
-                    System.out.println("cpuLoad:  " + cpuLoad);
-                    System.out.println("memoryUtilization:  " + memoryUtilization);
+    public static boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
 
-                    if (cpuLoad < 80 && memoryUtilization < 95) {
-                        task.run();
-                        taskExecuted = true;
-                    } else if (cpuLoad >= 80 || memoryUtilization >= 95) {
-                        Thread.sleep(5000);
-                        System.out.println("high cpu and memoryUtilization, waiting for 5 seconds");
-                    }
-                }
+    /**
+     * Retrieves the limiter that adapts concurrency to host load and test latency.
+     *
+     * @return The AdaptiveConcurrencyLimiter used by this manager.
+     */
+    public static AdaptiveConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
 
-            } catch (InterruptedException e) {
-                // Handle the exception
-                e.printStackTrace();
-            } finally {
-                semaphore.release();  // Release the permit
-            }
-        });
+    /**
+     * Retrieves the scheduler that sizes concurrency from the grid.
+     *
+     * @return The GridCapacityScheduler used by this manager.
+     */
+    public static GridCapacityScheduler getScheduler() {
+        return scheduler;
     }
-    
+
     /**
-     * Shuts down the ExecutorService, stopping all actively executing tasks and halting the processing of waiting tasks.
+     * Shuts down the scheduler, stopping the hub poller and halting the processing of waiting tasks.
      */
     public static void shutdown() {
-        executor.shutdown();  // Shutdown the executor
+        scheduler.shutdown();  // Shutdown the scheduler
     }
 }
@@ -0,0 +1,488 @@
+package core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * FileWorkQueue shares the test methods of a run between several runner processes through a directory,
+ * which may be local or on a shared file system. Every state change is an atomic rename, so processes
+ * need no lock and no server:
+ * <pre>
+ * pending/00000042.task          queued by the coordinator, in plan order
+ * claimed/&lt;worker&gt;/00000042.task  taken by a worker ahead of time, up to its prefetch
+ * running/&lt;worker&gt;/00000042.task  being executed
+ * done/00000042.result           outcome, read by the coordinator into one report
+ * workers/&lt;worker&gt;               heartbeat, touched every second
+ * </pre>
+ * A worker runs its own claims in order, refills them from pending, and once pending is empty steals
+ * from the end of another worker's claims. Claims and running methods of a worker whose heartbeat has
+ * stopped are put back to pending by the coordinator.
+ */
+public class FileWorkQueue {
+
+    private static final String TASK = ".task";
+    private static final String RESULT = ".result";
+    // Marker written once every method of the run is pending
+    private static final String ENQUEUED = "enqueued";
+
+    private final Path pending;
+    private final Path claimed;
+    private final Path running;
+    private final Path done;
+    private final Path workers;
+    private final Path enqueued;
+    // Results already returned by pollResults; only used by the coordinator
+    private final Set<String> collected = new HashSet<>();
+
+    /**
+     * Opens a queue directory, creating its layout if needed.
+     *
+     * @param dir The queue directory shared by the coordinator and the workers.
+     * @throws IOException If the directories cannot be created.
+     */
+    public FileWorkQueue(Path dir) throws IOException {
+        this.pending = Files.createDirectories(dir.resolve("pending"));
+        this.claimed = Files.createDirectories(dir.resolve("claimed"));
+        this.running = Files.createDirectories(dir.resolve("running"));
+        this.done = Files.createDirectories(dir.resolve("done"));
+        this.workers = Files.createDirectories(dir.resolve("workers"));
+        this.enqueued = dir.resolve(ENQUEUED);
+    }
+
+    /**
+     * Empties the queue, then queues the methods of a new run in the given order. Called by the coordinator.
+     * Workers start taking methods once all of them are queued.
+     *
+     * @param items The methods to run, in the order they should be started.
+     * @throws IOException If the queue cannot be written.
+     */
+    public void enqueue(List<WorkItem> items) throws IOException {
+        Files.deleteIfExists(enqueued);
+        for (Path dir : new Path[] { pending, claimed, running, done, workers }) {
+            deleteContents(dir);
+        }
+        collected.clear();
+        for (WorkItem item : items) {
+            Properties task = new Properties();
+            task.setProperty("testCase", item.testCase);
+            task.setProperty("methodName", item.methodName);
+            write(pending.resolve(name(item.sequence) + TASK), task);
+        }
+        Files.createFile(enqueued);
+    }
+
+    /**
+     * Takes the next method for a worker and marks it running: the first of its own claims, else the first
+     * pending ones, claiming up to prefetch of them, else the last claim of the worker with the most claims.
+     *
+     * @param workerId The id of the worker, unique among the processes sharing the queue.
+     * @param prefetch The number of pending methods to claim at once.
+     * @return The method to run, or null if there is none to take right now.
+     * @throws IOException If the queue cannot be read.
+     */
+    public Claim next(String workerId, int prefetch) throws IOException {
+        if (!Files.exists(enqueued)) {
+            return null;
+        }
+        Path own = Files.createDirectories(claimed.resolve(workerId));
+        Path ownRunning = Files.createDirectories(running.resolve(workerId));
+        while (true) {
+            List<Path> backlog = list(own, TASK);
+            boolean stolen = false;
+            if (backlog.isEmpty() && claimPending(own, prefetch) == 0) {
+                if (!steal(own)) {
+                    return null;
+                }
+                stolen = true;
+            }
+            backlog = list(own, TASK);
+            for (Path task : backlog) {
+                Path target = ownRunning.resolve(task.getFileName());
+                // Another worker may steal the claim at the same moment
+                if (move(task, target)) {
+                    return new Claim(read(target), workerId, target, stolen);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves up to prefetch pending methods, first in order, into a worker's claims.
+     *
+     * @return The number of methods claimed.
+     */
+    private int claimPending(Path own, int prefetch) throws IOException {
+        int count = 0;
+        for (Path task : list(pending, TASK)) {
+            if (count >= prefetch) {
+                break;
+            }
+            if (move(task, own.resolve(task.getFileName()))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Moves the last claim of the worker with the most claims into a worker's own claims.
+     *
+     * @return true if a claim was stolen.
+     */
+    private boolean steal(Path own) throws IOException {
+        List<Path> victim = Collections.emptyList();
+        for (Path other : list(claimed, null)) {
+            if (!other.equals(own)) {
+                List<Path> tasks = list(other, TASK);
+                if (tasks.size() > victim.size()) {
+                    victim = tasks;
+                }
+            }
+        }
+        for (int i = victim.size() - 1; i >= 0; i--) {
+            if (move(victim.get(i), own.resolve(victim.get(i).getFileName()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records the outcome of a running method and releases it. Called by the worker that runs it.
+     *
+     * @param claim The method, as returned by {@link #next(String, int)}.
+     * @param outcome The outcome of the method.
+     * @throws IOException If the result cannot be written.
+     */
+    public void complete(Claim claim, Outcome outcome) throws IOException {
+        Properties result = new Properties();
+        result.setProperty("testCase", claim.item.testCase);
+        result.setProperty("methodName", claim.item.methodName);
+        result.setProperty("passed", Boolean.toString(outcome.passed));
+        result.setProperty("millis", Long.toString(outcome.millis));
+        result.setProperty("attempts", Integer.toString(outcome.attempts));
+        if (outcome.screenshotPath != null) {
+            result.setProperty("screenshotPath", outcome.screenshotPath);
+        }
+        result.setProperty("workerId", claim.workerId);
+        result.setProperty("stolen", Boolean.toString(claim.stolen));
+        write(done.resolve(name(claim.item.sequence) + RESULT), result);
+        Files.deleteIfExists(claim.path);
+    }
+
+    /**
+     * Returns the results that arrived since the last call. Called by the coordinator.
+     *
+     * @return The new results in sequence order.
+     * @throws IOException If a result cannot be read.
+     */
+    public List<Result> pollResults() throws IOException {
+        List<Result> results = new ArrayList<>();
+        for (Path file : list(done, RESULT)) {
+            String name = file.getFileName().toString();
+            if (collected.add(name)) {
+                Properties result = load(file);
+                WorkItem item = new WorkItem(sequence(file), result.getProperty("testCase"), result.getProperty("methodName"));
+                results.add(new Result(item, new Outcome(Boolean.parseBoolean(result.getProperty("passed")),
+                        Long.parseLong(result.getProperty("millis")), result.getProperty("screenshotPath"),
+                        Integer.parseInt(result.getProperty("attempts", "1"))),
+                        result.getProperty("workerId"), Boolean.parseBoolean(result.getProperty("stolen"))));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Marks a worker as alive.
+     *
+     * @param workerId The id of the worker.
+     * @throws IOException If the heartbeat cannot be written.
+     */
+    public void heartbeat(String workerId) throws IOException {
+        Path beat = workers.resolve(workerId);
+        try {
+            Files.createFile(beat);
+        } catch (FileAlreadyExistsException e) {
+            Files.setLastModifiedTime(beat, FileTime.fromMillis(System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Puts the claims and running methods of every worker whose heartbeat is older than the timeout
+     * back to pending, where the remaining workers take them. Called by the coordinator.
+     *
+     * @param timeoutMillis The time after which a silent worker is considered gone.
+     * @return The number of methods put back.
+     * @throws IOException If the queue cannot be changed.
+     */
+    public int requeueStaleWorkers(long timeoutMillis) throws IOException {
+        long now = System.currentTimeMillis();
+        Set<String> owners = new HashSet<>();
+        for (Path dir : list(claimed, null)) {
+            owners.add(dir.getFileName().toString());
+        }
+        for (Path dir : list(running, null)) {
+            owners.add(dir.getFileName().toString());
+        }
+        int requeued = 0;
+        for (String workerId : owners) {
+            Path beat = workers.resolve(workerId);
+            long lastBeat;
+            try {
+                lastBeat = Files.getLastModifiedTime(beat).toMillis();
+            } catch (NoSuchFileException e) {
+                lastBeat = 0;
+            }
+            if (now - lastBeat < timeoutMillis) {
+                continue;
+            }
+            for (Path dir : new Path[] { claimed.resolve(workerId), running.resolve(workerId) }) {
+                for (Path task : list(dir, TASK)) {
+                    if (move(task, pending.resolve(task.getFileName()))) {
+                        requeued++;
+                    }
+                }
+            }
+        }
+        return requeued;
+    }
+
+    /**
+     * @return true once every method is queued and none is left to take or running anywhere, so idle workers can stop.
+     *         While another worker still runs a method, idle workers keep waiting, in case that worker stops and its
+     *         method is queued again.
+     * @throws IOException If the queue cannot be read.
+     */
+    public boolean isDrained() throws IOException {
+        if (!Files.exists(enqueued) || !list(pending, TASK).isEmpty()) {
+            return false;
+        }
+        for (Path parent : new Path[] { claimed, running }) {
+            for (Path dir : list(parent, null)) {
+                if (!list(dir, TASK).isEmpty()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Counts the workers whose heartbeat is younger than the timeout.
+     *
+     * @param timeoutMillis The time after which a silent worker is considered gone.
+     * @return The number of live workers.
+     * @throws IOException If the heartbeats cannot be read.
+     */
+    public int countLiveWorkers(long timeoutMillis) throws IOException {
+        long now = System.currentTimeMillis();
+        int live = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(workers)) {
+            for (Path beat : stream) {
+                try {
+                    if (now - Files.getLastModifiedTime(beat).toMillis() < timeoutMillis) {
+                        live++;
+                    }
+                } catch (NoSuchFileException e) {
+                    // Removed by a new run
+                }
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Removes the methods nobody has started yet, so workers stop once their running methods are done.
+     * Called by the coordinator when it gives up on a run.
+     *
+     * @return The number of methods removed.
+     * @throws IOException If the queue cannot be changed.
+     */
+    public int cancel() throws IOException {
+        List<Path> tasks = list(pending, TASK);
+        for (Path dir : list(claimed, null)) {
+            tasks.addAll(list(dir, TASK));
+        }
+        int removed = 0;
+        for (Path task : tasks) {
+            if (Files.deleteIfExists(task)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Renames a file atomically.
+     *
+     * @return false if the source was taken by another process first.
+     */
+    private static boolean move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes a file under a temporary name and renames it, so readers never see it half written.
+     */
+    private static void write(Path file, Properties properties) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, null);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    private static WorkItem read(Path task) throws IOException {
+        Properties properties = load(task);
+        return new WorkItem(sequence(task), properties.getProperty("testCase"), properties.getProperty("methodName"));
+    }
+
+    /**
+     * Lists the entries of a directory in name order, which for tasks is sequence order.
+     *
+     * @param suffix The suffix of the files to list, or null to list subdirectories.
+     */
+    private static List<Path> list(Path dir, String suffix) throws IOException {
+        List<Path> entries = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return entries;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                if (suffix == null ? Files.isDirectory(entry) : entry.getFileName().toString().endsWith(suffix)) {
+                    entries.add(entry);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return entries;
+        }
+        Collections.sort(entries);
+        return entries;
+    }
+
+    private static void deleteContents(Path dir) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                if (Files.isDirectory(entry)) {
+                    deleteContents(entry);
+                }
+                Files.delete(entry);
+            }
+        }
+    }
+
+    private static String name(int sequence) {
+        return String.format("%08d", sequence);
+    }
+
+    private static int sequence(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(0, name.indexOf('.')));
+    }
+
+    /**
+     * A test method of the run and its position in the queue.
+     */
+    public static final class WorkItem {
+        public final int sequence;
+        public final String testCase;
+        public final String methodName;
+
+        public WorkItem(int sequence, String testCase, String methodName) {
+            this.sequence = sequence;
+            this.testCase = testCase;
+            this.methodName = methodName;
+        }
+    }
+
+    /**
+     * A method taken by a worker.
+     */
+    public static final class Claim {
+        public final WorkItem item;
+        public final String workerId;
+        // Whether the worker took the method from another worker's claims
+        public final boolean stolen;
+        // Location of the task while it runs
+        final Path path;
+
+        Claim(WorkItem item, String workerId, Path path, boolean stolen) {
+            this.item = item;
+            this.workerId = workerId;
+            this.path = path;
+            this.stolen = stolen;
+        }
+    }
+
+    /**
+     * The outcome of a method as reported by the worker that ran it.
+     */
+    public static final class Outcome {
+        public final boolean passed;
+        public final long millis;
+        // Path of the stored screenshot, or null if none was taken
+        public final String screenshotPath;
+        // Attempts the method took, more than 1 if it was retried after infrastructure failures
+        public final int attempts;
+
+        public Outcome(boolean passed, long millis, String screenshotPath) {
+            this(passed, millis, screenshotPath, 1);
+        }
+
+        public Outcome(boolean passed, long millis, String screenshotPath, int attempts) {
+            this.passed = passed;
+            this.millis = millis;
+            this.screenshotPath = screenshotPath;
+            this.attempts = attempts;
+        }
+    }
+
+    /**
+     * The outcome of a method together with the worker that ran it.
+     */
+    public static final class Result {
+        public final WorkItem item;
+        public final Outcome outcome;
+        public final String workerId;
+        public final boolean stolen;
+
+        Result(WorkItem item, Outcome outcome, String workerId, boolean stolen) {
+            this.item = item;
+            this.outcome = outcome;
+            this.workerId = workerId;
+            this.stolen = stolen;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * FlakinessTracker remembers how flaky each test method has been in earlier runs, in a local properties file
+ * keyed by "TestCase.method" like the DurationHistory. A run is flaky if the method needed a retry or if its
+ * outcome differs from the previous run; the flakiness is the share of flaky runs, weighted towards the latest.
+ * Chronic flakers are quarantined: they still run, but at the end of the queue, so they neither delay
+ * the rest of the run nor hold up a slot at its start.
+ * Recording is thread-safe and does not touch the file; the tracker is written once by {@link #save()}.
+ */
+public class FlakinessTracker {
+
+    // Weight of the newest run in the flakiness
+    private static final double ALPHA = 0.3;
+    // Runs a method needs before it can be quarantined
+    private static final int MIN_RUNS = 3;
+
+    private final Path file;
+    private final double quarantineThreshold;
+    // Record by "TestCase.method"
+    private final ConcurrentMap<String, Record> records = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the tracker from a file, or starts an empty one if the file does not exist yet.
+     *
+     * @param file The properties file the flakiness is kept in.
+     * @param quarantineThreshold The flakiness, between 0 and 1, from which a method is quarantined.
+     * @throws IOException If the file exists but cannot be read.
+     */
+    public FlakinessTracker(Path file, double quarantineThreshold) throws IOException {
+        this.file = file;
+        this.quarantineThreshold = quarantineThreshold;
+        if (Files.exists(file)) {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            for (String key : properties.stringPropertyNames()) {
+                Record record = Record.parse(properties.getProperty(key));
+                // An edited or damaged entry is forgotten rather than failing the run
+                if (record != null) {
+                    records.put(key, record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the outcome of a run of a method.
+     *
+     * @param key The key of the test method, see {@link DurationHistory#key(String, String)}.
+     * @param passed Whether the method passed in the end.
+     * @param attempts The number of attempts it took.
+     */
+    public void record(String key, boolean passed, int attempts) {
+        records.compute(key, (k, previous) -> {
+            if (previous == null) {
+                return new Record(attempts > 1 ? ALPHA : 0, 1, passed);
+            }
+            boolean flaky = attempts > 1 || previous.lastPassed != passed;
+            return new Record(ALPHA * (flaky ? 1 : 0) + (1 - ALPHA) * previous.flakiness, previous.runs + 1, passed);
+        });
+    }
+
+    /**
+     * @param key The key of a test method.
+     * @return The flakiness of the method, between 0 and 1; 0 if it has not run before.
+     */
+    public double getFlakiness(String key) {
+        Record record = records.get(key);
+        return record == null ? 0 : record.flakiness;
+    }
+
+    /**
+     * @param key The key of a test method.
+     * @return true if the method has run often enough and is flaky enough to be queued last.
+     */
+    public boolean isQuarantined(String key) {
+        Record record = records.get(key);
+        return record != null && record.runs >= MIN_RUNS && record.flakiness >= quarantineThreshold;
+    }
+
+    /**
+     * @return The keys of all quarantined methods, sorted.
+     */
+    public Set<String> getQuarantined() {
+        Set<String> quarantined = new TreeSet<>();
+        for (String key : records.keySet()) {
+            if (isQuarantined(key)) {
+                quarantined.add(key);
+            }
+        }
+        return quarantined;
+    }
+
+    /**
+     * Writes the tracker to its file, replacing the previous one in a single move.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public void save() throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Record> entry : records.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().toString());
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, "flakiness", ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, "Flakiness, runs and last outcome of each test method, used to queue chronic flakers last");
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * The remembered flakiness of a method, stored as "flakiness,runs,lastPassed".
+     */
+    private static final class Record {
+        final double flakiness;
+        final int runs;
+        final boolean lastPassed;
+
+        Record(double flakiness, int runs, boolean lastPassed) {
+            this.flakiness = flakiness;
+            this.runs = runs;
+            this.lastPassed = lastPassed;
+        }
+
+        static Record parse(String value) {
+            String[] fields = value.trim().split(",");
+            if (fields.length != 3) {
+                return null;
+            }
+            try {
+                return new Record(Double.parseDouble(fields[0]), Integer.parseInt(fields[1]), Boolean.parseBoolean(fields[2]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%.4f,%d,%b", flakiness, runs, lastPassed);
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import org.openqa.selenium.json.Json;
+
+/**
+ * GridCapacityScheduler runs tasks with a concurrency limit taken from the Selenium Grid hub.
+ * It polls the hub's /status endpoint for the total and free slot counts of all available nodes and sizes
+ * its permit pool to the slots this process can use: the free ones plus those held by its own sessions, so slots
+ * taken by other runs on a shared grid are left alone. It resizes the pool as nodes join and leave, and keeps
+ * tasks in a queue while no slot is free so that worker threads are only started for tasks that can actually run.
+ * The scheduler starts on the first submitted task, so merely loading it never contacts the hub.
+ * An optional adaptive limiter admits each task on the dispatcher thread before it takes a slot,
+ * so a task held back by host load or latency occupies neither a worker thread nor a grid slot.
+ */
+public class GridCapacityScheduler {
+
+    // Status endpoint of the Selenium Grid hub
+    private final String statusUrl;
+    // Interval between two polls of the hub
+    private final long pollIntervalMillis;
+    // Permits currently handed out, one per grid slot
+    private final ResizableSemaphore slots;
+    // Number of permits the pool is currently sized to; written under the lock, read without it
+    private volatile int capacity;
+    // Free slots reported by the hub on the last successful poll
+    private volatile int freeSlots;
+    // Tasks waiting for a free slot
+    private final BlockingQueue<QueuedTask> queue = new LinkedBlockingQueue<>();
+    // Admits tasks by host load and latency before they take a slot, or null to admit by slots alone
+    private final AdaptiveConcurrencyLimiter admission;
+    // Tasks submitted but not yet handed to a worker thread
+    private final AtomicInteger pending = new AtomicInteger();
+    // Tasks currently running on a worker thread
+    private final AtomicInteger running = new AtomicInteger();
+    // Worker threads, bounded in practice by the number of permits
+    private final ExecutorService workers;
+    // Periodic hub poller
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "grid-status-poller"));
+    // Thread moving queued tasks to workers as permits become available
+    private final Thread dispatcher = daemon(this::dispatch, "grid-task-dispatcher");
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean stopped;
+    // Grid sessions this process holds, busy on the hub but usable by its tasks; the running tasks by default
+    private volatile IntSupplier ownSessions = running::get;
+
+    /**
+     * Creates a scheduler for the given hub.
+     *
+     * @param hubUrl The base URL of the Selenium Grid hub, e.g. http://localhost:4444.
+     * @param initialSlots The number of slots to assume until the hub has been polled successfully.
+     * @param pollIntervalMillis The interval in milliseconds between two polls of the hub.
+     */
+    public GridCapacityScheduler(String hubUrl, int initialSlots, long pollIntervalMillis) {
+        this(hubUrl, initialSlots, pollIntervalMillis, Executors.newCachedThreadPool());
+    }
+
+    /**
+     * Creates a scheduler for the given hub that runs tasks on the given executor.
+     *
+     * @param hubUrl The base URL of the Selenium Grid hub, e.g. http://localhost:4444.
+     * @param initialSlots The number of slots to assume until the hub has been polled successfully.
+     * @param pollIntervalMillis The interval in milliseconds between two polls of the hub.
+     * @param workers The executor running each dispatched task, e.g. from {@link WorkerThreads#newExecutor}.
+     */
+    public GridCapacityScheduler(String hubUrl, int initialSlots, long pollIntervalMillis, ExecutorService workers) {
+        this(hubUrl, initialSlots, pollIntervalMillis, workers, null);
+    }
+
+    /**
+     * Creates a scheduler for the given hub that admits tasks through an adaptive limiter before they take a slot.
+     *
+     * @param hubUrl The base URL of the Selenium Grid hub, e.g. http://localhost:4444.
+     * @param initialSlots The number of slots to assume until the hub has been polled successfully.
+     * @param pollIntervalMillis The interval in milliseconds between two polls of the hub.
+     * @param workers The executor running each dispatched task, e.g. from {@link WorkerThreads#newExecutor}.
+     * @param admission The limiter each task must be admitted by, or null to admit by slots alone.
+     */
+    public GridCapacityScheduler(String hubUrl, int initialSlots, long pollIntervalMillis, ExecutorService workers,
+            AdaptiveConcurrencyLimiter admission) {
+        this.workers = workers;
+        this.admission = admission;
+        this.statusUrl = hubUrl.replaceAll("/+$", "") + "/status";
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.slots = new ResizableSemaphore(initialSlots);
+        this.capacity = initialSlots;
+        this.freeSlots = initialSlots;
+    }
+
+    /**
+     * Starts the dispatcher and the periodic hub poller, unless already started or shut down.
+     * The first poll runs on the calling thread, so the pool is sized before the first task is dispatched.
+     * Called by the first {@link #submit(Runnable)}.
+     */
+    public void start() {
+        if (stopped || !started.compareAndSet(false, true)) {
+            return;
+        }
+        refreshFromHub();
+        poller.scheduleWithFixedDelay(this::refreshFromHub, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        dispatcher.start();
+    }
+
+    /**
+     * Sets how the grid sessions this process holds are counted, e.g. the sessions of its WebDriver pool,
+     * including idle ones. The hub reports them as busy, but this process' tasks can use them.
+     *
+     * @param ownSessions The number of grid sessions held by this process.
+     */
+    public void setOwnSessions(IntSupplier ownSessions) {
+        this.ownSessions = ownSessions;
+    }
+
+    /**
+     * Queues a task for execution, starting the scheduler if needed. The task runs once it is admitted
+     * and a grid slot is free.
+     *
+     * @param task The task to be executed.
+     * @return A future completed when the task has run, exceptionally if it threw or if the scheduler
+     *         was stopped before running it, so that callers waiting for the task are always released.
+     */
+    public CompletableFuture<Void> submit(Runnable task) {
+        QueuedTask queued = new QueuedTask(task);
+        if (!started.get()) {
+            start();
+        }
+        pending.incrementAndGet();
+        queue.add(queued);
+        // Shut down meanwhile: fail the task unless the dispatcher already has it
+        if (stopped && queue.remove(queued)) {
+            pending.decrementAndGet();
+            cancel(queued);
+        }
+        return queued.done;
+    }
+
+    /**
+     * Polls the hub once and resizes the permit pool to the slots this process can use: the free slots
+     * plus the slots of its own sessions, never more than the total. If the hub cannot be reached the current size is kept.
+     */
+    public void refreshFromHub() {
+        try {
+            SlotCount count = parseStatus(fetchStatus());
+            freeSlots = count.free;
+            resize(Math.min(count.total, count.free + ownSessions.getAsInt()));
+        } catch (Exception e) {
+            System.out.println("Grid status unavailable, keeping " + getCapacity() + " slots: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Resizes the permit pool. Shrinking below the number of running tasks is allowed;
+     * no new task is dispatched until enough running tasks have finished.
+     *
+     * @param newCapacity The new number of slots.
+     */
+    public synchronized void resize(int newCapacity) {
+        int delta = Math.max(0, newCapacity) - capacity;
+        if (delta > 0) {
+            slots.release(delta);
+        } else if (delta < 0) {
+            slots.reducePermits(-delta);
+        }
+        capacity += delta;
+    }
+
+    /**
+     * Takes queued tasks one at a time, waits for admission and a slot and hands the task to a worker thread.
+     * Tasks still queued when the dispatcher is stopped are failed rather than lost.
+     */
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            QueuedTask task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            boolean admitted = false;
+            try {
+                if (admission != null) {
+                    admission.acquire();
+                    admitted = true;
+                }
+                slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (admitted) {
+                    admission.release();
+                }
+                pending.decrementAndGet();
+                cancel(task);
+                break;
+            }
+            pending.decrementAndGet();
+            running.incrementAndGet();
+            boolean releaseAdmission = admitted;
+            try {
+                workers.execute(() -> {
+                    try {
+                        task.task.run();
+                        task.done.complete(null);
+                    } catch (RuntimeException | Error e) {
+                        task.done.completeExceptionally(e);
+                        throw e;
+                    } finally {
+                        running.decrementAndGet();
+                        slots.release();
+                        if (releaseAdmission) {
+                            admission.release();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                running.decrementAndGet();
+                slots.release();
+                if (releaseAdmission) {
+                    admission.release();
+                }
+                task.done.completeExceptionally(e);
+            }
+        }
+        cancelQueued();
+    }
+
+    /**
+     * Fails every task still in the queue.
+     */
+    private void cancelQueued() {
+        QueuedTask left;
+        while ((left = queue.poll()) != null) {
+            pending.decrementAndGet();
+            cancel(left);
+        }
+    }
+
+    /**
+     * Fails a task that will not run, releasing whoever waits for it.
+     */
+    private static void cancel(QueuedTask task) {
+        task.done.completeExceptionally(new CancellationException("Scheduler stopped before the task could run"));
+    }
+
+    /**
+     * Reads the raw JSON body of the hub's /status endpoint.
+     *
+     * @return The response body.
+     * @throws IOException If the hub cannot be reached or answers with an error.
+     */
+    private String fetchStatus() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(statusUrl).openConnection();
+        connection.setConnectTimeout(2000);
+        connection.setReadTimeout(2000);
+        try {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + connection.getResponseCode() + " from " + statusUrl);
+            }
+            StringBuilder body = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    body.append(line);
+                }
+            }
+            return body.toString();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Extracts the total and free slot counts from a Selenium Grid 4 /status response.
+     * Only nodes whose availability is UP are counted. A node runs at most maxSessions sessions
+     * regardless of how many browser stereotypes it offers, so maxSessions is used as its slot count.
+     *
+     * @param json The response body of the /status endpoint.
+     * @return The slot counts of all available nodes.
+     */
+    @SuppressWarnings("unchecked")
+    static SlotCount parseStatus(String json) {
+        Map<String, Object> status = new Json().toType(json, Json.MAP_TYPE);
+        Map<String, Object> value = (Map<String, Object>) status.get("value");
+        int total = 0;
+        int free = 0;
+        List<Map<String, Object>> nodes = value == null ? null : (List<Map<String, Object>>) value.get("nodes");
+        if (nodes != null) {
+            for (Map<String, Object> node : nodes) {
+                if (!"UP".equals(node.get("availability"))) {
+                    continue;
+                }
+                List<Map<String, Object>> nodeSlots = (List<Map<String, Object>>) node.get("slots");
+                int slotCount = nodeSlots == null ? 0 : nodeSlots.size();
+                int maxSessions = node.get("maxSessions") instanceof Number ? ((Number) node.get("maxSessions")).intValue() : slotCount;
+                int busy = 0;
+                if (nodeSlots != null) {
+                    for (Map<String, Object> slot : nodeSlots) {
+                        if (slot.get("session") != null) {
+                            busy++;
+                        }
+                    }
+                }
+                total += maxSessions;
+                free += Math.max(0, maxSessions - busy);
+            }
+        }
+        return new SlotCount(total, free);
+    }
+
+    /**
+     * @return The number of slots the permit pool is currently sized to.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The free slots reported by the hub on the last successful poll.
+     */
+    public int getFreeSlots() {
+        return freeSlots;
+    }
+
+    /**
+     * @return The permits currently available for new tasks.
+     */
+    public int getAvailablePermits() {
+        return slots.availablePermits();
+    }
+
+    /**
+     * @return The number of tasks waiting for a free slot.
+     */
+    public int getQueueDepth() {
+        return pending.get();
+    }
+
+    /**
+     * @return The number of tasks currently running.
+     */
+    public int getRunningTasks() {
+        return running.get();
+    }
+
+    /**
+     * Stops polling and dispatching and shuts down the worker threads once running tasks complete.
+     * Tasks that have not started are failed with a CancellationException.
+     */
+    public void shutdown() {
+        stopped = true;
+        poller.shutdownNow();
+        dispatcher.interrupt();
+        // The dispatcher fails the tasks it sees; these were never seen if it has not been started
+        cancelQueued();
+        workers.shutdown();
+    }
+
+    /**
+     * Creates a daemon thread so that an idle scheduler never keeps the JVM alive.
+     */
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * A queued task and the future completed once it has run.
+     */
+    private static class QueuedTask {
+        final Runnable task;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        QueuedTask(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    /**
+     * Total and free slot counts reported by the hub.
+     */
+    static class SlotCount {
+        final int total;
+        final int free;
+
+        SlotCount(int total, int free) {
+            this.total = total;
+            this.free = free;
+        }
+    }
+
+    /**
+     * Semaphore whose number of permits can also be reduced, as needed when grid nodes leave.
+     */
+    private static class ResizableSemaphore extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        ResizableSemaphore(int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram records durations in nanoseconds into log-linear buckets, in the style of an HDR histogram:
+ * every power of two is split into 32 equal sub-buckets, so a percentile is reported within about 3% of the
+ * recorded value across the whole range from nanoseconds to hours, in a fixed 15 KiB of counters.
+ * Recording is lock-free and allocation-free, so it can be called from every test thread on every step.
+ */
+public class LatencyHistogram {
+
+    // Bits of precision below the highest set bit; 2^5 = 32 sub-buckets per power of two
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values below this are counted exactly, one bucket per value
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    // Linear buckets, then 32 per power of two from 2^6 up to 2^62
+    private static final int BUCKETS = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos The duration in nanoseconds; negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Another thread raised the maximum; retry against the new one
+        }
+    }
+
+    /**
+     * Maps a value to its bucket.
+     */
+    static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (magnitude - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the highest value that falls into a bucket.
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int magnitude = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int shift = magnitude - SUB_BUCKET_BITS;
+        long top = (bucket - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded durations fall.
+     * Reads the counters without stopping writers, so a percentile taken during a run is approximate.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The duration in nanoseconds, never more than the largest recorded one, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long recorded = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            recorded += snapshot[i];
+        }
+        if (recorded == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * recorded));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueIn(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * @return The number of recorded durations.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return The sum of the recorded durations in nanoseconds.
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * @return The largest recorded duration in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+}
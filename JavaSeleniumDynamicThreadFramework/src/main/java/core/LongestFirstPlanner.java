@@ -0,0 +1,256 @@
+package core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * LongestFirstPlanner orders the test methods of a run longest-processing-time-first: the methods that took
+ * longest in earlier runs are queued first, so the short ones fill the gaps at the end instead of one long
+ * method starting last and stretching the run. Manual priorities come before that order: a method with a
+ * higher priority is queued before every method with a lower one, whatever their durations.
+ * Quarantined methods, the chronic flakers, are queued after all others, whatever their priority.
+ * The plan also predicts the makespan, the wall-clock time of the run, by simulating the queue on the grid slots.
+ */
+public class LongestFirstPlanner {
+
+    private final DurationHistory history;
+    // Priority by "TestCase.method" or "TestCase"; methods without one have priority 0
+    private final Map<String, Integer> priorities;
+    // "TestCase.method" keys of the methods queued last
+    private final Set<String> quarantined;
+
+    /**
+     * Creates a planner.
+     *
+     * @param history The durations of earlier runs.
+     * @param priorities Priorities by "TestCase.method" or by "TestCase" for all of its methods; higher runs first.
+     */
+    public LongestFirstPlanner(DurationHistory history, Map<String, Integer> priorities) {
+        this(history, priorities, Collections.emptySet());
+    }
+
+    /**
+     * Creates a planner that queues some methods last.
+     *
+     * @param history The durations of earlier runs.
+     * @param priorities Priorities by "TestCase.method" or by "TestCase" for all of its methods; higher runs first.
+     * @param quarantined The "TestCase.method" keys of the methods to queue after all others.
+     */
+    public LongestFirstPlanner(DurationHistory history, Map<String, Integer> priorities, Set<String> quarantined) {
+        this.history = history;
+        this.priorities = priorities;
+        this.quarantined = quarantined;
+    }
+
+    /**
+     * Loads priorities from a properties resource on the classpath, e.g. "TestCase3 = 10".
+     *
+     * @param resource The name of the resource.
+     * @return The priorities, empty if the resource does not exist.
+     * @throws IOException If the resource cannot be read.
+     * @throws IllegalArgumentException If a priority is not a whole number.
+     */
+    public static Map<String, Integer> loadPriorities(String resource) throws IOException {
+        Map<String, Integer> priorities = new HashMap<>();
+        InputStream in = LongestFirstPlanner.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            return priorities;
+        }
+        Properties properties = new Properties();
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key).trim();
+            try {
+                priorities.put(key, Integer.parseInt(value));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Priority of " + key + " is not a whole number: " + value);
+            }
+        }
+        return priorities;
+    }
+
+    /**
+     * Plans a run. Methods that have not run before are expected to take as long as the average known method.
+     *
+     * @param testCases The rows of the TestCases table: id, test case name, then method names.
+     * @param slots The number of tests that can run at once.
+     * @return The methods in the order they should be queued, with the predicted makespan.
+     */
+    public Plan plan(String[][] testCases, int slots) {
+        List<PlannedTest> tests = new ArrayList<>();
+        Map<String, Integer> methodCounts = new HashMap<>();
+        long knownTotal = 0;
+        int known = 0;
+        for (String[] row : testCases) {
+            for (int i = 2; i < row.length; i++) {
+                if (row[i] == null || row[i].isEmpty()) {
+                    continue;
+                }
+                String key = DurationHistory.key(row[1], row[i]);
+                Long millis = history.getMillis(key);
+                if (millis != null) {
+                    knownTotal += millis;
+                    known++;
+                }
+                tests.add(new PlannedTest(row[1], row[i], priorityOf(row[1], row[i]), millis == null ? -1 : millis,
+                        quarantined.contains(key)));
+                methodCounts.merge(row[1], 1, Integer::sum);
+            }
+        }
+        long average = known == 0 ? 0 : knownTotal / known;
+        List<PlannedTest> estimated = new ArrayList<>(tests.size());
+        for (PlannedTest test : tests) {
+            estimated.add(test.expectedMillis >= 0 ? test
+                    : new PlannedTest(test.testCase, test.methodName, test.priority, average, test.quarantined));
+        }
+        // Stable sort, so methods that are equal keep the table order
+        Collections.sort(estimated, Comparator.comparing((PlannedTest test) -> test.quarantined)
+                .thenComparing(Comparator.comparingInt((PlannedTest test) -> test.priority).reversed())
+                .thenComparing(Comparator.comparingLong((PlannedTest test) -> test.expectedMillis).reversed()));
+        return new Plan(estimated, methodCounts, Math.max(1, slots));
+    }
+
+    /**
+     * Looks up the priority of a method, falling back to the priority of its test case.
+     */
+    private int priorityOf(String testCase, String methodName) {
+        Integer priority = priorities.get(DurationHistory.key(testCase, methodName));
+        if (priority == null) {
+            priority = priorities.get(testCase);
+        }
+        return priority == null ? 0 : priority;
+    }
+
+    /**
+     * A test method in the plan.
+     */
+    public static final class PlannedTest {
+        public final String testCase;
+        public final String methodName;
+        public final int priority;
+        // Expected duration in milliseconds; estimated for methods that have not run before
+        public final long expectedMillis;
+        // Queued after all methods that are not
+        public final boolean quarantined;
+
+        PlannedTest(String testCase, String methodName, int priority, long expectedMillis, boolean quarantined) {
+            this.testCase = testCase;
+            this.methodName = methodName;
+            this.priority = priority;
+            this.expectedMillis = expectedMillis;
+            this.quarantined = quarantined;
+        }
+
+        @Override
+        public String toString() {
+            return DurationHistory.key(testCase, methodName);
+        }
+    }
+
+    /**
+     * The ordered methods of a run and the makespan they are expected to take.
+     */
+    public static final class Plan {
+        private final List<PlannedTest> tests;
+        private final Map<String, Integer> methodCounts;
+        private final int slots;
+        private final long totalWorkMillis;
+        private final long predictedMakespanMillis;
+
+        Plan(List<PlannedTest> tests, Map<String, Integer> methodCounts, int slots) {
+            this.tests = Collections.unmodifiableList(tests);
+            this.methodCounts = methodCounts;
+            this.slots = slots;
+            long total = 0;
+            // Each queued method starts on the slot that becomes free first
+            PriorityQueue<Long> slotFreeAt = new PriorityQueue<>();
+            for (int i = 0; i < slots; i++) {
+                slotFreeAt.add(0L);
+            }
+            long makespan = 0;
+            for (PlannedTest test : tests) {
+                total += test.expectedMillis;
+                long finish = slotFreeAt.poll() + test.expectedMillis;
+                makespan = Math.max(makespan, finish);
+                slotFreeAt.add(finish);
+            }
+            this.totalWorkMillis = total;
+            this.predictedMakespanMillis = makespan;
+        }
+
+        /**
+         * @return The methods in the order they should be queued.
+         */
+        public List<PlannedTest> getTests() {
+            return tests;
+        }
+
+        /**
+         * Leaves methods out of the plan, keeping the order of the others and the method counts of the test cases.
+         *
+         * @param skipped The methods not to run.
+         * @return The plan of the remaining methods, with the makespan predicted for them.
+         */
+        public Plan without(Collection<PlannedTest> skipped) {
+            List<PlannedTest> remaining = new ArrayList<>(tests);
+            remaining.removeAll(skipped);
+            return new Plan(remaining, methodCounts, slots);
+        }
+
+        /**
+         * @param testCase The name of a test case.
+         * @return The number of methods the test case runs.
+         */
+        public int getMethodCount(String testCase) {
+            Integer count = methodCounts.get(testCase);
+            return count == null ? 0 : count;
+        }
+
+        /**
+         * @return The number of slots the plan was made for.
+         */
+        public int getSlots() {
+            return slots;
+        }
+
+        /**
+         * @return The sum of the expected durations of all methods in milliseconds.
+         */
+        public long getTotalWorkMillis() {
+            return totalWorkMillis;
+        }
+
+        /**
+         * @return The expected wall-clock time of the run in milliseconds if the methods are queued in plan order.
+         */
+        public long getPredictedMakespanMillis() {
+            return predictedMakespanMillis;
+        }
+
+        /**
+         * @return The shortest possible makespan in milliseconds: the total work spread evenly over the slots,
+         *         but never less than the longest method.
+         */
+        public long getIdealMakespanMillis() {
+            long longest = 0;
+            for (PlannedTest test : tests) {
+                longest = Math.max(longest, test.expectedMillis);
+            }
+            return Math.max(longest, (totalWorkMillis + slots - 1) / slots);
+        }
+    }
+}
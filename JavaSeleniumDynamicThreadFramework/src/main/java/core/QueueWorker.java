@@ -0,0 +1,125 @@
+package core;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * QueueWorker runs the test methods of a FileWorkQueue in one runner process. It only takes a method
+ * when it has a free slot for it, so methods it cannot start yet stay in the queue for other workers,
+ * and it sends its heartbeat from a thread of its own, so a worker busy with a long method is not taken for gone.
+ */
+public class QueueWorker {
+
+    /**
+     * Runs one test method.
+     */
+    public interface Execution {
+
+        /**
+         * Starts a test method. Must not block until the method is done.
+         *
+         * @param item The method to run.
+         * @return The outcome, completed when the method and its screenshot are done.
+         */
+        CompletableFuture<FileWorkQueue.Outcome> start(FileWorkQueue.WorkItem item);
+    }
+
+    // Interval between two heartbeats
+    private static final long HEARTBEAT_MILLIS = 1000;
+
+    private final FileWorkQueue queue;
+    private final String workerId;
+    private final int slots;
+    private final int prefetch;
+    private final long pollMillis;
+
+    /**
+     * Creates a worker.
+     *
+     * @param queue The shared queue.
+     * @param workerId The id of this worker, unique among the processes sharing the queue.
+     * @param slots The number of methods this worker runs at once.
+     * @param prefetch The number of pending methods claimed at once; others may steal them while they wait.
+     * @param pollMillis The interval in milliseconds between two looks at an empty queue.
+     */
+    public QueueWorker(FileWorkQueue queue, String workerId, int slots, int prefetch, long pollMillis) {
+        this.queue = queue;
+        this.workerId = workerId;
+        this.slots = slots;
+        this.prefetch = prefetch;
+        this.pollMillis = pollMillis;
+    }
+
+    /**
+     * Takes and runs methods until the queue is drained and this worker's methods are done.
+     *
+     * @param execution Runs each method.
+     * @return The number of methods this worker ran.
+     * @throws IOException If the queue cannot be read or a result cannot be written.
+     * @throws InterruptedException If the worker is interrupted while waiting.
+     */
+    public int run(Execution execution) throws IOException, InterruptedException {
+        Semaphore free = new Semaphore(slots);
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "queue-worker-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        queue.heartbeat(workerId);
+        heartbeat.scheduleWithFixedDelay(() -> {
+            try {
+                queue.heartbeat(workerId);
+            } catch (IOException | RuntimeException e) {
+                // Keep beating; a single failed write must not end the heartbeat
+                e.printStackTrace();
+            }
+        }, HEARTBEAT_MILLIS, HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+        int ran = 0;
+        try {
+            while (failure.get() == null) {
+                free.acquire();
+                FileWorkQueue.Claim claim = queue.next(workerId, prefetch);
+                if (claim == null) {
+                    free.release();
+                    if (queue.isDrained()) {
+                        break;
+                    }
+                    Thread.sleep(pollMillis);
+                    continue;
+                }
+                ran++;
+                CompletableFuture<FileWorkQueue.Outcome> outcome;
+                try {
+                    outcome = execution.start(claim.item);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    outcome = new CompletableFuture<>();
+                    outcome.completeExceptionally(e);
+                }
+                outcome.whenComplete((result, error) -> {
+                    try {
+                        queue.complete(claim, error == null ? result : new FileWorkQueue.Outcome(false, 0, null));
+                    } catch (IOException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        free.release();
+                    }
+                });
+            }
+            // Wait for the methods still running
+            free.acquire(slots);
+        } finally {
+            heartbeat.shutdownNow();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return ran;
+    }
+}
@@ -0,0 +1,109 @@
+package core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * ResultCache remembers the last pass of each test method for incremental runs, in a local properties file
+ * keyed by "TestCase.method" like the DurationHistory: the fingerprint of the inputs it passed with and
+ * the screenshot it took. A method whose inputs have the same fingerprint again is not run; its pass is replayed.
+ * A failure forgets the method, so it runs again until it passes.
+ * Recording is thread-safe and does not touch the file; the cache is written once by {@link #save()}.
+ */
+public class ResultCache {
+
+    private final Path file;
+    // Last pass by "TestCase.method"
+    private final ConcurrentMap<String, Pass> passes = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the cache from a file, or starts an empty one if the file does not exist yet.
+     *
+     * @param file The properties file the cache is kept in.
+     * @throws IOException If the file exists but cannot be read.
+     */
+    public ResultCache(Path file) throws IOException {
+        this.file = file;
+        if (Files.exists(file)) {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            for (String key : properties.stringPropertyNames()) {
+                // Stored as "fingerprint screenshotPath"; the fingerprint is hex and has no spaces
+                String[] fields = properties.getProperty(key).split(" ", 2);
+                if (fields.length == 2) {
+                    passes.put(key, new Pass(fields[0], fields[1]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up a pass that can be replayed instead of running a method.
+     *
+     * @param key The key of the test method, see {@link DurationHistory#key(String, String)}.
+     * @param fingerprint The fingerprint of the method's inputs in this run.
+     * @return The screenshot path of the last pass, or null if the method has not passed with these inputs.
+     */
+    public String getReplayableScreenshot(String key, String fingerprint) {
+        Pass pass = passes.get(key);
+        return pass != null && pass.fingerprint.equals(fingerprint) ? pass.screenshotPath : null;
+    }
+
+    /**
+     * Records the outcome of a method that ran.
+     *
+     * @param key The key of the test method.
+     * @param fingerprint The fingerprint of the inputs it ran with.
+     * @param passed Whether it passed.
+     * @param screenshotPath The path of its stored screenshot, kept to be shown again when the pass is replayed.
+     */
+    public void record(String key, String fingerprint, boolean passed, String screenshotPath) {
+        if (passed) {
+            passes.put(key, new Pass(fingerprint, screenshotPath));
+        } else {
+            passes.remove(key);
+        }
+    }
+
+    /**
+     * Writes the cache to its file, replacing the previous one in a single move.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public void save() throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Pass> entry : passes.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().fingerprint + " " + entry.getValue().screenshotPath);
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, "results", ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, "Input fingerprint and screenshot of the last pass of each test method, replayed by incremental runs");
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * The last pass of a method.
+     */
+    private static final class Pass {
+        final String fingerprint;
+        final String screenshotPath;
+
+        Pass(String fingerprint, String screenshotPath) {
+            this.fingerprint = fingerprint;
+            this.screenshotPath = screenshotPath;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+
+/**
+ * RetryPolicy runs a test method again when it failed because of the infrastructure rather than the application:
+ * a grid session that could not be created or was lost, or a browser or hub that could not be reached or did not answer.
+ * Such a failure says nothing about the test, so the method is retried after an exponential backoff with jitter,
+ * on a fresh session. A failed check or any other exception is an assertion failure and fails the method at once.
+ */
+public class RetryPolicy {
+
+    /**
+     * Why an attempt failed.
+     */
+    public enum FailureKind {
+        // The grid, the browser or the network failed; worth another attempt
+        INFRASTRUCTURE,
+        // The test itself failed; another attempt would fail the same way
+        ASSERTION
+    }
+
+    /**
+     * One attempt at a test method.
+     */
+    @FunctionalInterface
+    public interface Attempt {
+        /**
+         * @return true if the method passed, false if one of its checks failed.
+         * @throws Exception Anything that stopped the method, classified by {@link #classify(Throwable)}.
+         */
+        boolean run() throws Exception;
+    }
+
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * Creates a policy.
+     *
+     * @param maxAttempts The number of attempts at a method, including the first; 1 disables retries.
+     * @param backoffMillis The wait in milliseconds before the first retry, doubled for every further one.
+     * @param maxBackoffMillis The longest wait in milliseconds before a retry.
+     */
+    public RetryPolicy(int maxAttempts, long backoffMillis, long maxBackoffMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = Math.max(0, backoffMillis);
+        this.maxBackoffMillis = Math.max(this.backoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * Classifies a failure by the exception and its causes. Session creation and lost sessions, unreachable
+     * browsers, I/O errors and timeouts of the HTTP client are infrastructure failures. A Selenium TimeoutException
+     * is thrown by waits for the page, so it is an assertion failure unless it was caused by one of those.
+     *
+     * @param failure The exception an attempt failed with.
+     * @return The kind of failure.
+     */
+    public static FailureKind classify(Throwable failure) {
+        Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Throwable t = failure; t != null && seen.add(t); t = t.getCause()) {
+            if (t instanceof SessionNotCreatedException
+                    || t instanceof NoSuchSessionException
+                    || t instanceof UnreachableBrowserException
+                    || t instanceof java.util.concurrent.TimeoutException
+                    || t instanceof IOException
+                    || t instanceof UncheckedIOException) {
+                return FailureKind.INFRASTRUCTURE;
+            }
+        }
+        return FailureKind.ASSERTION;
+    }
+
+    /**
+     * Runs a method, retrying it after infrastructure failures until it passes, fails an assertion
+     * or runs out of attempts. Errors other than an AssertionError are not caught.
+     *
+     * @param attempt One attempt at the method; it must take a fresh session after an infrastructure failure.
+     * @return The outcome of the last attempt and the number of attempts made.
+     */
+    public Result execute(Attempt attempt) {
+        for (int attempts = 1;; attempts++) {
+            Throwable failure;
+            try {
+                boolean passed = attempt.run();
+                return new Result(passed, attempts, passed ? null : FailureKind.ASSERTION, null);
+            } catch (Exception | AssertionError e) {
+                // Other errors, such as running out of memory, are not a test outcome and are passed on
+                failure = e;
+            }
+            FailureKind kind = classify(failure);
+            if (kind == FailureKind.ASSERTION || attempts >= maxAttempts) {
+                return new Result(false, attempts, kind, failure);
+            }
+            long backoff = getBackoffMillis(attempts);
+            System.out.println("Attempt " + attempts + " failed on the infrastructure, retrying in " + backoff + " ms: " + failure);
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Result(false, attempts, kind, failure);
+            }
+        }
+    }
+
+    /**
+     * Computes the wait before a retry: half of the exponential backoff plus a random share of the other half,
+     * so tests hit by the same grid hiccup do not all come back at the same moment.
+     *
+     * @param retry The number of the retry, starting at 1.
+     * @return The wait in milliseconds.
+     */
+    public long getBackoffMillis(int retry) {
+        long backoff = backoffMillis << Math.min(retry - 1, 30);
+        if (backoff < 0 || backoff > maxBackoffMillis) {
+            backoff = maxBackoffMillis;
+        }
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+    }
+
+    /**
+     * @return The number of attempts at a method, including the first.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * The outcome of a method after all its attempts.
+     */
+    public static final class Result {
+        public final boolean passed;
+        // Attempts made, 1 if the first one decided the outcome
+        public final int attempts;
+        // Why the last attempt failed, or null if it passed
+        public final FailureKind failureKind;
+        // The exception the last attempt failed with, or null if it passed or a check failed
+        public final Throwable failure;
+
+        Result(boolean passed, int attempts, FailureKind failureKind, Throwable failure) {
+            this.passed = passed;
+            this.attempts = attempts;
+            this.failureKind = failureKind;
+            this.failure = failure;
+        }
+    }
+}
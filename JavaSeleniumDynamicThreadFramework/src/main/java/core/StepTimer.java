@@ -0,0 +1,108 @@
+package core;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * StepTimer collects the duration of every step of a run, in nanoseconds, into one LatencyHistogram per step type:
+ * page actions ("page.click"), WebDriver commands ("webdriver.findElement"), database calls ("db.getValue"),
+ * screenshots ("screenshot.capture") and whole tests ("test"). The report shows their percentiles,
+ * so it is visible where test time actually goes.
+ * <pre>
+ * long start = StepTimer.start();
+ * try {
+ *     ...
+ * } finally {
+ *     StepTimer.record("page.click", start);
+ * }
+ * </pre>
+ */
+public class StepTimer {
+
+    // Histograms by step type, created on first use
+    private static final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * @return The current time in nanoseconds, to be passed to {@link #record(String, long)}.
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time elapsed since a step started.
+     *
+     * @param step The step type.
+     * @param startNanos The value returned by {@link #start()} when the step started.
+     */
+    public static void record(String step, long startNanos) {
+        recordNanos(step, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records the duration of a step.
+     *
+     * @param step The step type.
+     * @param nanos The duration in nanoseconds.
+     */
+    public static void recordNanos(String step, long nanos) {
+        LatencyHistogram histogram = histograms.get(step);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(step, k -> new LatencyHistogram());
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * @return The histograms of all step types recorded since the last reset, sorted by step type.
+     */
+    public static SortedMap<String, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(histograms));
+    }
+
+    /**
+     * @param step The step type.
+     * @return The histogram of the step type, or null if it has not been recorded.
+     */
+    public static LatencyHistogram getHistogram(String step) {
+        return histograms.get(step);
+    }
+
+    /**
+     * Forgets all recorded durations, e.g. at the start of a run.
+     */
+    public static void reset() {
+        histograms.clear();
+    }
+
+    /**
+     * Formats the percentiles of all step types as rows of text, for logging.
+     *
+     * @return One line per step type with its count and p50/p95/p99/max in milliseconds.
+     */
+    public static String summary() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> entry : getHistograms().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            text.append(String.format(Locale.ROOT, "%-28s n=%-7d p50=%.3f p95=%.3f p99=%.3f max=%.3f ms%n",
+                    entry.getKey(), histogram.getCount(), millis(histogram.getPercentile(50)),
+                    millis(histogram.getPercentile(95)), millis(histogram.getPercentile(99)), millis(histogram.getMax())));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds.
+     *
+     * @param nanos A duration in nanoseconds.
+     * @return The duration in milliseconds.
+     */
+    public static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
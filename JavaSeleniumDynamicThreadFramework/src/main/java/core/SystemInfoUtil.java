@@ -1,5 +1,11 @@
 package core;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import oshi.SystemInfo;
 import oshi.hardware.CentralProcessor;
 import oshi.hardware.GlobalMemory;
@@ -8,56 +14,154 @@ import oshi.hardware.HardwareAbstractionLayer;
 /**
  * SystemInfoUtil provides static methods to retrieve system performance metrics such as CPU load
  * and memory utilization using the OSHI (Operating System and Hardware Information) library.
+ * A single background thread samples the host on a fixed interval and publishes an immutable snapshot,
+ * so readers never block and never touch OSHI themselves.
  */
 public class SystemInfoUtil {
 
-    // Holds the previous CPU tick counts for all CPUs
-    private static long[] prevTicks = null;
+    // Interval between two samples, overridable with -Dsysteminfo.sample.interval.ms
+    private static final long SAMPLE_INTERVAL_MILLIS = Long.getLong("systeminfo.sample.interval.ms", 1000);
+    // Weight of the newest sample in the smoothed CPU load
+    private static final double EWMA_ALPHA = 0.3;
+
+    // OSHI handles, created once and only used by the sampler thread
+    private static final HardwareAbstractionLayer hal = new SystemInfo().getHardware();
+    private static final CentralProcessor processor = hal.getProcessor();
+    private static final GlobalMemory memory = hal.getMemory();
+    // Holds the previous CPU tick counts for all CPUs, only used by the sampler thread
+    private static long[] prevTicks = processor.getSystemCpuLoadTicks();
+    // Whether the sampler has not yet produced a CPU reading to seed the average with
+    private static boolean firstSample = true;
+    // Latest published sample
+    private static volatile Snapshot snapshot = new Snapshot(0, 0, sampleMemoryUtilization(), System.nanoTime());
+
+    // Callbacks run on the sampler thread after each new snapshot
+    private static final List<Runnable> sampleListeners = new CopyOnWriteArrayList<>();
+
+    // Background sampler refreshing the snapshot
+    private static final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "system-info-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        sampler.scheduleAtFixedRate(SystemInfoUtil::sample, SAMPLE_INTERVAL_MILLIS, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
 
     /**
-     * Calculates and retrieves the system's CPU load between the current and previous ticks.
-     * The method waits for a short period to get an accurate measure of the CPU load.
+     * Retrieves the system's CPU load measured over the last sampling interval.
      *
      * @return The CPU load as a percentage.
      */
-    public synchronized static double getSystemCpuLoad() {
+    public static double getSystemCpuLoad() {
+        return snapshot.cpuLoad;
+    }
+
+    /**
+     * Retrieves the exponentially weighted moving average of the CPU load,
+     * which damps single spikes so they do not gate task admission.
+     *
+     * @return The smoothed CPU load as a percentage.
+     */
+    public static double getSmoothedCpuLoad() {
+        return snapshot.smoothedCpuLoad;
+    }
+
+    /**
+     * Retrieves the system's memory utilization as of the latest sample.
+     *
+     * @return The memory utilization as a percentage of used memory.
+     */
+    public static double getMemoryUtilization() {
+        return snapshot.memoryUtilization;
+    }
+
+    /**
+     * Retrieves the latest sample as one consistent snapshot.
+     *
+     * @return The latest Snapshot.
+     */
+    public static Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Registers a callback that runs on the sampler thread after each new snapshot is published.
+     * Callbacks must be quick, as they delay the next sample.
+     *
+     * @param listener The callback to run.
+     */
+    public static void addSampleListener(Runnable listener) {
+        sampleListeners.add(listener);
+    }
+
+    /**
+     * @return The interval in milliseconds between two samples.
+     */
+    public static long getSampleIntervalMillis() {
+        return SAMPLE_INTERVAL_MILLIS;
+    }
+
+    /**
+     * Takes one sample of CPU and memory load and publishes it. Runs on the sampler thread only.
+     */
+    private static void sample() {
         try {
-            // Wait for a short period to get an accurate measure of the CPU load
-            Thread.sleep(2000);
-        } catch (InterruptedException e) {
+            long[] ticks = processor.getSystemCpuLoadTicks();
+            // Calculate the CPU load between the current and previous ticks
+            double cpuLoad = processor.getSystemCpuLoadBetweenTicks(prevTicks) * 100;
+            prevTicks = ticks;
+            double smoothed = firstSample ? cpuLoad : smooth(snapshot.smoothedCpuLoad, cpuLoad);
+            firstSample = false;
+            snapshot = new Snapshot(cpuLoad, smoothed, sampleMemoryUtilization(), System.nanoTime());
+            for (Runnable listener : sampleListeners) {
+                listener.run();
+            }
+        } catch (RuntimeException e) {
+            // Keep the last snapshot and the sampler alive
             e.printStackTrace();
         }
-        SystemInfo si = new SystemInfo();
-        HardwareAbstractionLayer hal = si.getHardware();
-        CentralProcessor processor = hal.getProcessor();
-
-        // Get the current CPU load ticks
-        long[] ticks = processor.getSystemCpuLoadTicks();
-        double cpuLoad = 0;
+    }
 
-        // Calculate the CPU load between the current and previous ticks
-        if (prevTicks != null) {
-            cpuLoad = processor.getSystemCpuLoadBetweenTicks(prevTicks) * 100;
-        }
-        prevTicks = ticks;
-        return cpuLoad;
+    /**
+     * Applies one step of the exponentially weighted moving average.
+     *
+     * @param average The current average.
+     * @param sample The newest sample.
+     * @return The updated average.
+     */
+    static double smooth(double average, double sample) {
+        return EWMA_ALPHA * sample + (1 - EWMA_ALPHA) * average;
     }
 
     /**
-     * Calculates and retrieves the system's memory utilization.
+     * Calculates the system's memory utilization.
      *
      * @return The memory utilization as a percentage of used memory.
      */
-    public synchronized static double getMemoryUtilization() {
-        SystemInfo si = new SystemInfo();
-        HardwareAbstractionLayer hal = si.getHardware();
-        GlobalMemory memory = hal.getMemory();
-
+    private static double sampleMemoryUtilization() {
         // Get the total and available memory
         long totalMemory = memory.getTotal();
         long availableMemory = memory.getAvailable();
-
         // Calculate the percentage of memory used
         return 100.0 - ((double) availableMemory / (double) totalMemory * 100);
     }
+
+    /**
+     * Immutable host load sample.
+     */
+    public static final class Snapshot {
+        public final double cpuLoad;
+        public final double smoothedCpuLoad;
+        public final double memoryUtilization;
+        public final long sampledAtNanos;
+
+        Snapshot(double cpuLoad, double smoothedCpuLoad, double memoryUtilization, long sampledAtNanos) {
+            this.cpuLoad = cpuLoad;
+            this.smoothedCpuLoad = smoothedCpuLoad;
+            this.memoryUtilization = memoryUtilization;
+            this.sampledAtNanos = sampledAtNanos;
+        }
+    }
 }
@@ -0,0 +1,85 @@
+package core;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * WorkerThreads creates the executor test tasks run on. Tests spend nearly all their time blocked on remote
+ * WebDriver calls, waits and JDBC, so on Java 21 or later they can run on virtual threads, which park instead
+ * of holding an OS thread and its stack while blocked. The mode is chosen with -Dscheduler.threads=virtual;
+ * platform threads are the default.
+ * The framework is compiled for Java 8, so the virtual thread executor is looked up at runtime;
+ * on an older JVM the virtual mode falls back to platform threads.
+ */
+public class WorkerThreads {
+
+    /**
+     * The kind of threads test tasks run on.
+     */
+    public enum Mode {
+        // A cached pool of platform threads, one OS thread per running test
+        PLATFORM,
+        // A new virtual thread per test, requires Java 21
+        VIRTUAL
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor(), or null before Java 21
+    private static final MethodHandle VIRTUAL_EXECUTOR = findVirtualExecutor();
+
+    /**
+     * @return The mode set with -Dscheduler.threads, PLATFORM if unset.
+     * @throws IllegalArgumentException If the property names an unknown mode.
+     */
+    public static Mode configuredMode() {
+        String mode = System.getProperty("scheduler.threads", "platform");
+        try {
+            return Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown scheduler.threads: " + mode + ", expected platform or virtual");
+        }
+    }
+
+    /**
+     * @return true if this JVM can run tasks on virtual threads.
+     */
+    public static boolean isVirtualAvailable() {
+        return VIRTUAL_EXECUTOR != null;
+    }
+
+    /**
+     * Creates an executor running each task on its own thread of the given kind.
+     * The number of tasks running at once is left to the caller, e.g. bounded by the grid slots.
+     *
+     * @param mode The kind of threads; VIRTUAL falls back to PLATFORM if the JVM has no virtual threads.
+     * @return The executor.
+     */
+    public static ExecutorService newExecutor(Mode mode) {
+        if (mode == Mode.VIRTUAL) {
+            if (VIRTUAL_EXECUTOR != null) {
+                try {
+                    return (ExecutorService) VIRTUAL_EXECUTOR.invokeExact();
+                } catch (Throwable e) {
+                    throw new IllegalStateException("Could not create the virtual thread executor", e);
+                }
+            }
+            System.out.println("Virtual threads need Java 21 or later, running tests on platform threads");
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Looks up the virtual thread executor factory.
+     */
+    private static MethodHandle findVirtualExecutor() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
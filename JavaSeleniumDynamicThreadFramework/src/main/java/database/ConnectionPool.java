@@ -0,0 +1,333 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ConnectionPool keeps a bounded set of JDBC connections that are reused across database calls,
+ * so callers do not pay a full database handshake per query.
+ * Connections handed out are proxies: closing one returns it to the pool, and the statements it prepares
+ * are cached per connection, so closing a statement only clears its parameters for the next use.
+ * Idle connections are validated before reuse and closed once they have been idle for too long.
+ */
+public class ConnectionPool {
+
+    // Idle time after which a connection is validated before it is handed out again
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = 5000;
+    // Seconds the database has to answer a validation
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    // Prepared statements kept open per connection
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final long maxIdleMillis;
+    // Permits for borrowing, one per connection the pool may hand out at the same time
+    private final Semaphore permits;
+    // Idle connections, most recently returned first
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    // Periodic eviction of connections idle for longer than maxIdleMillis
+    private final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "connection-pool-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool. No connection is opened until the first one is requested.
+     *
+     * @param url The JDBC URL of the database.
+     * @param username The database user.
+     * @param password The database password.
+     * @param maxSize The maximum number of connections in use at the same time.
+     * @param maxIdleMillis The time in milliseconds after which an idle connection is closed.
+     */
+    public ConnectionPool(String url, String username, String password, int maxSize, long maxIdleMillis) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maxIdleMillis = maxIdleMillis;
+        this.permits = new Semaphore(maxSize, true);
+        long evictionInterval = Math.max(1, maxIdleMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, reusing an idle one if possible. Waits while all connections are in use.
+     * Closing the returned connection gives it back to the pool.
+     *
+     * @return A pooled Connection.
+     * @throws SQLException If a new connection cannot be opened or the wait is interrupted.
+     */
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        waitNanos.add(System.nanoTime() - start);
+        borrows.increment();
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isUsable(pooled)) {
+                    break;
+                }
+                pooled.closePhysically();
+            }
+            if (pooled == null) {
+                pooled = new PooledConnection(DriverManager.getConnection(url, username, password));
+                created.incrementAndGet();
+            }
+            active.incrementAndGet();
+            return pooled.borrow();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Validates a connection that has been idle for a while; recently used connections are trusted.
+     */
+    private static boolean isUsable(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.idleSince < VALIDATE_AFTER_IDLE_MILLIS) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Takes a connection back from a caller. Connections left in a broken state are closed instead.
+     */
+    private void giveBack(PooledConnection pooled) {
+        active.decrementAndGet();
+        try {
+            if (closed) {
+                pooled.closePhysically();
+                return;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.idleSince = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            pooled.closePhysically();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes idle connections that have not been used for longer than the maximum idle time.
+     */
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - maxIdleMillis;
+        Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext()) {
+            PooledConnection pooled = oldestFirst.next();
+            if (pooled.idleSince <= cutoff && idle.remove(pooled)) {
+                pooled.closePhysically();
+            }
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops eviction. Connections in use are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.closePhysically();
+        }
+    }
+
+    /**
+     * @return The number of connections currently in use.
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * @return The number of idle connections ready to be borrowed.
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return The total number of physical connections opened by the pool.
+     */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * @return The number of connections handed out so far.
+     */
+    public long getBorrowCount() {
+        return borrows.sum();
+    }
+
+    /**
+     * @return The total time in nanoseconds callers have waited for a free connection.
+     */
+    public long getTotalWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    /**
+     * A physical connection together with its statement cache.
+     */
+    private class PooledConnection {
+        final Connection physical;
+        // Prepared statements by SQL, least recently used first
+        final Map<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > STATEMENT_CACHE_SIZE) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        volatile long idleSince = System.currentTimeMillis();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        /**
+         * Hands the connection out behind a new handle. Every borrow gets its own handle, so a handle kept
+         * after close() stays closed when the connection is borrowed again.
+         */
+        Connection borrow() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                    new Handle(this));
+        }
+
+        /**
+         * Returns the cached statement for the SQL, preparing it on first use. Closing the returned
+         * statement only clears its parameters and batch, so it can be reused by the next caller.
+         */
+        PreparedStatement cachedStatement(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = physical.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            PreparedStatement target = statement;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+                        if (method.getName().equals("close")) {
+                            target.clearParameters();
+                            target.clearBatch();
+                            return null;
+                        }
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+
+        void closePhysically() {
+            for (PreparedStatement statement : statements.values()) {
+                closeQuietly(statement);
+            }
+            statements.clear();
+            closeQuietly(physical);
+        }
+    }
+
+    /**
+     * The handle of one borrow. Only its first close() gives the connection back.
+     */
+    private class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        // Whether this borrower has closed its handle
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        giveBack(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned.get() || pooled.physical.isClosed();
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    break;
+            }
+            if (returned.get()) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            if (method.getName().equals("prepareStatement") && args.length == 1) {
+                return pooled.cachedStatement((String) args[0]);
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable resource) {
+        try {
+            resource.close();
+        } catch (Exception e) {
+            // Nothing left to do with a resource that fails to close
+        }
+    }
+}
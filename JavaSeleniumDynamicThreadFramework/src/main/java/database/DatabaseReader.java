@@ -1,22 +1,126 @@
 package database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import core.StepTimer;
 
 /**
  * DatabaseReader provides functionalities to interact with a MYSQL database.
  * It allows reading and updating values in a specified table using JDBC.
+ * Connections come from a shared ConnectionPool, so queries reuse open connections and prepared statements.
+ * Tables can be preloaded into a TestDataCache, after which reads of those tables are served from memory
+ * and every update is applied to the cache as well.
+ * Every round trip to the database is timed into a "db.*" StepTimer histogram.
  */
 public class DatabaseReader {
     // JDBC URL, username and password for database connection
     private static final String JDBC_URL = "jdbc:mysql://localhost:3306/QATestingDatabase";
     private static final String USERNAME = "root";
     private static final String PASSWORD = "root";
+    // Pool shared by all readers of the default database, sized with -Ddb.pool.size
+    private static final ConnectionPool DEFAULT_POOL =
+            new ConnectionPool(JDBC_URL, USERNAME, PASSWORD, Integer.getInteger("db.pool.size", 10), 60000);
+
+    // Rows kept in memory per preloaded table, overridable with -Ddb.cache.maxRows
+    private static final int CACHE_MAX_ROWS = Integer.getInteger("db.cache.maxRows", 10000);
+    // Interval between reloads of preloaded tables, 0 to never reload, overridable with -Ddb.cache.refreshMillis
+    private static final long CACHE_REFRESH_MILLIS = Long.getLong("db.cache.refreshMillis", 0);
+
+    // Pool this reader takes its connections from
+    private final ConnectionPool pool;
+    // In-memory copy of the preloaded tables, null until preload is called
+    private volatile TestDataCache cache;
+
+    /**
+     * Creates a reader for the default test database.
+     */
+    public DatabaseReader() {
+        this(DEFAULT_POOL);
+    }
+
+    /**
+     * Creates a reader that takes its connections from the given pool.
+     *
+     * @param pool The ConnectionPool to use.
+     */
+    public DatabaseReader(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Retrieves the connection pool of the default test database.
+     *
+     * @return The shared ConnectionPool.
+     */
+    public static ConnectionPool getDefaultPool() {
+        return DEFAULT_POOL;
+    }
+
+    /**
+     * Loads tables into memory with one query each, sized and refreshed as configured with
+     * -Ddb.cache.maxRows and -Ddb.cache.refreshMillis. Later reads of these tables need no database round trip.
+     *
+     * @param tableNames The names of the tables to preload.
+     */
+    public void preload(String... tableNames) {
+        preload(CACHE_MAX_ROWS, CACHE_REFRESH_MILLIS, tableNames);
+    }
+
+    /**
+     * Loads tables into memory with one query each. Later reads of these tables need no database round trip.
+     *
+     * @param maxRowsPerTable The maximum number of rows kept in memory per table; rows beyond it are read from the database on demand.
+     * @param refreshIntervalMillis The interval in milliseconds between two reloads of the tables, or 0 to never reload.
+     * @param tableNames The names of the tables to preload.
+     */
+    public synchronized void preload(int maxRowsPerTable, long refreshIntervalMillis, String... tableNames) {
+        if (cache != null) {
+            cache.close();
+        }
+        TestDataCache loaded = new TestDataCache(pool, maxRowsPerTable, refreshIntervalMillis);
+        for (String tableName : tableNames) {
+            loaded.load(tableName);
+        }
+        cache = loaded;
+    }
+
+    /**
+     * Retrieves the in-memory cache of the preloaded tables.
+     *
+     * @return The TestDataCache, or null if no table has been preloaded.
+     */
+    public TestDataCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Applies a value to the in-memory cache only, for writes that reach the database later.
+     */
+    void cacheValue(String tableName, String testcase, String columnName, String value) {
+        TestDataCache current = cache;
+        if (current != null) {
+            current.put(tableName, testcase, columnName, value);
+        }
+    }
+
+    /**
+     * Tells the in-memory cache that a value applied to it has reached the database.
+     */
+    private void cacheWritten(String tableName, String testcase, String columnName, String value) {
+        TestDataCache current = cache;
+        if (current != null) {
+            current.written(tableName, testcase, columnName, value);
+        }
+    }
 
     /**
      * Reads the entire specified table from the database and returns the data as a 2D String array.
@@ -26,10 +130,16 @@ public class DatabaseReader {
      * @return A 2D String array containing the table data.
      */
     public String[][] readTable(String tableName) {
+        TestDataCache current = cache;
+        String[][] cached = current == null ? null : current.readTable(tableName);
+        if (cached != null) {
+            return cached;
+        }
         List<String[]> dataList = new ArrayList<>();
 
+        long start = StepTimer.start();
         // Try-with-resources to ensure that all resources will be closed
-        try (Connection conn = DriverManager.getConnection(JDBC_URL, USERNAME, PASSWORD);
+        try (Connection conn = pool.getConnection();
              PreparedStatement statement = conn.prepareStatement("SELECT * FROM " + tableName);
              ResultSet resultSet = statement.executeQuery()) {
 
@@ -46,12 +156,42 @@ public class DatabaseReader {
         } catch (SQLException e) {
             // Print stack trace for SQLException
             e.printStackTrace();
+        } finally {
+            StepTimer.record("db.readTable", start);
         }
 
         // Convert List to 2D array before returning
         return dataList.toArray(new String[dataList.size()][]);
     }
 
+    /**
+     * Reads the column names of the specified table, in the order readTable returns the columns.
+     *
+     * @param tableName The name of the table.
+     * @return The column names as the database reports them, or an empty array if they cannot be read.
+     */
+    public String[] readColumnNames(String tableName) {
+        long start = StepTimer.start();
+        // Try-with-resources to ensure that all resources will be closed
+        try (Connection conn = pool.getConnection();
+             PreparedStatement statement = conn.prepareStatement("SELECT * FROM " + tableName + " WHERE 1 = 0");
+             ResultSet resultSet = statement.executeQuery()) {
+
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            String[] names = new String[metaData.getColumnCount()];
+            for (int i = 1; i <= names.length; i++) {
+                names[i - 1] = metaData.getColumnName(i);
+            }
+            return names;
+        } catch (SQLException e) {
+            // Print stack trace for SQLException
+            e.printStackTrace();
+        } finally {
+            StepTimer.record("db.readColumnNames", start);
+        }
+        return new String[0];
+    }
+
     /**
      * Retrieves the value of a specified column for a given testcase from the database.
      * 
@@ -61,8 +201,14 @@ public class DatabaseReader {
      * @return The value from the specified column and testcase, or an empty string if no value is found.
      */
     public String getValue(String tableName, String testcase, String columnName) {
+        TestDataCache current = cache;
+        Optional<String> cached = current == null ? null : current.getValue(tableName, testcase, columnName);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+        long start = StepTimer.start();
         // Try-with-resources to ensure that all resources will be closed
-        try (Connection conn = DriverManager.getConnection(JDBC_URL, USERNAME, PASSWORD);
+        try (Connection conn = pool.getConnection();
              PreparedStatement statement = conn.prepareStatement("SELECT " + columnName + " FROM " + tableName + " WHERE TestCaseName = ?")) {
 
             statement.setString(1, testcase);
@@ -75,6 +221,8 @@ public class DatabaseReader {
         } catch (SQLException e) {
             // Print stack trace for SQLException
             e.printStackTrace();
+        } finally {
+            StepTimer.record("db.getValue", start);
         }
         return "";
     }
@@ -88,17 +236,79 @@ public class DatabaseReader {
      * @param value The new value to set for the specified column.
      */
     public void updateValue(String tableName, String testcase, String columnName, String value) {
+        cacheValue(tableName, testcase, columnName, value);
+        long start = StepTimer.start();
         // Try-with-resources to ensure that all resources will be closed
-        try (Connection conn = DriverManager.getConnection(JDBC_URL, USERNAME, PASSWORD);
+        try (Connection conn = pool.getConnection();
              PreparedStatement statement = conn.prepareStatement("UPDATE " + tableName + " SET " + columnName + " = ? WHERE TestCaseName = ?")) {
 
             statement.setString(1, value);
             statement.setString(2, testcase);
             // Execute the update
             statement.executeUpdate();
+            cacheWritten(tableName, testcase, columnName, value);
         } catch (SQLException e) {
             // Print stack trace for SQLException
             e.printStackTrace();
+        } finally {
+            StepTimer.record("db.updateValue", start);
+        }
+    }
+
+    /**
+     * Updates several columns of several testcases with one multi-column UPDATE per testcase, sent as JDBC batches.
+     * Testcases that update the same set of columns share one statement and one batch.
+     * If a batch fails, e.g. because of an unknown column, its values are retried one column at a time
+     * so that a single bad column does not lose the others.
+     * 
+     * @param tableName The name of the table to update.
+     * @param updates The new column values, keyed by testcase name and then by column name.
+     */
+    public void updateValues(String tableName, Map<String, Map<String, String>> updates) {
+        for (Map.Entry<String, Map<String, String>> entry : updates.entrySet()) {
+            for (Map.Entry<String, String> value : entry.getValue().entrySet()) {
+                cacheValue(tableName, entry.getKey(), value.getKey(), value.getValue());
+            }
+        }
+        // Group testcases by the columns they update, so each group needs a single statement
+        Map<List<String>, List<String>> testcasesByColumns = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, String>> entry : updates.entrySet()) {
+            testcasesByColumns.computeIfAbsent(new ArrayList<>(entry.getValue().keySet()), columns -> new ArrayList<>()).add(entry.getKey());
+        }
+        for (Map.Entry<List<String>, List<String>> group : testcasesByColumns.entrySet()) {
+            List<String> columns = group.getKey();
+            String sql = "UPDATE " + tableName + " SET " + String.join(" = ?, ", columns) + " = ? WHERE TestCaseName = ?";
+            long start = StepTimer.start();
+            // Try-with-resources to ensure that all resources will be closed
+            try (Connection conn = pool.getConnection();
+                 PreparedStatement statement = conn.prepareStatement(sql)) {
+
+                for (String testcase : group.getValue()) {
+                    Map<String, String> values = updates.get(testcase);
+                    int index = 1;
+                    for (String column : columns) {
+                        statement.setString(index++, values.get(column));
+                    }
+                    statement.setString(index, testcase);
+                    statement.addBatch();
+                }
+                // Execute all updates of the group in one round trip
+                statement.executeBatch();
+                for (String testcase : group.getValue()) {
+                    for (String column : columns) {
+                        cacheWritten(tableName, testcase, column, updates.get(testcase).get(column));
+                    }
+                }
+                StepTimer.record("db.updateBatch", start);
+            } catch (SQLException e) {
+                // Print stack trace for SQLException and fall back to single-column updates
+                e.printStackTrace();
+                for (String testcase : group.getValue()) {
+                    for (Map.Entry<String, String> value : updates.get(testcase).entrySet()) {
+                        updateValue(tableName, testcase, value.getKey(), value.getValue());
+                    }
+                }
+            }
         }
     }
 }
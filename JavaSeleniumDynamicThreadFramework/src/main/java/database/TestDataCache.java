@@ -0,0 +1,474 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TestDataCache holds whole tables of the test database in memory, indexed by TestCaseName and column,
+ * so test data lookups are answered without a database round trip.
+ * Tables are bulk loaded with one query each. Values written through the owning DatabaseReader, or buffered
+ * in a WriteBehindBuffer, are applied to the cache immediately and survive later refreshes, so readers always
+ * see the latest value written by this run even before it reaches the database. A written value is kept apart
+ * only until it has reached the database and no reload that started before that is still running.
+ * Test case names are matched ignoring case, as the database's default collation does.
+ * Each table holds at most a fixed number of rows; lookups for rows beyond the limit read through to the database.
+ */
+public class TestDataCache {
+
+    // Column every cached table is keyed by
+    private static final String KEY_COLUMN = "testcasename";
+
+    private final ConnectionPool pool;
+    private final int maxRowsPerTable;
+    // Cached tables by lower-case table name
+    private final ConcurrentMap<String, CachedTable> tables = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // Periodic reload of the cached tables, only started when a refresh interval is set
+    private final ScheduledExecutorService refresher;
+    // Guards the written values, the publication of loaded tables and the two counters below
+    private final Object lock = new Object();
+    // Number of loads started so far, numbering each load
+    private long loadsStarted;
+    // Loads currently reading from the database
+    private int loadsInFlight;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param pool The ConnectionPool the tables are loaded from.
+     * @param maxRowsPerTable The maximum number of rows kept in memory per table.
+     * @param refreshIntervalMillis The interval in milliseconds between two reloads of the cached tables, or 0 to never reload.
+     */
+    public TestDataCache(ConnectionPool pool, int maxRowsPerTable, long refreshIntervalMillis) {
+        this.pool = pool;
+        this.maxRowsPerTable = maxRowsPerTable;
+        if (refreshIntervalMillis > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "test-data-cache-refresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            refresher = null;
+        }
+    }
+
+    /**
+     * Loads a table into the cache with a single query, replacing any earlier copy.
+     * Tables without a TestCaseName column are not cached.
+     *
+     * @param tableName The name of the table to load.
+     * @return true if the table is now cached.
+     */
+    public boolean load(String tableName) {
+        String key = tableName.toLowerCase(Locale.ROOT);
+        long loadNumber;
+        synchronized (lock) {
+            loadNumber = ++loadsStarted;
+            loadsInFlight++;
+        }
+        try {
+            Snapshot snapshot = loadSnapshot(tableName);
+            if (snapshot == null) {
+                return false;
+            }
+            synchronized (lock) {
+                CachedTable table = tables.get(key);
+                if (table == null) {
+                    tables.put(key, new CachedTable(tableName, snapshot, loadNumber));
+                } else if (loadNumber > table.loadNumber) {
+                    // Apply the values written while the table was loading before readers can see it;
+                    // a load finishing after one that started later holds older rows and is dropped
+                    table.applyWrites(snapshot);
+                    table.snapshot = snapshot;
+                    table.loadNumber = loadNumber;
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            // Print stack trace for SQLException; lookups keep going to the database
+            e.printStackTrace();
+            return false;
+        } finally {
+            synchronized (lock) {
+                if (--loadsInFlight == 0) {
+                    forgetWrittenValues();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reloads every cached table from the database, keeping the values written by this run.
+     */
+    public void refresh() {
+        for (CachedTable table : tables.values()) {
+            load(table.name);
+        }
+    }
+
+    /**
+     * @param tableName The name of a table.
+     * @return true if lookups for the table are answered by this cache.
+     */
+    public boolean isCached(String tableName) {
+        return tables.containsKey(tableName.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Looks up a value. Rows that are not in memory are read from the database and cached while the table is below its size limit.
+     *
+     * @param tableName The name of a cached table.
+     * @param testcase The name of the testcase.
+     * @param columnName The name of the column.
+     * @return The value, empty if the testcase has no row, or null if the cache cannot answer, e.g. for an unknown column.
+     */
+    Optional<String> getValue(String tableName, String testcase, String columnName) {
+        CachedTable table = tables.get(tableName.toLowerCase(Locale.ROOT));
+        if (table == null) {
+            return null;
+        }
+        Snapshot snapshot = table.snapshot;
+        Integer column = snapshot.columnIndex.get(columnName.toLowerCase(Locale.ROOT));
+        if (column == null) {
+            return null;
+        }
+        List<AtomicReferenceArray<String>> rows = snapshot.rowsByTestCase.get(key(testcase));
+        if (rows != null) {
+            hits.increment();
+            return Optional.ofNullable(rows.get(0).get(column));
+        }
+        misses.increment();
+        if (snapshot.complete) {
+            return Optional.of("");
+        }
+        try {
+            rows = readThrough(table, snapshot, testcase);
+        } catch (SQLException e) {
+            // Print stack trace for SQLException and let the caller query the database
+            e.printStackTrace();
+            return null;
+        }
+        return rows.isEmpty() ? Optional.of("") : Optional.ofNullable(rows.get(0).get(column));
+    }
+
+    /**
+     * Returns a copy of a fully cached table, in the order it was read from the database.
+     *
+     * @param tableName The name of a table.
+     * @return The rows of the table, or null if the table is not cached or larger than the size limit.
+     */
+    String[][] readTable(String tableName) {
+        CachedTable table = tables.get(tableName.toLowerCase(Locale.ROOT));
+        Snapshot snapshot = table == null ? null : table.snapshot;
+        if (snapshot == null || !snapshot.complete) {
+            return null;
+        }
+        List<AtomicReferenceArray<String>> rows = snapshot.rows;
+        String[][] copy = new String[rows.size()][];
+        for (int r = 0; r < copy.length; r++) {
+            AtomicReferenceArray<String> row = rows.get(r);
+            copy[r] = new String[row.length()];
+            for (int c = 0; c < copy[r].length; c++) {
+                copy[r][c] = row.get(c);
+            }
+        }
+        hits.increment();
+        return copy;
+    }
+
+    /**
+     * Records a value written for a testcase, so the cache agrees with the database once the write lands.
+     * Writes to tables that are not cached, or to unknown columns, are ignored.
+     *
+     * @param tableName The name of the table written to.
+     * @param testcase The name of the testcase whose rows are updated.
+     * @param columnName The name of the column written to.
+     * @param value The new value.
+     */
+    void put(String tableName, String testcase, String columnName, String value) {
+        CachedTable table = tables.get(tableName.toLowerCase(Locale.ROOT));
+        if (table == null) {
+            return;
+        }
+        String column = columnName.toLowerCase(Locale.ROOT);
+        synchronized (lock) {
+            Snapshot snapshot = table.snapshot;
+            if (!snapshot.columnIndex.containsKey(column)) {
+                return;
+            }
+            table.writes.computeIfAbsent(key(testcase), k -> new HashMap<>()).put(column, new WrittenValue(value));
+            Snapshot.set(snapshot, key(testcase), column, value);
+        }
+    }
+
+    /**
+     * Records that a value passed to {@link #put} has reached the database. Once no load that started before
+     * is still running, the value is forgotten, as every later load reads it from the database.
+     *
+     * @param tableName The name of the table written to.
+     * @param testcase The name of the testcase whose rows were updated.
+     * @param columnName The name of the column written to.
+     * @param value The value written.
+     */
+    void written(String tableName, String testcase, String columnName, String value) {
+        CachedTable table = tables.get(tableName.toLowerCase(Locale.ROOT));
+        if (table == null) {
+            return;
+        }
+        synchronized (lock) {
+            Map<String, WrittenValue> columns = table.writes.get(key(testcase));
+            WrittenValue written = columns == null ? null : columns.get(columnName.toLowerCase(Locale.ROOT));
+            // A later value for the same cell has not reached the database yet
+            if (written == null || !Objects.equals(written.value, value)) {
+                return;
+            }
+            written.inDatabase = true;
+            if (loadsInFlight == 0) {
+                forgetWrittenValues();
+            }
+        }
+    }
+
+    /**
+     * Drops the written values that have reached the database. Called under the lock while no load is running.
+     */
+    private void forgetWrittenValues() {
+        for (CachedTable table : tables.values()) {
+            Iterator<Map<String, WrittenValue>> testcases = table.writes.values().iterator();
+            while (testcases.hasNext()) {
+                Map<String, WrittenValue> columns = testcases.next();
+                columns.values().removeIf(written -> written.inDatabase);
+                if (columns.isEmpty()) {
+                    testcases.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param tableName The name of a table.
+     * @return The number of written values kept for the table until they have reached the database.
+     */
+    public int getPendingWrites(String tableName) {
+        CachedTable table = tables.get(tableName.toLowerCase(Locale.ROOT));
+        if (table == null) {
+            return 0;
+        }
+        synchronized (lock) {
+            int count = 0;
+            for (Map<String, WrittenValue> columns : table.writes.values()) {
+                count += columns.size();
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Stops the periodic refresh.
+     */
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The number of lookups answered from memory.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of lookups for rows that were not in memory.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @param tableName The name of a table.
+     * @return The number of rows of the table held in memory, or 0 if it is not cached.
+     */
+    public int getCachedRows(String tableName) {
+        CachedTable table = tables.get(tableName.toLowerCase(Locale.ROOT));
+        return table == null ? 0 : table.snapshot.rowCount.get();
+    }
+
+    private Snapshot loadSnapshot(String tableName) throws SQLException {
+        // Try-with-resources to ensure that all resources will be closed
+        try (Connection conn = pool.getConnection();
+             PreparedStatement statement = conn.prepareStatement("SELECT * FROM " + tableName);
+             ResultSet resultSet = statement.executeQuery()) {
+
+            Snapshot snapshot = Snapshot.of(resultSet.getMetaData());
+            if (snapshot == null) {
+                return null;
+            }
+            boolean complete = true;
+            while (resultSet.next()) {
+                if (snapshot.rowCount.get() >= maxRowsPerTable) {
+                    complete = false;
+                    break;
+                }
+                snapshot.add(readRow(resultSet, snapshot.columnCount()));
+            }
+            snapshot.complete = complete;
+            return snapshot;
+        }
+    }
+
+    private List<AtomicReferenceArray<String>> readThrough(CachedTable table, Snapshot snapshot, String testcase) throws SQLException {
+        List<AtomicReferenceArray<String>> rows = new ArrayList<>();
+        // Try-with-resources to ensure that all resources will be closed
+        try (Connection conn = pool.getConnection();
+             PreparedStatement statement = conn.prepareStatement("SELECT * FROM " + table.name + " WHERE TestCaseName = ?")) {
+
+            statement.setString(1, testcase);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    rows.add(readRow(resultSet, snapshot.columnCount()));
+                }
+            }
+        }
+        synchronized (lock) {
+            if (!rows.isEmpty() && snapshot.rowCount.get() < maxRowsPerTable
+                    && snapshot.rowsByTestCase.putIfAbsent(key(testcase), Collections.unmodifiableList(rows)) == null) {
+                snapshot.rowCount.addAndGet(rows.size());
+                table.applyWrites(snapshot);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return The key a testcase's rows are indexed by, its lower-case name.
+     */
+    private static String key(String testcase) {
+        return testcase == null ? null : testcase.toLowerCase(Locale.ROOT);
+    }
+
+    private static AtomicReferenceArray<String> readRow(ResultSet resultSet, int columnCount) throws SQLException {
+        AtomicReferenceArray<String> row = new AtomicReferenceArray<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            row.set(i - 1, resultSet.getString(i));
+        }
+        return row;
+    }
+
+    /**
+     * A cached table: the rows last loaded from the database plus the values written by this run.
+     */
+    private static class CachedTable {
+        final String name;
+        volatile Snapshot snapshot;
+        // Number of the load the snapshot comes from; written under the cache's lock
+        long loadNumber;
+        // Values written by this run, by testcase key and lower-case column name; guarded by the cache's lock
+        final Map<String, Map<String, WrittenValue>> writes = new HashMap<>();
+
+        CachedTable(String name, Snapshot snapshot, long loadNumber) {
+            this.name = name;
+            this.snapshot = snapshot;
+            this.loadNumber = loadNumber;
+        }
+
+        void applyWrites(Snapshot target) {
+            for (Map.Entry<String, Map<String, WrittenValue>> testcase : writes.entrySet()) {
+                for (Map.Entry<String, WrittenValue> value : testcase.getValue().entrySet()) {
+                    Snapshot.set(target, testcase.getKey(), value.getKey(), value.getValue().value);
+                }
+            }
+        }
+    }
+
+    /**
+     * A value written by this run; guarded by the cache's lock.
+     */
+    private static class WrittenValue {
+        final String value;
+        // Whether the value has reached the database
+        boolean inDatabase;
+
+        WrittenValue(String value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * The rows of one table as loaded from the database. Rows are indexed by the lower-case TestCaseName;
+     * a testcase with several rows keeps all of them, like an UPDATE on TestCaseName would.
+     */
+    private static class Snapshot {
+        // Column position by lower-case column name
+        final Map<String, Integer> columnIndex;
+        // Rows in the order they were read
+        final List<AtomicReferenceArray<String>> rows = new ArrayList<>();
+        final ConcurrentMap<String, List<AtomicReferenceArray<String>>> rowsByTestCase = new ConcurrentHashMap<>();
+        final AtomicInteger rowCount = new AtomicInteger();
+        final int keyColumn;
+        // Whether every row of the table fit within the size limit
+        boolean complete;
+
+        private Snapshot(Map<String, Integer> columnIndex, int keyColumn) {
+            this.columnIndex = columnIndex;
+            this.keyColumn = keyColumn;
+        }
+
+        static Snapshot of(ResultSetMetaData metaData) throws SQLException {
+            Map<String, Integer> columnIndex = new HashMap<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columnIndex.put(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), i - 1);
+            }
+            Integer keyColumn = columnIndex.get(KEY_COLUMN);
+            return keyColumn == null ? null : new Snapshot(Collections.unmodifiableMap(columnIndex), keyColumn);
+        }
+
+        int columnCount() {
+            return columnIndex.size();
+        }
+
+        void add(AtomicReferenceArray<String> row) {
+            rows.add(row);
+            String testcase = key(row.get(keyColumn));
+            if (testcase != null) {
+                rowsByTestCase.computeIfAbsent(testcase, k -> new ArrayList<>()).add(row);
+            }
+            rowCount.incrementAndGet();
+        }
+
+        static void set(Snapshot snapshot, String testcaseKey, String column, String value) {
+            Integer index = snapshot.columnIndex.get(column);
+            List<AtomicReferenceArray<String>> rows = snapshot.rowsByTestCase.get(testcaseKey);
+            if (index == null || rows == null) {
+                return;
+            }
+            for (AtomicReferenceArray<String> row : rows) {
+                row.set(index, value);
+            }
+        }
+    }
+}
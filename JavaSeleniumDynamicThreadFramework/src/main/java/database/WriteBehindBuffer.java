@@ -0,0 +1,129 @@
+package database;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WriteBehindBuffer collects column updates for one table in memory and writes them to the database
+ * on a background thread, so test threads never block on database I/O.
+ * Updates are merged per TestCaseName (the last value of a column wins) and flushed as one multi-column
+ * UPDATE per testcase, batched through {@link DatabaseReader#updateValues(String, Map)}, whenever the
+ * number of pending updates reaches a threshold, on a fixed interval, and when the buffer is closed.
+ */
+public class WriteBehindBuffer {
+
+    private final DatabaseReader reader;
+    private final String tableName;
+    private final int flushThreshold;
+    // Pending column values keyed by testcase name; each inner map is only touched inside an atomic map operation
+    private final ConcurrentMap<String, Map<String, String>> pending = new ConcurrentHashMap<>();
+    // Updates buffered since the last flush started
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    // Whether a threshold flush has been requested and not yet started
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    // Background thread writing the buffered updates
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Creates a buffer and starts its periodic flush.
+     *
+     * @param reader The DatabaseReader used to write the updates.
+     * @param tableName The name of the table the updates belong to.
+     * @param flushThreshold The number of pending updates that triggers a flush.
+     * @param flushIntervalMillis The interval in milliseconds between two periodic flushes.
+     */
+    public WriteBehindBuffer(DatabaseReader reader, String tableName, int flushThreshold, long flushIntervalMillis) {
+        this.reader = reader;
+        this.tableName = tableName;
+        this.flushThreshold = flushThreshold;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "write-behind-" + tableName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Buffers a column update. Returns immediately; the value is written by a later flush,
+     * but is visible at once through the reader's cache if the table has been preloaded.
+     *
+     * @param testcase The name of the testcase whose row is updated.
+     * @param columnName The name of the column to update.
+     * @param value The new value to set for the column.
+     */
+    public void update(String testcase, String columnName, String value) {
+        // Readers of a preloaded table see the value before it is written
+        reader.cacheValue(tableName, testcase, columnName, value);
+        pending.compute(testcase, (key, columns) -> {
+            Map<String, String> merged = columns == null ? new LinkedHashMap<>() : columns;
+            merged.put(columnName, value);
+            return merged;
+        });
+        if (pendingCount.incrementAndGet() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // Closed: the update is written by the next explicit flush
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Writes all pending updates now and waits until they are written.
+     */
+    public synchronized void flush() {
+        flushRequested.set(false);
+        pendingCount.set(0);
+        Map<String, Map<String, String>> batch = new LinkedHashMap<>();
+        for (String testcase : new ArrayList<>(pending.keySet())) {
+            Map<String, String> columns = pending.remove(testcase);
+            if (columns != null) {
+                batch.put(testcase, columns);
+            }
+        }
+        if (!batch.isEmpty()) {
+            reader.updateValues(tableName, batch);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Keep the periodic flush alive
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return The number of testcases with updates waiting to be written.
+     */
+    public int getPendingTestCases() {
+        return pending.size();
+    }
+
+    /**
+     * Stops the background flush and writes everything still pending. Must be called before the results
+     * depending on the data are reported.
+     */
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
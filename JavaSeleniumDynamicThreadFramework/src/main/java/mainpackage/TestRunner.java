@@ -1,9 +1,42 @@
 package mainpackage;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import base.WebDriverManager;
+import base.WebDriverPool;
+import core.DurationHistory;
 import core.DynamicThreadManager;
+import core.FileWorkQueue;
+import core.FlakinessTracker;
+import core.AdaptiveConcurrencyLimiter;
+import core.GridCapacityScheduler;
+import core.LongestFirstPlanner;
+import core.QueueWorker;
+import core.ResultCache;
+import core.RetryPolicy;
+import core.StepTimer;
+import core.SystemInfoUtil;
+import database.ConnectionPool;
 import database.DatabaseReader;
+import database.WriteBehindBuffer;
+import reporting.MetricsServer;
 import reporting.ReportManager;
+import reporting.RunMetrics;
+import reporting.ScreenshotPipeline;
+import reporting.ScreenshotStore;
+import testcases.InputFingerprinter;
 import testcases.TestCaseExecutor;
 
 /**
@@ -16,6 +49,36 @@ public class TestRunner {
     static String homeDir = System.getProperty("user.dir");
     // DatabaseReader instance for accessing test case data
     static DatabaseReader databaseReader = new DatabaseReader();
+    // Buffer writing scraped test data in the background, flushed every 100 updates or every second
+    static WriteBehindBuffer testDataWriter = new WriteBehindBuffer(databaseReader, "TestData", 100, 1000);
+    // Writes screenshots and their thumbnails off the test threads, with -Dscreenshot.threads workers,
+    // storing near-identical screenshots of a passed test (up to -Dscreenshot.maxDistance differing hash bits) once
+    static ScreenshotPipeline screenshotPipeline = new ScreenshotPipeline(
+            new ScreenshotStore(homeDir + "\\src\\main\\resources\\screenshots", Integer.getInteger("screenshot.maxDistance", 4)),
+            Integer.getInteger("screenshot.threads", 2), 256, 350);
+    static final String ROLE_COORDINATOR = "coordinator";
+    static final String ROLE_WORKER = "worker";
+    // Role of this process, set with -Drunner.role: local runs everything itself, a coordinator queues the
+    // methods for workers sharing -Drunner.queue and reports their results
+    static String role = System.getProperty("runner.role", "local");
+    // Queue directory shared by a coordinator and its workers
+    static String queueDir = System.getProperty("runner.queue", homeDir + "\\src\\main\\resources\\queue");
+    // Id of this worker, unique among the processes sharing the queue
+    static String workerId = System.getProperty("runner.worker", ManagementFactory.getRuntimeMXBean().getName());
+    // A worker that has not sent a heartbeat for this long is considered gone
+    static final long WORKER_TIMEOUT_MILLIS = 30000;
+    // Interval between two looks at the queue
+    static final long QUEUE_POLL_MILLIS = 200;
+    // Time a coordinator waits for all results, set with -Drunner.timeoutMillis
+    static final long COORDINATOR_TIMEOUT_MILLIS = Long.getLong("runner.timeoutMillis", TimeUnit.HOURS.toMillis(2));
+    // Set with -Drunner.incremental=true to replay the passes of methods whose inputs have not changed
+    static boolean incremental = Boolean.getBoolean("runner.incremental");
+    // Last passes of an incremental run, null otherwise
+    static ResultCache resultCache;
+    // Fingerprints of the inputs of the planned methods by "TestCase.method" in an incremental run
+    static final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+    // Port of the Prometheus metrics endpoint, set with -Dmetrics.port; no endpoint is started if unset
+    static Integer metricsPort = Integer.getInteger("metrics.port");
     // Array to hold test case data
     String[][] testCases = databaseReader.readTable("TestCases");
     // Total number of test cases
@@ -24,61 +87,409 @@ public class TestRunner {
     /**
      * Main method that initiates the test execution process.
      * It sets up a reporting mechanism, dynamically executes test cases in parallel,
-     * and captures their execution time and outcomes.
+     * and captures their execution time and outcomes. Each test and each of its steps is timed
+     * with nanosecond resolution into the StepTimer, whose percentiles end the report.
+     * Methods are queued by manual priority and then longest first, by their durations in earlier runs,
+     * and the report compares the predicted makespan with the actual one. Methods that failed on the infrastructure
+     * are retried on a fresh session, and methods that have been flaky in earlier runs are queued last.
+     * With -Drunner.incremental=true only methods whose inputs changed or that did not pass last time are run.
+     * With -Drunner.role=coordinator the methods are shared out to worker processes started with
+     * -Drunner.role=worker on the same queue directory, and their results are merged into this report;
+     * the process exits with status 1 if the coordinator had to give up on some of them.
+     * It also exits with status 1 if the run fails, e.g. because a TestCases row names an unknown method.
      * 
      * @param args Command-line arguments (not used in this implementation)
      */
     public static void main(String[] args) {
+        MetricsServer metricsServer = null;
+        // Non-zero if the run could not give every method a result
+        int exitStatus = 0;
         try {
+            // Load the test tables once, so lookups during the run are served from memory
+            databaseReader.preload("TestCases", "TestData");
             TestRunner runner = new TestRunner();
-            testCasesSize = runner.testCases.length; 
+            testCasesSize = runner.testCases.length;
+            // Stop before any browser is started if a test case names a method that does not exist
+            TestCaseExecutor.validateTestCases(runner.testCases);
+            metricsServer = metricsPort == null ? null : startMetricsServer(metricsPort);
+            if (ROLE_WORKER.equals(role)) {
+                runWorker();
+                return;
+            }
 
-            // Initialize reporting
-            ReportManager.initReport();
-            // Latch for synchronizing the completion of all test cases
-            CountDownLatch latch = new CountDownLatch(testCasesSize);
+            // Initialize reporting; results are streamed to the report file as they arrive
+            String reportPath = homeDir + "\\src\\main\\resources\\reports\\report.html";
+            ReportManager.initReport(reportPath);
+            GridCapacityScheduler scheduler = DynamicThreadManager.getScheduler();
+            scheduler.refreshFromHub();
+            // Queue the longest methods first, after any with a manual priority, using the durations of earlier runs
+            DurationHistory durationHistory = new DurationHistory(Paths.get(homeDir + "\\src\\main\\resources\\durations.properties"));
+            // Queue the chronic flakers last, from a flakiness of -Dretry.quarantineThreshold on
+            FlakinessTracker flakiness = new FlakinessTracker(Paths.get(homeDir + "\\src\\main\\resources\\flakiness.properties"),
+                    Double.parseDouble(System.getProperty("retry.quarantineThreshold", "0.5")));
+            Set<String> quarantined = flakiness.getQuarantined();
+            if (!quarantined.isEmpty()) {
+                System.out.println("Quarantined to the end of the queue: " + quarantined);
+            }
+            LongestFirstPlanner.Plan fullPlan = new LongestFirstPlanner(durationHistory,
+                    LongestFirstPlanner.loadPriorities("priorities.properties"), quarantined).plan(runner.testCases, scheduler.getCapacity());
+            // In an incremental run, replay the passes of methods whose inputs are unchanged and run only the others
+            LongestFirstPlanner.Plan plan = incremental ? replayUnchanged(fullPlan) : fullPlan;
             // Record the start time of parallel execution
-            long parallelStartTime = System.currentTimeMillis();
-
-            // Iteratively submit each test case for execution
-            for (String[] testCaseMethods : runner.testCases) {
-                String testCaseName = testCaseMethods[1];
-                for (int i = 2; i < testCaseMethods.length; i++) {
-                    String methodName = testCaseMethods[i];
-                    if (methodName != null && !methodName.isEmpty()) {
-                        DynamicThreadManager.submitTask(testCaseName, methodName, () -> {
-                            try {
-                                long startTime = System.currentTimeMillis();
-                                boolean passed = TestCaseExecutor.executeTestCase(methodName, testCaseName);
-                                System.out.println(passed);
-                                long endTime = System.currentTimeMillis();
-                                long executionTime = (endTime - startTime)/1000;
-                                String screenshotPath = homeDir + "\\src\\main\\resources\\screenshots\\" + testCaseName + ".png";
-                                ReportManager.addTestResult(testCaseName, passed, executionTime, screenshotPath);
-                            } finally {
-                                latch.countDown();  // Decrement the latch counter
-                            }
-                        });
-                    }
+            long parallelStartTime = System.nanoTime();
+
+            if (ROLE_COORDINATOR.equals(role)) {
+                if (coordinate(plan, durationHistory, flakiness) > 0) {
+                    exitStatus = 1;
                 }
+            } else {
+                runLocally(plan, durationHistory, flakiness);
             }
-
-            // Wait for the completion of all test case executions
-            latch.await();
             DynamicThreadManager.shutdown();
+            WebDriverManager.shutdown();
             // Record the end time of execution
-            long parallelEndTime = System.currentTimeMillis();
-            long actualExecutionTime = (parallelEndTime - parallelStartTime)/1000;
+            long parallelEndTime = System.nanoTime();
+            long actualExecutionTime = TimeUnit.NANOSECONDS.toMillis(parallelEndTime - parallelStartTime);
+            // Write all buffered test data and pending screenshots before reporting
+            testDataWriter.close();
+            durationHistory.save();
+            flakiness.save();
+            screenshotPipeline.close(60000);
+            if (resultCache != null) {
+                resultCache.save();
+            }
             // Finalize report
             ReportManager.finalizeReport();
             ReportManager.addActualExecutionTime(actualExecutionTime);  
-            ReportManager.saveReport(homeDir + "\\src\\main\\resources\\reports\\report.html");
+            ReportManager.addMakespan(plan.getPredictedMakespanMillis(), plan.getIdealMakespanMillis(), actualExecutionTime, plan.getSlots());
+            if (incremental) {
+                ReportManager.addIncrementalRun(fullPlan.getTests().size() - plan.getTests().size(), plan.getTests().size());
+            }
+            System.out.print(StepTimer.summary());
+            ReportManager.saveReport(reportPath);
 
         } catch (Exception e) {
             e.printStackTrace();
+            // E.g. a TestCases row naming an unknown method: the run did not happen
+            exitStatus = 1;
+        } finally {
+            if (metricsServer != null) {
+                metricsServer.stop();
+            }
+        }
+        if (exitStatus != 0) {
+            System.exit(exitStatus);
         }
     }
-    
+
+    /**
+     * Fingerprints the inputs of every planned method and replays the cached pass of each method whose
+     * fingerprint is unchanged into the report, instead of running it. A pass whose screenshot is no longer
+     * on disk runs again, so the report never links to a missing file.
+     *
+     * @param plan The methods of the full run.
+     * @return The plan of the methods that must run: those with changed inputs and those that did not pass last time.
+     * @throws IOException If the result cache cannot be read.
+     */
+    static LongestFirstPlanner.Plan replayUnchanged(LongestFirstPlanner.Plan plan) throws IOException {
+        resultCache = new ResultCache(Paths.get(homeDir + "\\src\\main\\resources\\results.properties"));
+        InputFingerprinter fingerprinter = new InputFingerprinter(databaseReader, TestCaseExecutor.getRegistry(), TestCaseExecutor.getScenarios());
+        Set<LongestFirstPlanner.PlannedTest> replayed = new HashSet<>();
+        for (LongestFirstPlanner.PlannedTest test : plan.getTests()) {
+            String key = DurationHistory.key(test.testCase, test.methodName);
+            String fingerprint = fingerprinter.fingerprint(test.testCase, test.methodName);
+            fingerprints.put(key, fingerprint);
+            String screenshotPath = resultCache.getReplayableScreenshot(key, fingerprint);
+            if (screenshotPath != null
+                    && (ScreenshotPipeline.NO_SCREENSHOT.equals(screenshotPath) || Files.exists(Paths.get(screenshotPath)))) {
+                replayed.add(test);
+                RunMetrics.recordResult(true);
+                ReportManager.addTestResult(test.testCase, plan.getMethodCount(test.testCase) > 1 ? test.methodName : null, true, 0,
+                        screenshotPath);
+            }
+        }
+        System.out.println("Replayed " + replayed.size() + " passes with unchanged inputs, running "
+                + (plan.getTests().size() - replayed.size()) + " test methods");
+        return plan.without(replayed);
+    }
+
+    /**
+     * Remembers the outcome of a method in the result cache of an incremental run, once its screenshot is stored.
+     *
+     * @param key The key of the test method.
+     * @param passed Whether it passed.
+     * @param screenshot The future of the path of its stored screenshot, or null if none was taken.
+     */
+    static void cacheResult(String key, boolean passed, CompletableFuture<String> screenshot) {
+        String fingerprint = fingerprints.get(key);
+        if (resultCache == null || fingerprint == null) {
+            return;
+        }
+        CompletableFuture<String> path = screenshot == null ? CompletableFuture.completedFuture(null) : screenshot;
+        path.whenComplete((saved, error) -> resultCache.record(key, fingerprint, passed,
+                error == null && saved != null ? saved : ScreenshotPipeline.NO_SCREENSHOT));
+    }
+
+    /**
+     * Runs all planned test methods in this process and waits for them to finish.
+     *
+     * @param plan The methods in the order they are queued.
+     * @param durationHistory Receives the duration of every method.
+     * @param flakiness Receives the outcome and attempts of every method.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    static void runLocally(LongestFirstPlanner.Plan plan, DurationHistory durationHistory, FlakinessTracker flakiness)
+            throws InterruptedException {
+        int queuedTests = plan.getTests().size();
+        // Latch for synchronizing the completion of all test methods
+        CountDownLatch latch = new CountDownLatch(queuedTests);
+        // Open as many sessions as tests can run at once before the first test needs one
+        int capacity = DynamicThreadManager.getScheduler().getCapacity();
+        WebDriverManager.prewarm(Math.min(queuedTests, capacity), capacity);
+
+        // Submit each test method for execution in plan order
+        for (LongestFirstPlanner.PlannedTest test : plan.getTests()) {
+            String testCaseName = test.testCase;
+            String methodName = test.methodName;
+            // Name each method in the report only when the test case has several
+            boolean severalMethods = plan.getMethodCount(testCaseName) > 1;
+            // The report lists the methods in the order they are submitted
+            long row = ReportManager.reserveRow();
+            DynamicThreadManager.submitTask(testCaseName, methodName, () -> {
+                FileWorkQueue.Outcome outcome = executeTimed(testCaseName, methodName);
+                String key = DurationHistory.key(testCaseName, methodName);
+                durationHistory.record(key, outcome.millis);
+                flakiness.record(key, outcome.passed, outcome.attempts);
+                // The screenshot is referenced by its hash once the pipeline has stored it
+                CompletableFuture<String> screenshot = screenshotPipeline.takeLastScreenshot();
+                cacheResult(key, outcome.passed, screenshot);
+                ReportManager.addTestResult(row, testCaseName, severalMethods ? methodName : null, outcome.passed, outcome.millis,
+                        screenshot);
+            }).whenComplete((done, error) -> {
+                if (error != null) {
+                    System.out.println("Test method " + testCaseName + "." + methodName + " did not complete: " + error);
+                }
+                latch.countDown();  // Decrement the latch counter, also if the task could not run
+            });
+        }
+
+        // Wait for the completion of all test case executions
+        latch.await();
+    }
+
+    /**
+     * Queues all planned test methods for the worker processes sharing the queue directory and merges
+     * their results into this process' report as they arrive. Methods of workers that stop answering
+     * are queued again for the others. The coordinator gives up after -Drunner.timeoutMillis, or once no worker
+     * has sent a heartbeat for WORKER_TIMEOUT_MILLIS; the methods left unfinished are then reported as failed.
+     *
+     * @param plan The methods in the order they are queued.
+     * @param durationHistory Receives the duration of every method.
+     * @param flakiness Receives the outcome and attempts of every method.
+     * @return The number of methods left unfinished, 0 if every method reported a result.
+     * @throws IOException If the queue cannot be used.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    static int coordinate(LongestFirstPlanner.Plan plan, DurationHistory durationHistory, FlakinessTracker flakiness)
+            throws IOException, InterruptedException {
+        FileWorkQueue queue = new FileWorkQueue(Paths.get(queueDir));
+        List<FileWorkQueue.WorkItem> items = new ArrayList<>();
+        for (LongestFirstPlanner.PlannedTest test : plan.getTests()) {
+            items.add(new FileWorkQueue.WorkItem(items.size(), test.testCase, test.methodName));
+        }
+        queue.enqueue(items);
+        // The report lists the methods in plan order, whichever worker finishes first
+        long[] rows = new long[items.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = ReportManager.reserveRow();
+        }
+        System.out.println("Queued " + items.size() + " test methods in " + queueDir + ", waiting for workers");
+        long deadline = System.currentTimeMillis() + COORDINATOR_TIMEOUT_MILLIS;
+        // Workers get one timeout to show up, and the run is given up once they have all been gone for as long
+        long lastWorkerSeen = System.currentTimeMillis();
+        Set<Integer> unfinished = new TreeSet<>();
+        for (FileWorkQueue.WorkItem item : items) {
+            unfinished.add(item.sequence);
+        }
+        while (!unfinished.isEmpty()) {
+            for (FileWorkQueue.Result result : queue.pollResults()) {
+                if (!unfinished.remove(result.item.sequence)) {
+                    continue;
+                }
+                String testCaseName = result.item.testCase;
+                String methodName = result.item.methodName;
+                FileWorkQueue.Outcome outcome = result.outcome;
+                String key = DurationHistory.key(testCaseName, methodName);
+                durationHistory.record(key, outcome.millis);
+                flakiness.record(key, outcome.passed, outcome.attempts);
+                cacheResult(key, outcome.passed, CompletableFuture.completedFuture(outcome.screenshotPath));
+                RunMetrics.recordResult(outcome.passed);
+                RunMetrics.recordRetries(outcome.attempts - 1);
+                ReportManager.addTestResult(rows[result.item.sequence], testCaseName, plan.getMethodCount(testCaseName) > 1 ? methodName : null,
+                        outcome.passed, outcome.millis,
+                        CompletableFuture.completedFuture(outcome.screenshotPath == null ? ScreenshotPipeline.NO_SCREENSHOT : outcome.screenshotPath));
+            }
+            if (unfinished.isEmpty()) {
+                break;
+            }
+            int requeued = queue.requeueStaleWorkers(WORKER_TIMEOUT_MILLIS);
+            if (requeued > 0) {
+                System.out.println("Queued " + requeued + " test methods of stopped workers again");
+            }
+            long now = System.currentTimeMillis();
+            if (queue.countLiveWorkers(WORKER_TIMEOUT_MILLIS) > 0) {
+                lastWorkerSeen = now;
+            }
+            String reason = now >= deadline ? "the run timed out after " + COORDINATOR_TIMEOUT_MILLIS + " ms"
+                    : now - lastWorkerSeen >= WORKER_TIMEOUT_MILLIS ? "no worker is alive" : null;
+            if (reason != null) {
+                queue.cancel();
+                reportUnfinished(plan, items, rows, unfinished, reason);
+                return unfinished.size();
+            }
+            Thread.sleep(QUEUE_POLL_MILLIS);
+        }
+        return 0;
+    }
+
+    /**
+     * Reports the methods a coordinator gave up on as failed.
+     *
+     * @param plan The methods of the run.
+     * @param items The queued methods by sequence.
+     * @param rows The report rows reserved for the queued methods, by sequence.
+     * @param unfinished The sequences of the methods without a result.
+     * @param reason Why the coordinator gave up.
+     */
+    private static void reportUnfinished(LongestFirstPlanner.Plan plan, List<FileWorkQueue.WorkItem> items, long[] rows,
+            Set<Integer> unfinished, String reason) {
+        List<String> names = new ArrayList<>();
+        for (int sequence : unfinished) {
+            FileWorkQueue.WorkItem item = items.get(sequence);
+            names.add(DurationHistory.key(item.testCase, item.methodName));
+            RunMetrics.recordResult(false);
+            ReportManager.addTestResult(rows[sequence], item.testCase, plan.getMethodCount(item.testCase) > 1 ? item.methodName : null,
+                    false, 0, null);
+        }
+        System.err.println("Gave up on " + unfinished.size() + " test methods because " + reason + ": " + names);
+    }
+
+    /**
+     * Runs test methods taken from the queue directory until the coordinator's run is drained,
+     * stealing methods claimed by other workers once nothing is pending. Results and screenshots are
+     * left for the coordinator, which writes the report.
+     *
+     * @throws IOException If the queue cannot be used.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    static void runWorker() throws IOException, InterruptedException {
+        GridCapacityScheduler scheduler = DynamicThreadManager.getScheduler();
+        scheduler.refreshFromHub();
+        int slots = Integer.getInteger("runner.slots", scheduler.getCapacity());
+        System.out.println("Worker " + workerId + " taking up to " + slots + " test methods at a time from " + queueDir);
+        int ran = new QueueWorker(new FileWorkQueue(Paths.get(queueDir)), workerId, slots,
+                Integer.getInteger("runner.prefetch", 2), QUEUE_POLL_MILLIS).run(item -> {
+                    CompletableFuture<FileWorkQueue.Outcome> result = new CompletableFuture<>();
+                    DynamicThreadManager.submitTask(item.testCase, item.methodName, () -> {
+                        try {
+                            FileWorkQueue.Outcome outcome = executeTimed(item.testCase, item.methodName);
+                            // Report the screenshot's stored path once the pipeline has it
+                            CompletableFuture<String> screenshot = screenshotPipeline.takeLastScreenshot();
+                            if (screenshot == null) {
+                                result.complete(outcome);
+                            } else {
+                                screenshot.whenComplete((path, error) -> result.complete(
+                                        new FileWorkQueue.Outcome(outcome.passed, outcome.millis, error == null ? path : null, outcome.attempts)));
+                            }
+                        } catch (RuntimeException e) {
+                            result.completeExceptionally(e);
+                        }
+                    }).whenComplete((done, error) -> {
+                        // Release the worker's slot also if the scheduler stopped before running the task
+                        if (error != null) {
+                            result.completeExceptionally(error);
+                        }
+                    });
+                    return result;
+                });
+        DynamicThreadManager.shutdown();
+        WebDriverManager.shutdown();
+        testDataWriter.close();
+        screenshotPipeline.close(60000);
+        System.out.println("Worker " + workerId + " ran " + ran + " test methods");
+        System.out.print(StepTimer.summary());
+    }
+
+    /**
+     * Runs a test method, retrying it after infrastructure failures, and records its duration in the step timings,
+     * the run metrics and the limiter.
+     *
+     * @param testCaseName The name of the test case.
+     * @param methodName The method named in the TestCases row.
+     * @return The outcome, without the screenshot.
+     */
+    private static FileWorkQueue.Outcome executeTimed(String testCaseName, String methodName) {
+        long startTime = StepTimer.start();
+        RetryPolicy.Result result = TestCaseExecutor.executeWithRetries(methodName, testCaseName);
+        boolean passed = result.passed;
+        System.out.println(passed);
+        long elapsedNanos = System.nanoTime() - startTime;
+        StepTimer.recordNanos("test", elapsedNanos);
+        RunMetrics.recordResult(passed);
+        RunMetrics.recordRetries(result.attempts - 1);
+        long executionTime = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        DynamicThreadManager.recordLatency(methodName, executionTime);
+        return new FileWorkQueue.Outcome(passed, executionTime, null, result.attempts);
+    }
+
+    /**
+     * Starts the Prometheus metrics endpoint showing the live state of the run: scheduler queue and slots,
+     * admission limit, session and connection pools, test outcomes, host load and step timings.
+     * Every metric is read from atomics or volatiles when scraped, so the endpoint never slows the test threads.
+     *
+     * @param port The port to serve /metrics on.
+     * @return The started server.
+     * @throws IOException If the port cannot be bound.
+     */
+    static MetricsServer startMetricsServer(int port) throws IOException {
+        GridCapacityScheduler scheduler = DynamicThreadManager.getScheduler();
+        AdaptiveConcurrencyLimiter limiter = DynamicThreadManager.getLimiter();
+        WebDriverPool sessions = WebDriverManager.getPool();
+        ConnectionPool connections = DatabaseReader.getDefaultPool();
+        MetricsServer server = new MetricsServer(port)
+                .gauge("selenium_scheduler_queue_depth", "Tasks waiting for a grid slot", scheduler::getQueueDepth)
+                .gauge("selenium_scheduler_running_tasks", "Tasks running on a worker thread", scheduler::getRunningTasks)
+                .gauge("selenium_scheduler_available_permits", "Grid slot permits available for new tasks", scheduler::getAvailablePermits)
+                .gauge("selenium_scheduler_capacity", "Grid slots the scheduler is sized to", scheduler::getCapacity)
+                .gauge("selenium_scheduler_hub_free_slots", "Free slots reported by the hub on its last poll", scheduler::getFreeSlots)
+                .gauge("selenium_limiter_limit", "Current adaptive concurrency limit", limiter::getLimit)
+                .gauge("selenium_limiter_in_flight", "Tasks admitted by the adaptive limiter", limiter::getInFlight)
+                .gauge("selenium_sessions_active", "Grid sessions borrowed by tests", sessions::getActiveCount)
+                .gauge("selenium_sessions_idle", "Grid sessions idle in the pool", sessions::getIdleCount)
+                .gauge("selenium_sessions_opening", "Grid sessions being opened", sessions::getOpeningCount)
+                .counter("selenium_sessions_created_total", "Grid sessions opened by the pool", sessions::getCreatedCount)
+                .gauge("selenium_db_connections_active", "Database connections borrowed", connections::getActiveCount)
+                .gauge("selenium_db_connections_idle", "Database connections idle in the pool", connections::getIdleCount)
+                .counter("selenium_db_connections_created_total", "Database connections opened", connections::getCreatedCount)
+                .counter("selenium_db_connection_borrows_total", "Database connections borrowed from the pool", connections::getBorrowCount)
+                .counter("selenium_db_connection_wait_seconds_total", "Time spent waiting for a database connection",
+                        () -> connections.getTotalWaitNanos() / 1e9)
+                .counter("selenium_tests_passed_total", "Test methods passed", RunMetrics::getPassedCount)
+                .counter("selenium_tests_failed_total", "Test methods failed", RunMetrics::getFailedCount)
+                .counter("selenium_test_retries_total", "Test method attempts repeated after infrastructure failures", RunMetrics::getRetryCount)
+                .gauge("selenium_tests_passed_per_second", "Test methods passed per second over the last 10 seconds", RunMetrics::getPassedPerSecond)
+                .gauge("selenium_tests_failed_per_second", "Test methods failed per second over the last 10 seconds", RunMetrics::getFailedPerSecond)
+                .gauge("selenium_host_cpu_load_percent", "Host CPU load of the last sample", () -> SystemInfoUtil.getSnapshot().cpuLoad)
+                .gauge("selenium_host_cpu_load_smoothed_percent", "Smoothed host CPU load", () -> SystemInfoUtil.getSnapshot().smoothedCpuLoad)
+                .gauge("selenium_host_memory_utilization_percent", "Host memory in use", () -> SystemInfoUtil.getSnapshot().memoryUtilization)
+                .gauge("selenium_host_sample_age_seconds", "Time since the host was last sampled",
+                        () -> (System.nanoTime() - SystemInfoUtil.getSnapshot().sampledAtNanos) / 1e9)
+                .summary("selenium_step_duration_seconds", "Duration of test steps", "step", StepTimer::getHistograms);
+        server.start();
+        System.out.println("Metrics at http://localhost:" + server.getPort() + "/metrics");
+        return server;
+    }
+
     /**
      * Retrieves the test cases data.
      * 
@@ -105,4 +516,22 @@ public class TestRunner {
     public static DatabaseReader getDatabaseReader() {
         return databaseReader;
     }
+
+    /**
+     * Retrieves the buffer used to write scraped test data.
+     * 
+     * @return WriteBehindBuffer for the TestData table.
+     */
+    public static WriteBehindBuffer getTestDataWriter() {
+        return testDataWriter;
+    }
+
+    /**
+     * Retrieves the pipeline writing screenshots.
+     * 
+     * @return ScreenshotPipeline shared by all test threads.
+     */
+    public static ScreenshotPipeline getScreenshotPipeline() {
+        return screenshotPipeline;
+    }
 }
@@ -0,0 +1,221 @@
+package reporting;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import core.LatencyHistogram;
+
+/**
+ * MetricsServer serves the live state of a run at /metrics in the Prometheus text format.
+ * Metrics are registered once as suppliers that read atomics, volatiles and LongAdders, and are only evaluated
+ * when the endpoint is scraped; the server answers on its own single thread, so a scrape never runs on
+ * or waits for a test thread.
+ * <pre>
+ * MetricsServer server = new MetricsServer(9404);
+ * server.gauge("selenium_scheduler_queue_depth", "Tasks waiting for a grid slot", scheduler::getQueueDepth);
+ * server.start();
+ * </pre>
+ */
+public class MetricsServer {
+
+    // Content type of the Prometheus text exposition format
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    // Quantiles reported for each summary
+    private static final double[] QUANTILES = { 0.5, 0.95, 0.99 };
+
+    private final int port;
+    // Registered metrics, in registration order; iterated by scrapes without locking
+    private final List<Metric> metrics = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Creates a server that is not listening yet.
+     *
+     * @param port The port to listen on, or 0 for any free port.
+     */
+    public MetricsServer(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Registers a value that can go up and down, such as a queue depth.
+     *
+     * @param name The metric name.
+     * @param help The description shown by Prometheus.
+     * @param value Reads the current value.
+     * @return This server, for chaining.
+     */
+    public MetricsServer gauge(String name, String help, DoubleSupplier value) {
+        metrics.add(new Metric(name, help, "gauge", out -> sample(out, name, "", value.getAsDouble())));
+        return this;
+    }
+
+    /**
+     * Registers a value that only goes up, such as the number of tests passed.
+     *
+     * @param name The metric name, by convention ending in _total.
+     * @param help The description shown by Prometheus.
+     * @param value Reads the current value.
+     * @return This server, for chaining.
+     */
+    public MetricsServer counter(String name, String help, DoubleSupplier value) {
+        metrics.add(new Metric(name, help, "counter", out -> sample(out, name, "", value.getAsDouble())));
+        return this;
+    }
+
+    /**
+     * Registers latency histograms as a summary with p50/p95/p99, count and sum in seconds,
+     * one series per histogram.
+     *
+     * @param name The metric name, by convention ending in _seconds.
+     * @param help The description shown by Prometheus.
+     * @param label The name of the label telling the histograms apart.
+     * @param histograms Reads the current histograms by label value, e.g. StepTimer::getHistograms.
+     * @return This server, for chaining.
+     */
+    public MetricsServer summary(String name, String help, String label, Supplier<? extends Map<String, LatencyHistogram>> histograms) {
+        metrics.add(new Metric(name, help, "summary", out -> {
+            for (Map.Entry<String, LatencyHistogram> entry : histograms.get().entrySet()) {
+                String labelValue = label + "=\"" + escape(entry.getKey()) + "\"";
+                LatencyHistogram histogram = entry.getValue();
+                for (double quantile : QUANTILES) {
+                    sample(out, name, "{" + labelValue + ",quantile=\"" + quantile + "\"}", seconds(histogram.getPercentile(quantile * 100)));
+                }
+                sample(out, name + "_sum", "{" + labelValue + "}", seconds(histogram.getTotal()));
+                sample(out, name + "_count", "{" + labelValue + "}", histogram.getCount());
+            }
+        }));
+        return this;
+    }
+
+    /**
+     * Starts answering scrapes.
+     *
+     * @throws IOException If the port cannot be bound.
+     */
+    public synchronized void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handle);
+        server.start();
+    }
+
+    /**
+     * @return The port the server listens on, which differs from the requested one if that was 0.
+     */
+    public synchronized int getPort() {
+        return server == null ? port : server.getAddress().getPort();
+    }
+
+    /**
+     * Stops answering scrapes.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * Renders all registered metrics.
+     *
+     * @return The metrics in the Prometheus text format.
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder();
+        for (Metric metric : metrics) {
+            out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+            out.append("# TYPE ").append(metric.name).append(' ').append(metric.type).append('\n');
+            metric.samples.write(out);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Answers a scrape with the current metrics.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Writes one sample line, printing whole numbers without a fraction.
+     */
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(String.format(Locale.ROOT, "%s", value));
+        }
+        out.append('\n');
+    }
+
+    /**
+     * Converts nanoseconds to seconds, the base unit of Prometheus.
+     */
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    /**
+     * Escapes a label value.
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Writes the samples of a metric.
+     */
+    private interface Samples {
+        void write(StringBuilder out);
+    }
+
+    /**
+     * A registered metric with its metadata.
+     */
+    private static class Metric {
+        final String name;
+        final String help;
+        final String type;
+        final Samples samples;
+
+        Metric(String name, String help, String type, Samples samples) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.samples = samples;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package reporting;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * RateMeter counts events per second over a sliding window of whole seconds, e.g. tests passed per second.
+ * Each second has its own counter in a ring that is reused once the second has left the window,
+ * so marking an event is a compare and an atomic increment, without locks or allocation.
+ * An event marked while its slot is being reused for a new second may be lost; the rate is meant for
+ * live monitoring, exact totals are kept by the counters next to it.
+ */
+public class RateMeter {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final int windowSeconds;
+    private final LongSupplier clock;
+    // Events per slot; the slot of a second is second % slot count
+    private final AtomicLongArray counts;
+    // Second each slot currently counts
+    private final AtomicLongArray slotSeconds;
+
+    /**
+     * Creates a meter on the system clock.
+     *
+     * @param windowSeconds The number of whole seconds the rate is averaged over.
+     */
+    public RateMeter(int windowSeconds) {
+        this(windowSeconds, System::nanoTime);
+    }
+
+    /**
+     * Creates a meter on a given clock.
+     *
+     * @param windowSeconds The number of whole seconds the rate is averaged over.
+     * @param clock The clock in nanoseconds; System::nanoTime outside of tests.
+     */
+    public RateMeter(int windowSeconds, LongSupplier clock) {
+        this.windowSeconds = windowSeconds;
+        this.clock = clock;
+        // One more slot than the window, for the second in progress
+        this.counts = new AtomicLongArray(windowSeconds + 1);
+        this.slotSeconds = new AtomicLongArray(windowSeconds + 1);
+    }
+
+    /**
+     * Counts one event in the current second.
+     */
+    public void mark() {
+        long second = clock.getAsLong() / NANOS_PER_SECOND;
+        int slot = (int) Math.floorMod(second, (long) counts.length());
+        long slotSecond = slotSeconds.get(slot);
+        if (slotSecond != second && slotSeconds.compareAndSet(slot, slotSecond, second)) {
+            counts.set(slot, 0);
+        }
+        counts.incrementAndGet(slot);
+    }
+
+    /**
+     * Averages the events of the last whole seconds; the second in progress is not counted.
+     *
+     * @return The events per second over the window.
+     */
+    public double getRatePerSecond() {
+        long second = clock.getAsLong() / NANOS_PER_SECOND;
+        long events = 0;
+        for (int slot = 0; slot < counts.length(); slot++) {
+            long slotSecond = slotSeconds.get(slot);
+            if (slotSecond < second && slotSecond >= second - windowSeconds) {
+                events += counts.get(slot);
+            }
+        }
+        return (double) events / windowSeconds;
+    }
+}
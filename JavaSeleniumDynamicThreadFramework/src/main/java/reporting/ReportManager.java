@@ -1,140 +1,314 @@
 package reporting;
 
-import mainpackage.TestRunner;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import core.LatencyHistogram;
+import core.StepTimer;
 
 /**
  * ReportManager is responsible for generating and managing test execution reports.
- * It stores test results and compiles them into an HTML report.
+ * It streams each test result into an HTML report file as soon as it is added, so memory use stays flat
+ * however many tests run and the report written so far survives an aborted run.
+ * Times are passed in milliseconds and shown in seconds; the finished report ends with the percentiles
+ * of every step type recorded by the StepTimer during the run.
  */
 public class ReportManager {
-    // StringBuilder for accumulating report content
-    private static final StringBuilder reportContent = new StringBuilder();
-    // Map to store test results keyed by test case name
-    private static final Map<String, TestResult> testResults = Collections.synchronizedMap(new LinkedHashMap<>());
-    // List to maintain the order of test cases
-    private static final List<String> testCaseOrder = new ArrayList<>();
+    // Writer streaming the report to disk, open between initReport and saveReport
+    private static volatile StreamingReportWriter writer;
+    // Results of the current run, written in the order their tests were submitted
+    private static volatile ResultStore results = new ResultStore();
 
     /**
-     * Initializes the report with the current date and time and sets up the basic HTML structure.
+     * Creates the report file with the current date and time and sets up the basic HTML structure.
+     * Starts a new run of step timings.
+     *
+     * @param filePath The file path the report is streamed to.
      */
-    public static void initReport() {
+    public static synchronized void initReport(String filePath) {
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         String currentDateAndTime = sdf.format(new Date());
+        results = new ResultStore();
+        StepTimer.reset();
 
-        // Setting up the initial HTML structure for the report
-        reportContent.append("<html><head><title>Test Report</title></head><body>");
-        reportContent.append("<h1 style='text-align:center;'>Test Execution Report (" + currentDateAndTime + ")</h1>");
-        reportContent.append("<table border='1'><tr><th><b>Test Case</b></th><th><b>Execution Time (Seconds)</b></th><th><b>Screenshot</b></th></tr>");
+        try {
+            writer = new StreamingReportWriter(Paths.get(filePath));
+            // Setting up the initial HTML structure for the report
+            writer.write("<html><head><title>Test Report</title></head><body>");
+            writer.write("<h1 style='text-align:center;'>Test Execution Report (" + currentDateAndTime + ")</h1>");
+            writer.write("<table border='1'><tr><th><b>Test Case</b></th><th><b>Execution Time (Seconds)</b></th><th><b>Screenshot</b></th></tr>");
+            writer.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
-     * Adds a test result to the report.
+     * Adds a test result to the report and writes its row to the report file.
      *
      * @param testCase The name of the test case.
      * @param passed Whether the test case passed or failed.
-     * @param time The execution time of the test case in seconds.
+     * @param time The execution time of the test case in milliseconds.
      * @param screenshotPath The file path to the screenshot captured during the test execution.
      */
-    public synchronized static void addTestResult(String testCase, boolean passed, long time, String screenshotPath) {
-        testResults.put(testCase, new TestResult(time, screenshotPath, passed));
-        testCaseOrder.add(testCase);
+    public static void addTestResult(String testCase, boolean passed, long time, String screenshotPath) {
+        addTestResult(testCase, null, passed, time, screenshotPath);
     }
 
     /**
-     * Finalizes the report by summarizing the results and closing the HTML tags.
+     * Adds the result of one method of a test case to the report, after the rows reserved so far.
+     *
+     * @param testCase The name of the test case.
+     * @param methodName The name of the test method, or null if the test case has a single method.
+     * @param passed Whether the method passed or failed.
+     * @param time The execution time of the method in milliseconds.
+     * @param screenshotPath The file path to the screenshot captured during the test execution.
      */
-    public static void finalizeReport() {
-        int passed = 0, failed = 0;
-        long totalTime = 0;
-        TestRunner runner = new TestRunner();
-        String[][] testcases = runner.getTestCases();
-        for (String[] testcasearray : testcases) {
-            String testCase = testcasearray[1];
-            TestResult result = testResults.get(testCase);
-            totalTime += result.time;
-            if (result.passed) {
-                passed++;
-            } else {
-                failed++;
-            }
+    public static void addTestResult(String testCase, String methodName, boolean passed, long time, String screenshotPath) {
+        addTestResult(results.reserve(), testCase, methodName, passed, time, CompletableFuture.completedFuture(screenshotPath));
+    }
 
-            addTestCase(testCase, result.time, result.screenshotPath, result.passed);
-        }
+    /**
+     * Adds the result of one method of a test case whose screenshot is still being saved, after the rows reserved so far.
+     *
+     * @param testCase The name of the test case.
+     * @param methodName The name of the test method, or null if the test case has a single method.
+     * @param passed Whether the method passed or failed.
+     * @param time The execution time of the method in milliseconds.
+     * @param screenshot The future of the path of the stored screenshot, or null if none was taken.
+     */
+    public static void addTestResult(String testCase, String methodName, boolean passed, long time, CompletableFuture<String> screenshot) {
+        addTestResult(results.reserve(), testCase, methodName, passed, time, screenshot);
+    }
 
+    /**
+     * Reserves the row of a test method when it is submitted, so the report lists results in submission order
+     * however the methods finish.
+     *
+     * @return The row to add the method's result under.
+     */
+    public static long reserveRow() {
+        return results.reserve();
+    }
+
+    /**
+     * Adds the result of one method of a test case under the row reserved for it. Does not wait: the row is written
+     * once every earlier row has been written and its screenshot is on disk, by the thread that finds it ready.
+     *
+     * @param row The row returned by {@link #reserveRow()}.
+     * @param testCase The name of the test case.
+     * @param methodName The name of the test method, or null if the test case has a single method.
+     * @param passed Whether the method passed or failed.
+     * @param time The execution time of the method in milliseconds.
+     * @param screenshot The future of the path of the stored screenshot, or null if none was taken.
+     */
+    public static void addTestResult(long row, String testCase, String methodName, boolean passed, long time,
+            CompletableFuture<String> screenshot) {
+        ResultStore store = results;
+        CompletableFuture<String> path = screenshot == null ? CompletableFuture.completedFuture(ScreenshotPipeline.NO_SCREENSHOT) : screenshot;
+        store.record(row, testCase, methodName, passed, time, path);
+        // Rows that became ready together are written with a single flush
+        path.whenComplete((saved, error) -> store.drain(ReportManager::addTestCase, ReportManager::flush));
+    }
+
+    /**
+     * Finalizes the report by writing any remaining rows, summarizing the results and step timings and closing the HTML tags.
+     * A test case counts as passed when all of its methods passed.
+     */
+    public static synchronized void finalizeReport() {
+        ResultStore store = results;
+        store.drainAll(ReportManager::addTestCase);
+        flush();
         // Append summary and close HTML tags
-        reportContent.append("</table>");
-        reportContent.append("<h2>Summary</h2>");
-        reportContent.append("Total Test Cases Passed: " + passed);
-        reportContent.append("<br/>Total Test Cases Failed: " + failed);
-        reportContent.append("<br/>Total Execution Time: " + totalTime + " Seconds");
-        reportContent.append("</body></html>");
+        append("</table>"
+                + "<h2>Summary</h2>"
+                + "Total Test Cases Passed: " + store.getPassedTestCases()
+                + "<br/>Total Test Cases Failed: " + store.getFailedTestCases()
+                + "<br/>Total Execution Time: " + seconds(store.getTotalTime()) + " Seconds"
+                + stepTimings()
+                + "</body></html>");
+    }
+
+    /**
+     * Retrieves the results of the current run.
+     *
+     * @return The ResultStore the results are recorded in.
+     */
+    public static ResultStore getResults() {
+        return results;
     }
 
     /**
      * Adds the actual execution time of the test suite to the report.
      *
-     * @param time The actual execution time of the test suite in seconds.
+     * @param time The actual execution time of the test suite in milliseconds.
      */
-    public static void addActualExecutionTime(long time) {
-        reportContent.append("<h2>Actual Execution Time</h2>");
-        reportContent.append("Total Actual Execution Time: " + time + " Seconds");
+    public static synchronized void addActualExecutionTime(long time) {
+        append("<h2>Actual Execution Time</h2>"
+                + "Total Actual Execution Time: " + seconds(time) + " Seconds");
     }
 
     /**
-     * Adds an individual test case's result to the report.
+     * Adds the predicted makespan of the run next to the actual one, so it shows how close the ordering
+     * came to spreading the work evenly over the slots.
      *
-     * @param testCaseName The name of the test case.
-     * @param executionTime The execution time of the test case in seconds.
-     * @param screenshotPath The file path to the screenshot captured during the test execution.
-     * @param passed Whether the test case passed or failed.
+     * @param predictedMillis The makespan predicted from earlier durations in milliseconds.
+     * @param idealMillis The total expected work divided by the slots in milliseconds, the best any order could do.
+     * @param actualMillis The actual wall-clock time of the run in milliseconds.
+     * @param slots The number of tests that could run at once.
+     */
+    public static synchronized void addMakespan(long predictedMillis, long idealMillis, long actualMillis, int slots) {
+        append("<h2>Makespan</h2>"
+                + "Predicted Makespan: " + seconds(predictedMillis) + " Seconds"
+                + "<br/>Ideal Makespan (Total Work / " + slots + " Slots): " + seconds(idealMillis) + " Seconds"
+                + "<br/>Actual Makespan: " + seconds(actualMillis) + " Seconds");
+    }
+
+    /**
+     * Adds how much of an incremental run was replayed from the result cache instead of being run.
+     *
+     * @param replayed The number of methods whose earlier pass was replayed.
+     * @param executed The number of methods that ran.
      */
-    private static void addTestCase(String testCaseName, long executionTime, String screenshotPath, boolean passed) {
-        String color = passed ? "green" : "red";
-        reportContent.append("<tr style='background-color:" + color + "'>");
-        reportContent.append("<td style='text-align:center;' width='400' height='400'><b>" + testCaseName + "</b></td>");
-        reportContent.append("<td style='text-align:center;' width='400' height='400'><b>" + executionTime + "</b></td>");
-        String screenshotHtml = screenshotPath.equals("No Screenshot")
-                                 ? "No Screenshot"
-                                 : "<img src='" + screenshotPath + "' width='700', height='400'/>";
-        reportContent.append("<td style='text-align:center;'>" + screenshotHtml + "</td>");
-        reportContent.append("</tr>");
+    public static synchronized void addIncrementalRun(int replayed, int executed) {
+        append("<h2>Incremental Run</h2>"
+                + "Replayed Passes (Inputs Unchanged): " + replayed
+                + "<br/>Executed (Changed or Previously Failed): " + executed);
     }
 
     /**
-     * A private class within ReportManager to hold the result of a single test case.
+     * Writes the row of an individual result to the report. Only called by the thread draining the results.
+     *
+     * @param result The result to write.
      */
-    private static class TestResult {
-        long time;
-        String screenshotPath;
-        boolean passed;
+    private static void addTestCase(ResultStore.TestResult result) {
+        String color = result.passed ? "green" : "red";
+        String screenshotPath = result.getScreenshotPath();
+        String screenshotHtml = screenshotPath.equals(ScreenshotPipeline.NO_SCREENSHOT)
+                                 ? ScreenshotPipeline.NO_SCREENSHOT
+                                 : "<a href='" + screenshotPath + "'><img src='"
+                                   + ScreenshotPipeline.thumbnailPath(screenshotPath) + "'/></a>";
+        String name = result.methodName == null ? result.testCase : result.testCase + "<br/>" + result.methodName;
+        append("<tr style='background-color:" + color + "'>"
+                + "<td style='text-align:center;' width='400' height='400'><b>" + name + "</b></td>"
+                + "<td style='text-align:center;' width='400' height='400'><b>" + seconds(result.time) + "</b></td>"
+                + "<td style='text-align:center;'>" + screenshotHtml + "</td>"
+                + "</tr>", false);
+    }
 
-        TestResult(long time, String screenshotPath, boolean passed) {
-            this.time = time;
-            this.screenshotPath = screenshotPath;
-            this.passed = passed;
+    /**
+     * Builds the table of step timings recorded since the report was started.
+     *
+     * @return The HTML of the table, or an empty string if no step was timed.
+     */
+    private static String stepTimings() {
+        Map<String, LatencyHistogram> histograms = StepTimer.getHistograms();
+        if (histograms.isEmpty()) {
+            return "";
+        }
+        StringBuilder html = new StringBuilder("<h2>Step Timings</h2><table border='1'><tr><th><b>Step</b></th><th><b>Count</b></th>"
+                + "<th><b>p50 (ms)</b></th><th><b>p95 (ms)</b></th><th><b>p99 (ms)</b></th><th><b>Max (ms)</b></th></tr>");
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            html.append("<tr><td>").append(entry.getKey())
+                .append("</td><td>").append(histogram.getCount())
+                .append("</td><td>").append(millis(histogram.getPercentile(50)))
+                .append("</td><td>").append(millis(histogram.getPercentile(95)))
+                .append("</td><td>").append(millis(histogram.getPercentile(99)))
+                .append("</td><td>").append(millis(histogram.getMax()))
+                .append("</td></tr>");
         }
+        return html.append("</table>").toString();
+    }
+
+    /**
+     * Formats a time in milliseconds as seconds with two decimals.
+     */
+    private static String seconds(long millis) {
+        return String.format(Locale.ROOT, "%.2f", millis / 1000.0);
+    }
+
+    /**
+     * Formats a duration in nanoseconds as milliseconds with three decimals.
+     */
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", StepTimer.millis(nanos));
+    }
+
+    /**
+     * Writes a piece of the report and flushes it to the file, so it is on disk even if the run is aborted.
+     * Callers hold the class lock or drain the results, so only one thread writes at a time.
+     *
+     * @param html The HTML to append.
+     */
+    private static void append(String html) {
+        append(html, true);
     }
 
     /**
-     * Writes the report content to a specified file path.
+     * Writes a piece of the report.
+     *
+     * @param html The HTML to append.
+     * @param flush Whether to flush it to the file right away.
+     */
+    private static void append(String html, boolean flush) {
+        StreamingReportWriter current = writer;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.write(html);
+            if (flush) {
+                current.flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Flushes the rows written so far to the file.
+     */
+    private static void flush() {
+        StreamingReportWriter current = writer;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Closes the report file. If the file path differs from the one the report was streamed to,
+     * the report is moved there.
      *
      * @param filePath The file path where the report should be saved.
      */
-    public static void saveReport(String filePath) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
-            writer.write(reportContent.toString());
+    public static synchronized void saveReport(String filePath) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+            Path target = Paths.get(filePath);
+            if (!writer.getPath().toAbsolutePath().normalize().equals(target.toAbsolutePath().normalize())) {
+                Files.move(writer.getPath(), target, StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            writer = null;
         }
     }
 }
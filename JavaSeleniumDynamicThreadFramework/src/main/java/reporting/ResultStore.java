@@ -0,0 +1,276 @@
+package reporting;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * ResultStore collects test results from many threads and hands them to a consumer in submission order.
+ * A test reserves its sequence number when it is submitted; its result is recorded under that number once it is done,
+ * and results are consumed in sequence order as soon as all earlier ones are in, then dropped,
+ * so only results that have not been consumed yet are held in memory.
+ * A result can carry a screenshot that is still being saved; it is consumed once the screenshot is on disk,
+ * so a slow screenshot holds back later rows without blocking any thread.
+ * Each test case may report several methods; per test case the store keeps running totals,
+ * from which the summary is computed without going back to the database.
+ * Reserving and recording take no lock. A thread that drains first wins a flag that makes it the only drainer;
+ * other threads leave their results to it, so the consumer runs on one thread at a time without ever
+ * holding up a thread that records. Only when results are recorded faster than they can be consumed, and the
+ * backlog grows past a bound, does a thread that drains wait for the drainer, so memory use stays bounded.
+ */
+public class ResultStore {
+
+    // Ready results left to the drainer before a draining thread waits for it to catch up
+    private static final long MAX_BACKLOG = 10000;
+    // Time a thread waits before checking the backlog again
+    private static final long BACKLOG_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    // Sequence number the next submitted result is reserved
+    private final AtomicLong nextSequence = new AtomicLong();
+    // Recorded results that have not been consumed yet, by sequence number
+    private final ConcurrentSkipListMap<Long, TestResult> unconsumed = new ConcurrentSkipListMap<>();
+    // Set while a thread drains; only that thread reads or advances nextToDrain
+    private final AtomicBoolean draining = new AtomicBoolean();
+    // Sequence number of the next result to consume
+    private volatile long nextToDrain;
+    // Results consumed so far, only advanced by the drainer
+    private volatile long consumedCount;
+    private final ConcurrentMap<String, TestCaseTotals> testCases = new ConcurrentHashMap<>();
+    private final LongAdder totalTime = new LongAdder();
+    private final LongAdder resultCount = new LongAdder();
+
+    /**
+     * Reserves the sequence number of a result when its test is submitted, so the result is consumed
+     * in submission order whenever it completes.
+     *
+     * @return The sequence number to record the result under.
+     */
+    public long reserve() {
+        return nextSequence.getAndIncrement();
+    }
+
+    /**
+     * Records a result after all results reserved so far.
+     *
+     * @param testCase The name of the test case.
+     * @param methodName The name of the test method, or null if the test case has a single method.
+     * @param passed Whether the method passed.
+     * @param time The execution time of the method in milliseconds.
+     * @param screenshotPath The file path of the screenshot captured for the method.
+     * @return The sequence number of the result.
+     */
+    public long record(String testCase, String methodName, boolean passed, long time, String screenshotPath) {
+        return record(testCase, methodName, passed, time, CompletableFuture.completedFuture(screenshotPath));
+    }
+
+    /**
+     * Records a result whose screenshot may still be being saved after all results reserved so far.
+     *
+     * @param testCase The name of the test case.
+     * @param methodName The name of the test method, or null if the test case has a single method.
+     * @param passed Whether the method passed.
+     * @param time The execution time of the method in milliseconds.
+     * @param screenshot The future of the path of the screenshot captured for the method.
+     * @return The sequence number of the result.
+     */
+    public long record(String testCase, String methodName, boolean passed, long time, CompletableFuture<String> screenshot) {
+        long sequence = reserve();
+        record(sequence, testCase, methodName, passed, time, screenshot);
+        return sequence;
+    }
+
+    /**
+     * Records a result under the sequence number reserved for it. The result is not consumed before every
+     * earlier result has been recorded and its screenshot's future has completed; the caller drains again once it has.
+     *
+     * @param sequence The sequence number returned by {@link #reserve()}.
+     * @param testCase The name of the test case.
+     * @param methodName The name of the test method, or null if the test case has a single method.
+     * @param passed Whether the method passed.
+     * @param time The execution time of the method in milliseconds.
+     * @param screenshot The future of the path of the screenshot captured for the method.
+     */
+    public void record(long sequence, String testCase, String methodName, boolean passed, long time,
+            CompletableFuture<String> screenshot) {
+        TestCaseTotals totals = testCases.computeIfAbsent(testCase, k -> new TestCaseTotals());
+        totals.methods.incrementAndGet();
+        if (!passed) {
+            totals.failures.incrementAndGet();
+        }
+        totalTime.add(time);
+        resultCount.increment();
+        unconsumed.put(sequence, new TestResult(sequence, testCase, methodName, passed, time, screenshot));
+    }
+
+    /**
+     * Hands the results that are ready, in sequence order, to the consumer. A result is ready once every result
+     * reserved before it has been consumed and its screenshot has been saved.
+     *
+     * @param consumer The consumer of the results.
+     */
+    public void drain(Consumer<TestResult> consumer) {
+        drain(consumer, () -> { });
+    }
+
+    /**
+     * Hands the results that are ready to the consumer, like {@link #drain(Consumer)}, and runs an action after
+     * the batch if it consumed any, e.g. to flush what the consumer wrote. Returns at once if another thread
+     * is draining; that thread then also consumes the results that became ready meanwhile.
+     *
+     * @param consumer The consumer of the results.
+     * @param afterBatch The action run after the batch.
+     */
+    public void drain(Consumer<TestResult> consumer, Runnable afterBatch) {
+        // Check again after letting go of the flag, in case a result became ready while another thread held it
+        while (isReady()) {
+            if (!draining.compareAndSet(false, true)) {
+                if (resultCount.sum() - consumedCount < MAX_BACKLOG) {
+                    return;
+                }
+                LockSupport.parkNanos(BACKLOG_WAIT_NANOS);
+                continue;
+            }
+            try {
+                boolean consumed = false;
+                TestResult result;
+                while ((result = unconsumed.get(nextToDrain)) != null && result.screenshot.isDone()) {
+                    unconsumed.remove(nextToDrain);
+                    nextToDrain++;
+                    consumedCount++;
+                    consumer.accept(result);
+                    consumed = true;
+                }
+                if (consumed) {
+                    afterBatch.run();
+                }
+            } finally {
+                draining.set(false);
+            }
+        }
+    }
+
+    /**
+     * @return true if the next result to consume has been recorded and its screenshot saved.
+     */
+    private boolean isReady() {
+        Map.Entry<Long, TestResult> first = unconsumed.firstEntry();
+        return first != null && first.getKey() == nextToDrain && first.getValue().screenshot.isDone();
+    }
+
+    /**
+     * Hands all remaining results to the consumer in sequence order, skipping sequence numbers that were reserved
+     * but never recorded. Called once every result has been recorded; screenshots not saved by then are reported as missing.
+     * Waits for a thread that is still draining to finish first.
+     *
+     * @param consumer The consumer of the results.
+     */
+    public void drainAll(Consumer<TestResult> consumer) {
+        while (!draining.compareAndSet(false, true)) {
+            Thread.yield();
+        }
+        try {
+            Map.Entry<Long, TestResult> entry;
+            while ((entry = unconsumed.pollFirstEntry()) != null) {
+                nextToDrain = entry.getKey() + 1;
+                consumedCount++;
+                consumer.accept(entry.getValue());
+            }
+            nextToDrain = Math.max(nextToDrain, nextSequence.get());
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    /**
+     * @return The number of results recorded.
+     */
+    public long getResultCount() {
+        return resultCount.sum();
+    }
+
+    /**
+     * @return The number of test cases whose methods all passed.
+     */
+    public int getPassedTestCases() {
+        int passed = 0;
+        for (TestCaseTotals totals : testCases.values()) {
+            if (totals.failures.get() == 0) {
+                passed++;
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * @return The number of test cases with at least one failed method.
+     */
+    public int getFailedTestCases() {
+        return testCases.size() - getPassedTestCases();
+    }
+
+    /**
+     * @return The sum of the execution times of all recorded methods, in milliseconds.
+     */
+    public long getTotalTime() {
+        return totalTime.sum();
+    }
+
+    /**
+     * @param testCase The name of a test case.
+     * @return The number of methods recorded for the test case.
+     */
+    public int getMethodCount(String testCase) {
+        TestCaseTotals totals = testCases.get(testCase);
+        return totals == null ? 0 : totals.methods.get();
+    }
+
+    /**
+     * Running totals of one test case.
+     */
+    private static class TestCaseTotals {
+        final AtomicInteger methods = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+    }
+
+    /**
+     * The result of a single test method.
+     */
+    public static final class TestResult {
+        public final long sequence;
+        public final String testCase;
+        public final String methodName;
+        public final boolean passed;
+        public final long time;
+        // Path of the screenshot, completed once it is saved
+        public final CompletableFuture<String> screenshot;
+
+        TestResult(long sequence, String testCase, String methodName, boolean passed, long time, CompletableFuture<String> screenshot) {
+            this.sequence = sequence;
+            this.testCase = testCase;
+            this.methodName = methodName;
+            this.passed = passed;
+            this.time = time;
+            this.screenshot = screenshot;
+        }
+
+        /**
+         * @return The path of the saved screenshot, or "No Screenshot" if there is none or it is not saved yet.
+         */
+        public String getScreenshotPath() {
+            if (screenshot.isCompletedExceptionally()) {
+                return ScreenshotPipeline.NO_SCREENSHOT;
+            }
+            String path = screenshot.getNow(ScreenshotPipeline.NO_SCREENSHOT);
+            return path == null ? ScreenshotPipeline.NO_SCREENSHOT : path;
+        }
+    }
+}
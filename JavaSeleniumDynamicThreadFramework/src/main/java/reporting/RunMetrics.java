@@ -0,0 +1,82 @@
+package reporting;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RunMetrics counts the outcomes of the test methods of a run for live monitoring.
+ * The counters are LongAdders and the rates RateMeters, so recording from every test thread takes no lock
+ * and reading them from the metrics endpoint never delays a test.
+ */
+public class RunMetrics {
+
+    // Seconds the per-second rates are averaged over
+    private static final int RATE_WINDOW_SECONDS = 10;
+
+    private static final LongAdder passed = new LongAdder();
+    private static final LongAdder failed = new LongAdder();
+    // Attempts repeated after infrastructure failures
+    private static final LongAdder retries = new LongAdder();
+    private static final RateMeter passedRate = new RateMeter(RATE_WINDOW_SECONDS);
+    private static final RateMeter failedRate = new RateMeter(RATE_WINDOW_SECONDS);
+
+    /**
+     * Counts the outcome of a test method.
+     *
+     * @param testPassed Whether the method passed.
+     */
+    public static void recordResult(boolean testPassed) {
+        if (testPassed) {
+            passed.increment();
+            passedRate.mark();
+        } else {
+            failed.increment();
+            failedRate.mark();
+        }
+    }
+
+    /**
+     * Counts the retries a test method needed.
+     *
+     * @param count The number of attempts after the first.
+     */
+    public static void recordRetries(int count) {
+        if (count > 0) {
+            retries.add(count);
+        }
+    }
+
+    /**
+     * @return The number of test methods that passed.
+     */
+    public static long getPassedCount() {
+        return passed.sum();
+    }
+
+    /**
+     * @return The number of test methods that failed.
+     */
+    public static long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * @return The number of attempts repeated after infrastructure failures.
+     */
+    public static long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * @return The test methods passed per second over the last 10 seconds.
+     */
+    public static double getPassedPerSecond() {
+        return passedRate.getRatePerSecond();
+    }
+
+    /**
+     * @return The test methods failed per second over the last 10 seconds.
+     */
+    public static double getFailedPerSecond() {
+        return failedRate.getRatePerSecond();
+    }
+}
@@ -0,0 +1,286 @@
+package reporting;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import core.StepTimer;
+
+/**
+ * ScreenshotPipeline writes screenshots to disk on a bounded pool of worker threads.
+ * Test threads hand over the PNG bytes captured from the browser and return at once with a future of the
+ * stored image's path. A worker hashes the image and, unless the ScreenshotStore already holds a near-identical
+ * screenshot of the same test, writes the original under its hash together with a scaled-down JPEG thumbnail,
+ * which the report shows instead of the full image. The screenshot of a failed test is always written under a name of its own.
+ * When the queue is full, further screenshots of passed tests are dropped rather than making the test thread wait;
+ * the screenshot of a failed test waits for room instead, as it is the evidence of the failure.
+ * A closed pipeline starts new workers on the next submission, so it can serve several runs in one JVM.
+ * The time a worker spends on each screenshot is recorded as the "screenshot.save" step.
+ */
+public class ScreenshotPipeline {
+
+    // Suffix replacing ".png" in the path of a screenshot's thumbnail
+    private static final String THUMBNAIL_SUFFIX = "_thumb.jpg";
+    // JPEG quality of the thumbnails, between 0 and 1
+    private static final float THUMBNAIL_QUALITY = 0.75f;
+
+    // Path reported for a screenshot that was dropped or could not be saved
+    public static final String NO_SCREENSHOT = "No Screenshot";
+
+    private final ScreenshotStore store;
+    private final int thumbnailWidth;
+    // Screenshot last submitted by each thread, until the thread takes it
+    private final ThreadLocal<CompletableFuture<String>> lastScreenshot = new ThreadLocal<>();
+    private final int threads;
+    // Free places in the queue; a submission takes one until a worker starts on it
+    private final Semaphore room;
+    private final AtomicInteger threadCount = new AtomicInteger();
+    // Current workers, null until the first submission after construction or close; guarded by this
+    private ThreadPoolExecutor workers;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Creates a pipeline. Its worker threads are started with the first screenshot.
+     *
+     * @param store The store the screenshots are saved in.
+     * @param threads The number of worker threads encoding and writing screenshots.
+     * @param queueCapacity The number of screenshots that may wait for a worker before screenshots of passed tests are dropped.
+     * @param thumbnailWidth The width in pixels of the thumbnails; the height keeps the aspect ratio.
+     */
+    public ScreenshotPipeline(ScreenshotStore store, int threads, int queueCapacity, int thumbnailWidth) {
+        this.store = store;
+        this.thumbnailWidth = thumbnailWidth;
+        this.threads = threads;
+        this.room = new Semaphore(queueCapacity);
+    }
+
+    /**
+     * Queues a screenshot for saving. Never touches the disk on the calling thread, and only waits
+     * for the screenshot of a failed test while the queue is full.
+     *
+     * @param testKey The test the screenshot belongs to; only screenshots of the same test are stored once.
+     * @param png The PNG bytes of the screenshot.
+     * @param passed Whether the test passed; the screenshot of a failed test is never dropped and never replaced by a stored one.
+     * @return A future completed with the path of the stored image, or with {@link #NO_SCREENSHOT}
+     *         if the screenshot was dropped because the queue is full or could not be saved.
+     */
+    public CompletableFuture<String> submit(String testKey, byte[] png, boolean passed) {
+        CompletableFuture<String> path = new CompletableFuture<>();
+        lastScreenshot.set(path);
+        if (!takeRoom(passed)) {
+            dropped.increment();
+            System.err.println("Screenshot queue full, dropped a screenshot");
+            path.complete(NO_SCREENSHOT);
+            return path;
+        }
+        synchronized (this) {
+            if (workers == null) {
+                workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "screenshot-writer-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            workers.execute(() -> {
+                room.release();
+                save(testKey, png, passed, path);
+            });
+        }
+        return path;
+    }
+
+    /**
+     * Takes a place in the queue: at once or not at all for a passed test, waiting for one for a failed test.
+     *
+     * @return false if the screenshot must be dropped.
+     */
+    private boolean takeRoom(boolean passed) {
+        if (passed) {
+            return room.tryAcquire();
+        }
+        try {
+            room.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Takes the screenshot last submitted by the current thread.
+     *
+     * @return The future of its path, or null if the thread has not submitted a screenshot since the last call.
+     */
+    public CompletableFuture<String> takeLastScreenshot() {
+        CompletableFuture<String> path = lastScreenshot.get();
+        lastScreenshot.remove();
+        return path;
+    }
+
+    private void save(String testKey, byte[] png, boolean passed, CompletableFuture<String> path) {
+        long start = StepTimer.start();
+        ScreenshotStore.Claim claim = null;
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+            if (image == null) {
+                throw new IOException("Screenshot is not a readable image");
+            }
+            claim = passed ? store.claim(testKey, image) : store.claimUnique(testKey);
+            if (claim.isOwner()) {
+                // The image goes last, so a run that stops halfway never leaves an image without its thumbnail
+                writeFile(Paths.get(thumbnailPath(claim.getPath())), ByteBuffer.wrap(thumbnail(image)));
+                writeFile(Paths.get(claim.getPath()), ByteBuffer.wrap(png));
+                written.increment();
+                claim.getSaved().complete(claim.getPath());
+            }
+            claim.getSaved().whenComplete((saved, error) -> path.complete(error == null ? saved : NO_SCREENSHOT));
+        } catch (IOException | RuntimeException e) {
+            failed.increment();
+            e.printStackTrace();
+            if (claim != null && claim.isOwner()) {
+                store.release(claim);
+                claim.getSaved().completeExceptionally(e);
+            }
+            path.complete(NO_SCREENSHOT);
+        } finally {
+            StepTimer.record("screenshot.save", start);
+        }
+    }
+
+    /**
+     * Scales an image down to the thumbnail width and encodes it as JPEG.
+     */
+    private byte[] thumbnail(BufferedImage image) throws IOException {
+        int width = Math.min(thumbnailWidth, image.getWidth());
+        int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Encode in memory rather than through ImageIO's temporary-file cache
+        try (ImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(THUMBNAIL_QUALITY);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(scaled, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a file under a temporary name and renames it, so a stored image is never seen half written.
+     */
+    private static void writeFile(Path path, ByteBuffer content) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Derives the path of a screenshot's thumbnail.
+     *
+     * @param screenshotPath The path of the full-size PNG screenshot.
+     * @return The path of its JPEG thumbnail.
+     */
+    public static String thumbnailPath(String screenshotPath) {
+        String base = screenshotPath.endsWith(".png") ? screenshotPath.substring(0, screenshotPath.length() - 4) : screenshotPath;
+        return base + THUMBNAIL_SUFFIX;
+    }
+
+    /**
+     * Waits until every screenshot queued so far has been written, then stops the workers.
+     * Screenshots submitted afterwards start new workers.
+     *
+     * @param timeoutMillis The maximum time to wait in milliseconds.
+     * @return true if all screenshots were written in time.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean close(long timeoutMillis) throws InterruptedException {
+        ThreadPoolExecutor closing;
+        synchronized (this) {
+            closing = workers;
+            workers = null;
+        }
+        if (closing == null) {
+            return true;
+        }
+        closing.shutdown();
+        return closing.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return The number of screenshots waiting for a worker.
+     */
+    public synchronized int getQueuedCount() {
+        return workers == null ? 0 : workers.getQueue().size();
+    }
+
+    /**
+     * @return The number of distinct screenshots written with their thumbnails.
+     */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * @return The number of screenshots dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return The number of screenshots that could not be written.
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+}
@@ -0,0 +1,316 @@
+package reporting;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+/**
+ * ScreenshotStore stores near-identical screenshots of passed tests once. Each image is identified by a 64-bit
+ * perceptual hash (a difference hash over a 9x8 grayscale grid), so re-encoding, a blinking caret or a changed
+ * digit does not make it a new image. Two guards keep different pages apart: an image is only shared between
+ * screenshots of the same test, and a candidate whose hash is close enough is only shared after a region diff,
+ * comparing the average brightness of each cell of a 32x32 grid, confirms that no part of the page changed visibly.
+ * Images are saved as {@code <hash>-<variant>-<test>.png} and reused across runs.
+ * Screenshots of failed tests are evidence and are never shared: each is saved under a name of its own.
+ */
+public class ScreenshotStore {
+
+    // Width and height of the grid the hash is computed on; each row yields 8 bits from 9 cells
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+    // Cells per side of the grid the region diff compares
+    private static final int REGIONS = 32;
+    // Largest difference in average brightness, out of 255, of a region of two images counted as the same
+    private static final int MAX_REGION_DIFFERENCE = 24;
+    // Name of an image of a passed test: hash, variant and test
+    private static final Pattern IMAGE_NAME = Pattern.compile("([0-9a-f]{16})-(\\d+)-(.+)\\.png");
+
+    private final Path directory;
+    private final int maxDistance;
+    // Stored images of passed tests by the test they belong to; each list is guarded by itself
+    private final ConcurrentMap<String, List<Entry>> entries = new ConcurrentHashMap<>();
+    private final LongAdder duplicates = new LongAdder();
+    // Numbers the screenshots of failed tests saved in this run
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Opens a store, indexing the images already saved in its directory.
+     *
+     * @param directory The directory the images are saved in; created if missing.
+     * @param maxDistance The largest number of differing hash bits for two images to be compared region by region.
+     */
+    public ScreenshotStore(String directory, int maxDistance) {
+        this.directory = Paths.get(directory);
+        this.maxDistance = maxDistance;
+        try {
+            Files.createDirectories(this.directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "*.png")) {
+                for (Path file : files) {
+                    Matcher name = IMAGE_NAME.matcher(file.getFileName().toString());
+                    if (name.matches()) {
+                        long hash = Long.parseUnsignedLong(name.group(1), 16);
+                        entries.computeIfAbsent(name.group(3), k -> new ArrayList<>()).add(new Entry(hash, Integer.parseInt(name.group(2)),
+                                file.toString(), CompletableFuture.completedFuture(file.toString()), null));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Computes the perceptual hash of an image: the image is averaged down to a 9x8 grayscale grid,
+     * and each bit tells whether a cell is brighter than its right neighbour. Re-encoding, scaling
+     * and small rendering differences change few bits; a different page changes many.
+     *
+     * @param image The image to hash.
+     * @return The 64-bit difference hash.
+     */
+    public static long hash(BufferedImage image) {
+        long[] sums = new long[GRID_WIDTH * GRID_HEIGHT];
+        long[] counts = new long[GRID_WIDTH * GRID_HEIGHT];
+        average(image, GRID_WIDTH, GRID_HEIGHT, sums, counts);
+        long hash = 0;
+        for (int y = 0; y < GRID_HEIGHT; y++) {
+            for (int x = 0; x < GRID_WIDTH - 1; x++) {
+                int left = y * GRID_WIDTH + x;
+                // Compare averages without dividing: a/b > c/d  <=>  a*d > c*b
+                boolean brighter = sums[left] * Math.max(1, counts[left + 1]) > sums[left + 1] * Math.max(1, counts[left]);
+                hash = (hash << 1) | (brighter ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Sums the brightness of the pixels of each cell of a grid laid over an image.
+     */
+    private static void average(BufferedImage image, int columns, int rows, long[] sums, long[] counts) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellRow = y * rows / height * columns;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                // Integer approximation of luma: 0.299 R + 0.587 G + 0.114 B
+                int luma = (((rgb >> 16) & 0xff) * 299 + ((rgb >> 8) & 0xff) * 587 + (rgb & 0xff) * 114) / 1000;
+                int cell = cellRow + x * columns / width;
+                sums[cell] += luma;
+                counts[cell]++;
+            }
+        }
+    }
+
+    /**
+     * Computes the average brightness of each region of an image, for the region diff.
+     */
+    private static Regions regions(BufferedImage image) {
+        long[] sums = new long[REGIONS * REGIONS];
+        long[] counts = new long[REGIONS * REGIONS];
+        average(image, REGIONS, REGIONS, sums, counts);
+        int[] brightness = new int[REGIONS * REGIONS];
+        for (int i = 0; i < brightness.length; i++) {
+            brightness[i] = counts[i] == 0 ? 0 : (int) (sums[i] / counts[i]);
+        }
+        return new Regions(image.getWidth(), image.getHeight(), brightness);
+    }
+
+    /**
+     * Finds a stored image of the same test that is near-identical to an image, or reserves a new entry for it.
+     * Only the caller that receives an owning claim saves the image; everyone else shares its path.
+     *
+     * @param testKey The test the screenshot belongs to; images are never shared between tests.
+     * @param image The screenshot.
+     * @return The claim on the matching or the new entry.
+     */
+    public Claim claim(String testKey, BufferedImage image) {
+        String test = fileName(testKey);
+        long hash = hash(image);
+        Regions regions = regions(image);
+        List<Entry> candidates = entries.computeIfAbsent(test, k -> new ArrayList<>());
+        synchronized (candidates) {
+            int variant = 0;
+            for (Entry entry : candidates) {
+                if (entry.hash == hash) {
+                    variant = Math.max(variant, entry.variant + 1);
+                }
+                if (Long.bitCount(entry.hash ^ hash) <= maxDistance && regions.matches(entry.regions())) {
+                    duplicates.increment();
+                    return new Claim(entry, false);
+                }
+            }
+            String path = directory.resolve(String.format("%016x-%d-%s.png", hash, variant, test)).toString();
+            Entry entry = new Entry(hash, variant, path, new CompletableFuture<>(), regions);
+            candidates.add(entry);
+            return new Claim(entry, true);
+        }
+    }
+
+    /**
+     * Reserves a path of its own for the screenshot of a failed test, never shared with any other image.
+     *
+     * @param testKey The test the screenshot belongs to.
+     * @return An owning claim on a new entry.
+     */
+    public Claim claimUnique(String testKey) {
+        String name = String.format("failed-%d-%d-%s.png", System.currentTimeMillis(), failures.incrementAndGet(), fileName(testKey));
+        return new Claim(new Entry(0, 0, directory.resolve(name).toString(), new CompletableFuture<>(), null), true);
+    }
+
+    /**
+     * Forgets an entry whose image could not be saved, so the next matching image is saved instead.
+     */
+    void release(Claim claim) {
+        for (List<Entry> candidates : entries.values()) {
+            synchronized (candidates) {
+                candidates.remove(claim.entry);
+            }
+        }
+    }
+
+    /**
+     * Turns a test key into a part of a file name, keeping letters, digits, dots and dashes.
+     */
+    private static String fileName(String testKey) {
+        return testKey.replaceAll("[^A-Za-z0-9.-]", "_");
+    }
+
+    /**
+     * @return The number of distinct images in the store, not counting screenshots of failed tests.
+     */
+    public int getImageCount() {
+        int count = 0;
+        for (List<Entry> candidates : entries.values()) {
+            synchronized (candidates) {
+                count += candidates.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of images that matched a stored one and were not saved again.
+     */
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    /**
+     * The size and the average brightness of each region of an image.
+     */
+    private static final class Regions {
+        final int width;
+        final int height;
+        final int[] brightness;
+
+        Regions(int width, int height, int[] brightness) {
+            this.width = width;
+            this.height = height;
+            this.brightness = brightness;
+        }
+
+        /**
+         * @return true if the other image has the same size and no region differs visibly.
+         */
+        boolean matches(Regions other) {
+            if (other == null || other.width != width || other.height != height) {
+                return false;
+            }
+            for (int i = 0; i < brightness.length; i++) {
+                if (Math.abs(brightness[i] - other.brightness[i]) > MAX_REGION_DIFFERENCE) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A stored image: its hash, its path, the future completed once it is on disk and its regions.
+     */
+    private static class Entry {
+        final long hash;
+        // Distinguishes images of one test with equal hashes that the region diff told apart
+        final int variant;
+        final String path;
+        final CompletableFuture<String> saved;
+        // Regions of the image, read from disk when first compared for images of earlier runs; guarded by the entry's list
+        private Regions regions;
+
+        Entry(long hash, int variant, String path, CompletableFuture<String> saved, Regions regions) {
+            this.hash = hash;
+            this.variant = variant;
+            this.path = path;
+            this.saved = saved;
+            this.regions = regions;
+        }
+
+        /**
+         * @return The regions of the image, or null if the image of an earlier run cannot be read.
+         */
+        Regions regions() {
+            if (regions == null) {
+                try {
+                    BufferedImage image = ImageIO.read(Paths.get(path).toFile());
+                    if (image != null) {
+                        regions = ScreenshotStore.regions(image);
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            return regions;
+        }
+    }
+
+    /**
+     * The result of {@link ScreenshotStore#claim(String, BufferedImage)}.
+     */
+    public static final class Claim {
+        private final Entry entry;
+        private final boolean owner;
+
+        Claim(Entry entry, boolean owner) {
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        /**
+         * @return true if the caller must save the image to {@link #getPath()}.
+         */
+        public boolean isOwner() {
+            return owner;
+        }
+
+        /**
+         * @return The path the image is stored at.
+         */
+        public String getPath() {
+            return entry.path;
+        }
+
+        /**
+         * @return A future completed with the path once the image is saved.
+         */
+        public CompletableFuture<String> getSaved() {
+            return entry.saved;
+        }
+    }
+}
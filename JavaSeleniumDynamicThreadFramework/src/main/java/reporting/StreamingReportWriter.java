@@ -0,0 +1,106 @@
+package reporting;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * StreamingReportWriter appends report text to a file through a FileChannel.
+ * Text is encoded into a fixed-size buffer that is written to the channel when it fills up or on flush,
+ * so memory use does not depend on the size of the report and flushed content survives a crash of the JVM.
+ * Not thread-safe; callers synchronize.
+ */
+public class StreamingReportWriter implements AutoCloseable {
+
+    // Size of the encoding buffer in bytes
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private long bytesWritten;
+
+    /**
+     * Creates the file, replacing any existing one, and opens it for appending.
+     *
+     * @param path The path of the report file.
+     * @throws IOException If the file cannot be created.
+     */
+    public StreamingReportWriter(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Appends text to the buffer, writing full buffers to the file.
+     *
+     * @param text The text to append.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(String text) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        encoder.reset();
+    }
+
+    /**
+     * Writes the buffered text to the file.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public void flush() throws IOException {
+        drain();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * @return The path of the report file.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return The number of bytes written to the file so far.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Flushes the buffered text and closes the file.
+     *
+     * @throws IOException If the file cannot be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package testcases;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import base.BasePage;
+import base.PageWaits;
+import database.DatabaseReader;
+
+/**
+ * InputFingerprinter hashes everything a test method's outcome depends on, so an incremental run can tell
+ * whether a method must run again: the code of the test and page classes and the compiled scenarios, the method
+ * cell of the TestCases row, and the TestData values the method reads. For a scenario those are the values of its
+ * ${parameters} not given in the row, so the values it scrapes into TestData do not count; a hand-written
+ * method may read any column, so its whole TestData row counts except the columns the scenarios store results in.
+ */
+public class InputFingerprinter {
+
+    // Classes whose code decides what a test does
+    private static final Class<?>[] TEST_CLASSES = { TestMethods.class, Scenario.class,
+            ScenarioContext.class, ScenarioLibrary.class, BasePage.class, PageWaits.class };
+    // The scenario definitions compiled by ScenarioLibrary
+    private static final String SCENARIOS_RESOURCE = "scenarios.txt";
+
+    private final DatabaseReader reader;
+    private final TestMethodRegistry registry;
+    private final ScenarioLibrary scenarios;
+    // Hash of the test classes and scenario definitions, the same for every method of a run
+    private final byte[] codeHash;
+    // TestData rows by test case name, read once
+    private final Map<String, String[]> testDataRows = new HashMap<>();
+    // Indexes of the TestData columns a hand-written method's fingerprint covers
+    private final List<Integer> inputColumns = new ArrayList<>();
+
+    /**
+     * Creates a fingerprinter, hashing the test code and reading the TestData table once.
+     *
+     * @param reader The DatabaseReader the TestData table is read from.
+     * @param registry The hand-written test methods.
+     * @param scenarios The compiled scenarios.
+     */
+    public InputFingerprinter(DatabaseReader reader, TestMethodRegistry registry, ScenarioLibrary scenarios) {
+        this.reader = reader;
+        this.registry = registry;
+        this.scenarios = scenarios;
+        MessageDigest digest = sha256();
+        for (Class<?> testClass : TEST_CLASSES) {
+            update(digest, "/" + testClass.getName().replace('.', '/') + ".class");
+        }
+        update(digest, "/" + SCENARIOS_RESOURCE);
+        this.codeHash = digest.digest();
+        // Columns: TestDataID, TestCaseName, then the test data
+        String[] columns = reader.readColumnNames("TestData");
+        for (int i = 2; i < columns.length; i++) {
+            if (!scenarios.isOutputColumn(columns[i])) {
+                inputColumns.add(i);
+            }
+        }
+        for (String[] row : reader.readTable("TestData")) {
+            if (row.length > 1 && row[1] != null) {
+                testDataRows.put(row[1], row);
+            }
+        }
+    }
+
+    /**
+     * Fingerprints the inputs of a test method in this run.
+     *
+     * @param testCaseName The name of the test case.
+     * @param methodName The method cell of the TestCases row.
+     * @return The fingerprint as a hex string; equal fingerprints mean equal inputs.
+     */
+    public String fingerprint(String testCaseName, String methodName) {
+        MessageDigest digest = sha256();
+        digest.update(codeHash);
+        field(digest, methodName);
+        if (registry.contains(methodName)) {
+            String[] row = testDataRows.get(testCaseName);
+            if (row != null) {
+                for (int i : inputColumns) {
+                    field(digest, i < row.length ? row[i] : null);
+                }
+            }
+        } else {
+            ScenarioInvocation invocation = scenarios.resolve(methodName);
+            for (String parameter : new TreeSet<>(invocation.getScenario().getParameters())) {
+                if (!invocation.getParameters().containsKey(parameter)) {
+                    field(digest, parameter);
+                    field(digest, reader.getValue("TestData", testCaseName, parameter));
+                }
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Adds a value with its length, so adjacent values cannot run into each other.
+     */
+    private static void field(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) 1);
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    /**
+     * Adds the content of a classpath resource, or a marker if it does not exist.
+     */
+    private static void update(MessageDigest digest, String resource) {
+        try (InputStream in = InputFingerprinter.class.getResourceAsStream(resource)) {
+            field(digest, resource);
+            if (in == null) {
+                digest.update((byte) 0);
+                return;
+            }
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + resource, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package testcases;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Scenario is a compiled test scenario: a named sequence of steps parsed once from a scenario definition
+ * and reused for every TestCases row that names it. Locators and text templates are resolved at compile time,
+ * so running a scenario only substitutes the row's parameters and drives the browser.
+ */
+public class Scenario {
+
+    private final String name;
+    private final List<Step> steps;
+    // Names of the ${...} parameters used by the steps, in order of first use
+    private final Set<String> parameters;
+
+    /**
+     * Creates a compiled scenario.
+     *
+     * @param name The name TestCases rows refer to the scenario by.
+     * @param steps The compiled steps, run in order.
+     * @param parameters The names of the parameters the steps use.
+     */
+    Scenario(String name, List<Step> steps, Set<String> parameters) {
+        this.name = name;
+        this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+        this.parameters = Collections.unmodifiableSet(new LinkedHashSet<>(parameters));
+    }
+
+    /**
+     * Runs the steps in order, stopping at the first step that fails.
+     *
+     * @param context The state of this run: the test case, its parameters and its browser.
+     * @return true if every step passed.
+     */
+    public boolean run(ScenarioContext context) {
+        for (Step step : steps) {
+            if (!step.run(context)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The name of the scenario.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The number of steps.
+     */
+    public int getStepCount() {
+        return steps.size();
+    }
+
+    /**
+     * @return The names of the parameters the steps use.
+     */
+    public Set<String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * A compiled step of a scenario.
+     */
+    @FunctionalInterface
+    interface Step {
+        /**
+         * @param context The state of the run.
+         * @return false if the step's check failed and the scenario must stop.
+         */
+        boolean run(ScenarioContext context);
+    }
+
+    /**
+     * A text with ${name} placeholders, split into literal and parameter parts once when compiled.
+     */
+    static final class Template {
+        // Literal text at even indexes, parameter names at odd indexes
+        private final String[] parts;
+
+        private Template(String[] parts) {
+            this.parts = parts;
+        }
+
+        /**
+         * Compiles a template, adding the names of its parameters to the given set.
+         */
+        static Template compile(String text, Set<String> parameters) {
+            List<String> parts = new ArrayList<>();
+            int start = 0;
+            int open;
+            while ((open = text.indexOf("${", start)) >= 0) {
+                int close = text.indexOf('}', open);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed ${ in \"" + text + "\"");
+                }
+                parts.add(text.substring(start, open));
+                String parameter = text.substring(open + 2, close).trim();
+                parts.add(parameter);
+                parameters.add(parameter);
+                start = close + 1;
+            }
+            parts.add(text.substring(start));
+            return new Template(parts.toArray(new String[0]));
+        }
+
+        /**
+         * Substitutes the parameters of a run.
+         */
+        String render(ScenarioContext context) {
+            if (parts.length == 1) {
+                return parts[0];
+            }
+            StringBuilder text = new StringBuilder(parts[0]);
+            for (int i = 1; i < parts.length; i += 2) {
+                text.append(context.getParameter(parts[i])).append(parts[i + 1]);
+            }
+            return text.toString();
+        }
+    }
+}
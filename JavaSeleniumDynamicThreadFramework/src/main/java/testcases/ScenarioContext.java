@@ -0,0 +1,103 @@
+package testcases;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openqa.selenium.WebDriver;
+
+import base.BasePage;
+import base.PageWaits;
+import database.DatabaseReader;
+import database.WriteBehindBuffer;
+
+/**
+ * ScenarioContext holds the state of one run of a scenario: the test case, the parameters given in its
+ * TestCases row and the browser it runs in. Parameters not given in the row are read from the test case's
+ * TestData row, so most rows only need to name the scenario.
+ * A context is confined to the thread running the scenario.
+ */
+public class ScenarioContext {
+
+    private final String testCaseName;
+    private final Map<String, String> parameters;
+    private final WebDriver driver;
+    private final BasePage page;
+    private final PageWaits waits;
+    private final DatabaseReader reader;
+    private final WriteBehindBuffer testDataWriter;
+    // Parameters already looked up in TestData during this run
+    private final Map<String, String> testData = new HashMap<>();
+
+    /**
+     * Creates the context of a run.
+     *
+     * @param testCaseName The name of the test case being run.
+     * @param parameters The parameters given in the test case's TestCases row.
+     * @param driver The WebDriver the scenario drives.
+     * @param reader The DatabaseReader the remaining parameters are read from.
+     * @param testDataWriter The buffer values scraped by the scenario are written to.
+     */
+    public ScenarioContext(String testCaseName, Map<String, String> parameters, WebDriver driver,
+            DatabaseReader reader, WriteBehindBuffer testDataWriter) {
+        this.testCaseName = testCaseName;
+        this.parameters = parameters;
+        this.driver = driver;
+        this.page = new BasePage(driver);
+        this.waits = new PageWaits(driver, 50);
+        this.reader = reader;
+        this.testDataWriter = testDataWriter;
+    }
+
+    /**
+     * Looks up a parameter, first in the TestCases row, then in the test case's TestData row.
+     *
+     * @param name The name of the parameter.
+     * @return The value of the parameter.
+     * @throws IllegalStateException If the parameter has no value in either.
+     */
+    public String getParameter(String name) {
+        String value = parameters.get(name);
+        if (value == null) {
+            value = testData.computeIfAbsent(name, column -> reader.getValue("TestData", testCaseName, column));
+        }
+        if (value == null) {
+            throw new IllegalStateException("No value for ${" + name + "} in the TestCases or TestData row of " + testCaseName);
+        }
+        return value;
+    }
+
+    /**
+     * @return The name of the test case being run.
+     */
+    public String getTestCaseName() {
+        return testCaseName;
+    }
+
+    /**
+     * @return The WebDriver the scenario drives.
+     */
+    public WebDriver getDriver() {
+        return driver;
+    }
+
+    /**
+     * @return The page object wrapping the driver.
+     */
+    public BasePage getPage() {
+        return page;
+    }
+
+    /**
+     * @return The condition-based waits on the driver.
+     */
+    public PageWaits getWaits() {
+        return waits;
+    }
+
+    /**
+     * @return The buffer values scraped by the scenario are written to.
+     */
+    public WriteBehindBuffer getTestDataWriter() {
+        return testDataWriter;
+    }
+}
@@ -0,0 +1,59 @@
+package testcases;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openqa.selenium.WebDriver;
+
+import database.DatabaseReader;
+import database.WriteBehindBuffer;
+
+/**
+ * ScenarioInvocation is what a TestCases row refers to: a compiled scenario together with the parameters
+ * given in the row, such as {@code stockPriceSearch(stockname=Boeing)}.
+ * Invocations are parsed once per distinct text by ScenarioLibrary and shared by every row using the same text.
+ */
+public class ScenarioInvocation {
+
+    private final Scenario scenario;
+    private final Map<String, String> parameters;
+
+    /**
+     * Creates an invocation.
+     *
+     * @param scenario The compiled scenario.
+     * @param parameters The parameters given in the TestCases row.
+     */
+    ScenarioInvocation(Scenario scenario, Map<String, String> parameters) {
+        this.scenario = scenario;
+        this.parameters = Collections.unmodifiableMap(new LinkedHashMap<>(parameters));
+    }
+
+    /**
+     * Runs the scenario for a test case.
+     *
+     * @param driver The WebDriver to drive.
+     * @param testCaseName The name of the test case.
+     * @param reader The DatabaseReader parameters not given in the row are read from.
+     * @param testDataWriter The buffer scraped values are written to.
+     * @return true if every step passed.
+     */
+    public boolean run(WebDriver driver, String testCaseName, DatabaseReader reader, WriteBehindBuffer testDataWriter) {
+        return scenario.run(new ScenarioContext(testCaseName, parameters, driver, reader, testDataWriter));
+    }
+
+    /**
+     * @return The compiled scenario.
+     */
+    public Scenario getScenario() {
+        return scenario;
+    }
+
+    /**
+     * @return The parameters given in the TestCases row.
+     */
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+}
@@ -0,0 +1,484 @@
+package testcases;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.openqa.selenium.By;
+
+/**
+ * ScenarioLibrary parses scenario definitions once and compiles them into Scenarios that TestCases rows refer to by name.
+ * A definition file holds scenarios and aliases:
+ * <pre>
+ * # comment
+ * scenario stockPriceSearch
+ *     open https://www.google.com
+ *     type name=q "${stockname} Stock Price"
+ *     enter name=q
+ * alias method1 method2 = stockPriceSearch
+ * </pre>
+ * Step lines are indented under their scenario; arguments containing spaces are quoted, and ${name} is replaced by
+ * the parameter of that name. Locators are written as name=, id=, css=, xpath=, linkText=, className= or tag=
+ * followed by the value; a locator without a prefix is a CSS selector.
+ * <p>
+ * Steps: {@code maximize}, {@code open <url>}, {@code click <locator>}, {@code type <locator> <text>},
+ * {@code enter <locator>}, {@code waitVisible <locator>}, {@code waitDomStable <ms>}, {@code waitNetworkIdle <ms>},
+ * {@code waitCountSettled <locator> <ms>}, {@code assertText <locator> <text>}, {@code storeText <locator> <column>}
+ * and {@code storeTable <css> <columnSuffix>}.
+ * <p>
+ * A TestCases cell names a scenario or alias, optionally with parameters: {@code stockPriceSearch(stockname=Boeing)}.
+ * A value containing commas or surrounding spaces is double-quoted, {@code stockname="Johnson, Johnson"},
+ * and a backslash takes the next character literally, so {@code \"} and {@code \,} can appear in a value as well.
+ * Each distinct cell is parsed once and the invocation is reused for every row with the same text.
+ */
+public class ScenarioLibrary {
+
+    // Compiled scenarios by name
+    private final Map<String, Scenario> scenarios = new LinkedHashMap<>();
+    // Alias name to the invocation text it stands for
+    private final Map<String, String> aliases = new HashMap<>();
+    // TestData columns written by storeText steps
+    private final Set<String> outputColumns = new HashSet<>();
+    // Column suffixes written by storeTable steps
+    private final Set<String> outputSuffixes = new HashSet<>();
+    // Invocations parsed so far, by the text of the TestCases cell
+    private final ConcurrentMap<String, ScenarioInvocation> invocations = new ConcurrentHashMap<>();
+
+    /**
+     * Parses and compiles scenario definitions.
+     *
+     * @param definitions The definitions to read.
+     * @throws IOException If the definitions cannot be read.
+     * @throws IllegalArgumentException If a definition is invalid, naming its line.
+     */
+    public ScenarioLibrary(Reader definitions) throws IOException {
+        BufferedReader lines = new BufferedReader(definitions);
+        String name = null;
+        List<Scenario.Step> steps = new ArrayList<>();
+        Set<String> parameters = new LinkedHashSet<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            try {
+                List<String> tokens = tokenize(trimmed);
+                if (Character.isWhitespace(line.charAt(0))) {
+                    if (name == null) {
+                        throw new IllegalArgumentException("Step outside of a scenario");
+                    }
+                    steps.add(compileStep(tokens, parameters));
+                    if (tokens.get(0).equals("storeText")) {
+                        outputColumns.add(tokens.get(2));
+                    } else if (tokens.get(0).equals("storeTable")) {
+                        outputSuffixes.add(tokens.get(2));
+                    }
+                } else if (tokens.get(0).equals("scenario") && tokens.size() == 2) {
+                    addScenario(name, steps, parameters);
+                    name = tokens.get(1);
+                    steps.clear();
+                    parameters.clear();
+                } else if (tokens.get(0).equals("alias") && tokens.size() >= 4 && tokens.get(tokens.size() - 2).equals("=")) {
+                    for (String alias : tokens.subList(1, tokens.size() - 2)) {
+                        aliases.put(alias, tokens.get(tokens.size() - 1));
+                    }
+                } else {
+                    throw new IllegalArgumentException("Expected 'scenario <name>' or 'alias <name>... = <scenario>'");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Scenario definitions, line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        addScenario(name, steps, parameters);
+        for (Map.Entry<String, String> alias : aliases.entrySet()) {
+            if (!scenarios.containsKey(scenarioName(alias.getValue()))) {
+                throw new IllegalArgumentException("Alias " + alias.getKey() + " refers to unknown scenario " + alias.getValue());
+            }
+        }
+    }
+
+    /**
+     * Loads scenario definitions from the classpath.
+     *
+     * @param resource The path of the definitions on the classpath.
+     * @return The compiled library.
+     * @throws IllegalStateException If the resource does not exist.
+     */
+    public static ScenarioLibrary load(String resource) {
+        InputStream in = ScenarioLibrary.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalStateException("Scenario definitions not found on the classpath: " + resource);
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return new ScenarioLibrary(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void addScenario(String name, List<Scenario.Step> steps, Set<String> parameters) {
+        if (name == null) {
+            return;
+        }
+        if (scenarios.containsKey(name)) {
+            throw new IllegalArgumentException("Scenario " + name + " is defined twice");
+        }
+        scenarios.put(name, new Scenario(name, steps, parameters));
+    }
+
+    /**
+     * Resolves the text of a TestCases cell into an invocation, parsing it only the first time it is seen.
+     *
+     * @param text The name of a scenario or alias, optionally followed by (name=value, ...).
+     * @return The invocation.
+     * @throws IllegalArgumentException If the text is malformed or names no scenario.
+     */
+    public ScenarioInvocation resolve(String text) {
+        return invocations.computeIfAbsent(text.trim(), this::parse);
+    }
+
+    /**
+     * @param text The text of a TestCases cell.
+     * @return true if the text resolves to a scenario.
+     */
+    public boolean isDefined(String text) {
+        try {
+            resolve(text);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private ScenarioInvocation parse(String text) {
+        String name = scenarioName(text);
+        Map<String, String> parameters = new LinkedHashMap<>();
+        String alias = aliases.get(name);
+        if (alias != null) {
+            parameters.putAll(parameters(alias));
+            name = scenarioName(alias);
+        }
+        parameters.putAll(parameters(text));
+        Scenario scenario = scenarios.get(name);
+        if (scenario == null) {
+            throw new IllegalArgumentException("Unknown scenario: " + name);
+        }
+        return new ScenarioInvocation(scenario, parameters);
+    }
+
+    private static String scenarioName(String text) {
+        int open = text.indexOf('(');
+        return (open < 0 ? text : text.substring(0, open)).trim();
+    }
+
+    private static Map<String, String> parameters(String text) {
+        int open = text.indexOf('(');
+        if (open < 0) {
+            return Collections.emptyMap();
+        }
+        if (!text.endsWith(")")) {
+            throw new IllegalArgumentException("Missing ) in " + text);
+        }
+        Map<String, String> parameters = new LinkedHashMap<>();
+        String list = text.substring(open + 1, text.length() - 1).trim();
+        if (list.isEmpty()) {
+            return parameters;
+        }
+        String name = null;
+        StringBuilder token = new StringBuilder();
+        // Length of the token up to its last quoted or escaped character, which is never trimmed
+        int literalEnd = 0;
+        boolean quoted = false;
+        for (int i = 0; i <= list.length(); i++) {
+            char c = i < list.length() ? list.charAt(i) : ',';
+            if (i == list.length() && quoted) {
+                throw new IllegalArgumentException("Unclosed quote in " + text);
+            }
+            if (c == '\\' && i + 1 < list.length()) {
+                token.append(list.charAt(++i));
+                literalEnd = token.length();
+            } else if (c == '"') {
+                quoted = !quoted;
+                literalEnd = token.length();
+            } else if (quoted) {
+                token.append(c);
+                literalEnd = token.length();
+            } else if (c == '=' && name == null) {
+                name = trimEnd(token, literalEnd);
+                token.setLength(0);
+                literalEnd = 0;
+            } else if (c == ',') {
+                if (name == null || name.isEmpty()) {
+                    throw new IllegalArgumentException("Expected name=value in " + text);
+                }
+                parameters.put(name, trimEnd(token, literalEnd));
+                name = null;
+                token.setLength(0);
+                literalEnd = 0;
+            } else if (!Character.isWhitespace(c) || token.length() > 0) {
+                token.append(c);
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * @return The token without trailing whitespace after the given length.
+     */
+    private static String trimEnd(StringBuilder token, int literalEnd) {
+        int end = token.length();
+        while (end > literalEnd && Character.isWhitespace(token.charAt(end - 1))) {
+            end--;
+        }
+        return token.substring(0, end);
+    }
+
+    /**
+     * Compiles a step line into a Step, resolving its locators and templates now rather than on every run.
+     */
+    private static Scenario.Step compileStep(List<String> tokens, Set<String> parameters) {
+        String step = tokens.get(0);
+        switch (step) {
+            case "maximize":
+                arguments(tokens, 0, "maximize");
+                return context -> {
+                    context.getDriver().manage().window().maximize();
+                    return true;
+                };
+            case "open": {
+                arguments(tokens, 1, "open <url>");
+                Scenario.Template url = Scenario.Template.compile(tokens.get(1), parameters);
+                return context -> {
+                    context.getPage().navigateToUrl(url.render(context));
+                    return true;
+                };
+            }
+            case "click": {
+                arguments(tokens, 1, "click <locator>");
+                By locator = locator(tokens.get(1));
+                return context -> {
+                    context.getPage().click(locator);
+                    return true;
+                };
+            }
+            case "type": {
+                arguments(tokens, 2, "type <locator> <text>");
+                By locator = locator(tokens.get(1));
+                Scenario.Template text = Scenario.Template.compile(tokens.get(2), parameters);
+                return context -> {
+                    context.getPage().sendKeys(locator, text.render(context));
+                    return true;
+                };
+            }
+            case "enter": {
+                arguments(tokens, 1, "enter <locator>");
+                By locator = locator(tokens.get(1));
+                return context -> {
+                    context.getPage().pressEnter(locator);
+                    return true;
+                };
+            }
+            case "waitVisible": {
+                arguments(tokens, 1, "waitVisible <locator>");
+                By locator = locator(tokens.get(1));
+                return context -> {
+                    context.getPage().waitForElementToBeVisible(locator);
+                    return true;
+                };
+            }
+            case "waitDomStable": {
+                arguments(tokens, 1, "waitDomStable <ms>");
+                long quietMillis = millis(tokens.get(1));
+                return context -> {
+                    context.getWaits().forDomStable(quietMillis);
+                    return true;
+                };
+            }
+            case "waitNetworkIdle": {
+                arguments(tokens, 1, "waitNetworkIdle <ms>");
+                long quietMillis = millis(tokens.get(1));
+                return context -> {
+                    context.getWaits().forNetworkIdle(quietMillis);
+                    return true;
+                };
+            }
+            case "waitCountSettled": {
+                arguments(tokens, 2, "waitCountSettled <locator> <ms>");
+                By locator = locator(tokens.get(1));
+                long quietMillis = millis(tokens.get(2));
+                return context -> {
+                    context.getWaits().forElementCountSettled(locator, quietMillis);
+                    return true;
+                };
+            }
+            case "assertText": {
+                arguments(tokens, 2, "assertText <locator> <text>");
+                By locator = locator(tokens.get(1));
+                Scenario.Template text = Scenario.Template.compile(tokens.get(2), parameters);
+                return context -> context.getPage().getText(locator).contains(text.render(context));
+            }
+            case "storeText": {
+                arguments(tokens, 2, "storeText <locator> <column>");
+                By locator = locator(tokens.get(1));
+                String column = tokens.get(2);
+                return context -> {
+                    context.getTestDataWriter().update(context.getTestCaseName(), column, context.getPage().getText(locator));
+                    return true;
+                };
+            }
+            case "storeTable": {
+                arguments(tokens, 2, "storeTable <css> <columnSuffix>");
+                String cssSelector = tokens.get(1);
+                String suffix = tokens.get(2);
+                // Two-cell rows are label/value pairs; the value is stored in the column named label + suffix
+                return context -> {
+                    for (List<String> cells : context.getPage().readTableText(cssSelector)) {
+                        if (cells.size() == 2) {
+                            String value = cells.get(1).replace(",", "");
+                            context.getTestDataWriter().update(context.getTestCaseName(), cells.get(0) + suffix, value);
+                        }
+                    }
+                    return true;
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown step: " + step);
+        }
+    }
+
+    private static void arguments(List<String> tokens, int count, String usage) {
+        if (tokens.size() != count + 1) {
+            throw new IllegalArgumentException("Expected " + usage);
+        }
+    }
+
+    private static long millis(String token) {
+        try {
+            return Long.parseLong(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected milliseconds, got " + token);
+        }
+    }
+
+    /**
+     * Turns a locator written as prefix=value into a By; without a known prefix the whole text is a CSS selector.
+     */
+    static By locator(String text) {
+        int equals = text.indexOf('=');
+        String value = equals < 0 ? text : text.substring(equals + 1);
+        switch (equals < 0 ? "" : text.substring(0, equals)) {
+            case "name":
+                return By.name(value);
+            case "id":
+                return By.id(value);
+            case "css":
+                return By.cssSelector(value);
+            case "xpath":
+                return By.xpath(value);
+            case "linkText":
+                return By.linkText(value);
+            case "className":
+                return By.className(value);
+            case "tag":
+                return By.tagName(value);
+            default:
+                return By.cssSelector(text);
+        }
+    }
+
+    /**
+     * Splits a line at whitespace, keeping double-quoted text together without its quotes.
+     */
+    static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = null;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                if (token == null) {
+                    token = new StringBuilder();
+                }
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (token != null) {
+                    tokens.add(token.toString());
+                    token = null;
+                }
+            } else {
+                if (token == null) {
+                    token = new StringBuilder();
+                }
+                token.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unclosed quote");
+        }
+        if (token != null) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    /**
+     * @param name The name of a scenario.
+     * @return The compiled scenario, or null if there is none with that name.
+     */
+    public Scenario getScenario(String name) {
+        return scenarios.get(name);
+    }
+
+    /**
+     * @return The names of all scenarios, in the order they are defined.
+     */
+    public Set<String> getScenarioNames() {
+        return Collections.unmodifiableSet(scenarios.keySet());
+    }
+
+    /**
+     * Tells whether a TestData column is written by a scenario, i.e. holds a result rather than an input.
+     *
+     * @param column The name of the column, in any case.
+     * @return true if a storeText step names the column or a storeTable step's suffix ends it.
+     */
+    public boolean isOutputColumn(String column) {
+        for (String output : outputColumns) {
+            if (output.equalsIgnoreCase(column)) {
+                return true;
+            }
+        }
+        for (String suffix : outputSuffixes) {
+            if (column.length() > suffix.length()
+                    && column.regionMatches(true, column.length() - suffix.length(), suffix, 0, suffix.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The number of distinct TestCases cells parsed so far.
+     */
+    public int getInvocationCount() {
+        return invocations.size();
+    }
+}
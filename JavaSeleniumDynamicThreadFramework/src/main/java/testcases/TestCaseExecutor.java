@@ -1,45 +1,84 @@
 package testcases;
 
-import java.lang.reflect.Method;
+import core.RetryPolicy;
 
 /**
- * TestCaseExecutor is a utility class for dynamically executing test methods using Java Reflection.
- * It allows for the invocation of any method within the 'testcases.TestMethods' class based on the method name and arguments.
+ * TestCaseExecutor is a utility class for dynamically executing test cases by the name in their TestCases row.
+ * A name is either a hand-written method of 'testcases.TestMethods', resolved once into a TestMethodRegistry
+ * of method handles, or a scenario from the compiled ScenarioLibrary, optionally with parameters.
+ * Either way each execution is a lookup and a direct invocation rather than a reflective search.
+ * Executions go through a RetryPolicy, which retries infrastructure failures on a fresh session
+ * and fails a method at once when one of its checks fails.
  */
 public class TestCaseExecutor {
-    
+
+    // Shared TestMethods instance, which holds no state of its own
+    private static final TestMethods testMethods = new TestMethods();
+    // Hand-written test methods of TestMethods
+    private static final TestMethodRegistry registry = new TestMethodRegistry(testMethods);
+    // Scenarios compiled from scenarios.txt on the classpath
+    private static final ScenarioLibrary scenarios = ScenarioLibrary.load("scenarios.txt");
+    // Retries infrastructure failures, set with -Dretry.attempts, -Dretry.backoffMillis and -Dretry.maxBackoffMillis
+    private static final RetryPolicy retryPolicy = new RetryPolicy(Integer.getInteger("retry.attempts", 3),
+            Long.getLong("retry.backoffMillis", 1000), Long.getLong("retry.maxBackoffMillis", 10000));
+
     /**
-     * Executes a specified test case method from the 'testcases.TestMethods' class.
-     * It uses reflection to dynamically invoke the method.
+     * Executes the test method or scenario named in a TestCases row.
      *
-     * @param methodName The name of the method to execute.
-     * @param args Varargs arguments to pass to the test method. These can be of any type.
+     * @param methodName The name of the test method, or of the scenario with its parameters.
+     * @param testCaseName The name of the test case.
      * @return boolean indicating whether the test passed or failed. Returns 'true' if the test passes, 'false' otherwise.
      */
-    public static boolean executeTestCase(String methodName, Object... args) {
-        boolean passed = false;
-        try {
-            // Load the 'testcases.TestMethods' class
-            Class<?> c = Class.forName("testcases.TestMethods");
-            // Create a new instance of the class
-            Object obj = c.getDeclaredConstructor().newInstance();
-
-            // Determine the argument types for the method
-            Class<?>[] argTypes = new Class[args.length];
-            for (int i = 0; i < args.length; i++) {
-                argTypes[i] = args[i].getClass();
+    public static boolean executeTestCase(String methodName, String testCaseName) {
+        return executeWithRetries(methodName, testCaseName).passed;
+    }
+
+    /**
+     * Executes the test method or scenario named in a TestCases row, retrying it after infrastructure failures.
+     *
+     * @param methodName The name of the test method, or of the scenario with its parameters.
+     * @param testCaseName The name of the test case.
+     * @return The outcome, with the number of attempts it took and why the last attempt failed, if it did.
+     */
+    public static RetryPolicy.Result executeWithRetries(String methodName, String testCaseName) {
+        RetryPolicy.Result result = retryPolicy.execute(() -> {
+            if (registry.contains(methodName)) {
+                return registry.invoke(methodName, testCaseName);
             }
+            return testMethods.runScenario(scenarios.resolve(methodName), testCaseName);
+        });
+        if (result.failure != null) {
+            // Log the failure that decided the outcome
+            result.failure.printStackTrace();
+        }
+        return result;
+    }
+
+    /**
+     * Checks that every name in the TestCases table is a test method or resolves to a scenario.
+     *
+     * @param testCases The rows of the TestCases table.
+     * @throws IllegalArgumentException Listing every unknown name, if there are any.
+     */
+    public static void validateTestCases(String[][] testCases) {
+        registry.validate(testCases, scenarios::isDefined);
+    }
 
-            // Find and get the method by name and parameter types
-            Method method = c.getDeclaredMethod(methodName, argTypes);
+    /**
+     * Retrieves the registry of test methods.
+     *
+     * @return TestMethodRegistry of 'testcases.TestMethods'.
+     */
+    public static TestMethodRegistry getRegistry() {
+        return registry;
+    }
 
-            // Invoke the method with the provided arguments
-            passed = (boolean) method.invoke(obj, args);
-        } catch (Exception e) {
-            // Log the exception and set passed to false
-            e.printStackTrace();
-            passed = false;
-        }
-        return passed;
+    /**
+     * Retrieves the compiled scenarios.
+     *
+     * @return ScenarioLibrary loaded from scenarios.txt.
+     */
+    public static ScenarioLibrary getScenarios() {
+        return scenarios;
     }
 }
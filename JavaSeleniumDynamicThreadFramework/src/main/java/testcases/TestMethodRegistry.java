@@ -0,0 +1,135 @@
+package testcases;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * TestMethodRegistry resolves the test methods of an object once into method handles keyed by name.
+ * A test method is a public method returning boolean that takes the test case name as its only argument.
+ * Its name must be unique among the target's public methods, since a TestCases row names a method without a signature.
+ * Dispatching by name is then a map lookup and a direct handle invocation, with no class loading,
+ * instantiation or method search per call.
+ */
+public class TestMethodRegistry {
+
+    // Type every test method handle is adapted to: boolean method(String testCaseName)
+    private static final MethodType TEST_METHOD_TYPE = MethodType.methodType(boolean.class, String.class);
+
+    // Handles bound to the target object, by method name
+    private final Map<String, MethodHandle> handles;
+
+    /**
+     * Resolves the test methods of an object.
+     *
+     * @param target The object whose test methods are invoked; it is shared by all calls.
+     * @throws IllegalStateException If a test method is overloaded by another public method of the same name.
+     */
+    public TestMethodRegistry(Object target) {
+        Map<String, MethodHandle> resolved = new HashMap<>();
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        Map<String, Integer> overloads = new HashMap<>();
+        for (Method method : target.getClass().getMethods()) {
+            if (method.getDeclaringClass() != Object.class && !method.isBridge() && !method.isSynthetic()) {
+                overloads.merge(method.getName(), 1, Integer::sum);
+            }
+        }
+        for (Method method : target.getClass().getMethods()) {
+            if (method.getDeclaringClass() == Object.class || Modifier.isStatic(method.getModifiers())
+                    || method.getReturnType() != boolean.class
+                    || method.getParameterCount() != 1 || method.getParameterTypes()[0] != String.class) {
+                continue;
+            }
+            if (overloads.get(method.getName()) > 1) {
+                throw new IllegalStateException("Test method " + method.getName() + " is overloaded, a TestCases row could not tell which one it names");
+            }
+            try {
+                resolved.put(method.getName(), lookup.unreflect(method).bindTo(target).asType(TEST_METHOD_TYPE));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Test method " + method.getName() + " is not accessible", e);
+            }
+        }
+        this.handles = Collections.unmodifiableMap(resolved);
+    }
+
+    /**
+     * Invokes a test method.
+     *
+     * @param methodName The name of the test method.
+     * @param testCaseName The name of the test case, passed to the method.
+     * @return The result of the test method.
+     * @throws IllegalArgumentException If there is no test method with that name.
+     * @throws Exception Anything thrown by the test method itself; errors are passed on as they are.
+     */
+    public boolean invoke(String methodName, String testCaseName) throws Exception {
+        MethodHandle handle = handles.get(methodName);
+        if (handle == null) {
+            throw new IllegalArgumentException("Unknown test method: " + methodName);
+        }
+        try {
+            return (boolean) handle.invokeExact(testCaseName);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            // Neither an exception nor an error; a Java method cannot throw it
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+
+    /**
+     * Checks that every method named in the TestCases table exists, so a typo fails the run
+     * before any browser is started rather than as a failed test at the end.
+     *
+     * @param testCases The rows of the TestCases table: id, test case name, then method names.
+     * @throws IllegalArgumentException Listing every unknown method name, if there are any.
+     */
+    public void validate(String[][] testCases) {
+        validate(testCases, name -> false);
+    }
+
+    /**
+     * Checks that every name in the TestCases table is a test method or is accepted by another dispatcher,
+     * such as the scenario library.
+     *
+     * @param testCases The rows of the TestCases table: id, test case name, then method names.
+     * @param otherwiseKnown Tells whether a name that is not a test method can be executed anyway.
+     * @throws IllegalArgumentException Listing every unknown name, if there are any.
+     */
+    public void validate(String[][] testCases, Predicate<String> otherwiseKnown) {
+        Set<String> unknown = new LinkedHashSet<>();
+        for (String[] row : testCases) {
+            for (int i = 2; i < row.length; i++) {
+                if (row[i] != null && !row[i].isEmpty() && !handles.containsKey(row[i]) && !otherwiseKnown.test(row[i])) {
+                    unknown.add(row[1] + "." + row[i]);
+                }
+            }
+        }
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("Unknown test methods in TestCases: " + unknown);
+        }
+    }
+
+    /**
+     * @param methodName The name of a method.
+     * @return true if the registry has a test method with that name.
+     */
+    public boolean contains(String methodName) {
+        return handles.containsKey(methodName);
+    }
+
+    /**
+     * @return The names of all test methods.
+     */
+    public Set<String> getMethodNames() {
+        return handles.keySet();
+    }
+}
@@ -1,496 +1,74 @@
 package testcases;
 
-import java.io.File;
-import java.io.IOException;
-import org.apache.commons.io.FileUtils;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.WebDriver;
 import base.WebDriverManager;
+import core.RetryPolicy;
+import core.StepTimer;
+import mainpackage.TestRunner;
 
 /**
  * TestMethods contains specific test methods to be executed as part of the testing process.
+ * Test cases defined as scenarios all run through runScenario; a hand-written test method can still be added
+ * as a public method returning boolean that takes the test case name.
  * It includes functionalities for capturing and saving screenshots during test execution.
  */
 public class TestMethods {
 
     /**
-     * Captures and saves a screenshot of the current state of the web driver.
+     * Captures a screenshot of the current state of the web driver and hands it to the screenshot pipeline,
+     * which saves it with a thumbnail in the background. Takes no lock and does not wait on the disk.
+     * The image of a passed test is stored under its perceptual hash, so near-identical pages of the same test are stored once,
+     * and the image of a failed test under a name of its own; the runner takes the stored path from the pipeline when it reports the result.
+     * The capture itself is timed as the "screenshot.capture" step.
      *
-     * @param screenshotName The name to be used for the saved screenshot file.
+     * @param screenshotName The test the screenshot belongs to, e.g. the test case and scenario.
      * @param passed A boolean indicating whether the test passed or failed.
      */
-    public synchronized void captureAndSaveScreenshot(String screenshotName, boolean passed) {
+    public void captureAndSaveScreenshot(String screenshotName, boolean passed) {
         WebDriver driver = WebDriverManager.getDriver();
-        String homeDir = System.getProperty("user.dir");
         if (driver instanceof TakesScreenshot) {
             TakesScreenshot screenshotDriver = (TakesScreenshot) driver;
-            File screenshotFile = screenshotDriver.getScreenshotAs(OutputType.FILE);
-            String screenshotPath = homeDir + "\\src\\main\\resources\\screenshots\\" + screenshotName + ".png";
-            try {
-                FileUtils.copyFile(screenshotFile, new File(screenshotPath));
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method1(String screenshotName) {
-        WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-            StockPrice stockprice = new StockPrice(driver);
-            passed = stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method1: " + passed);
+            long start = StepTimer.start();
+            byte[] screenshot = screenshotDriver.getScreenshotAs(OutputType.BYTES);
+            StepTimer.record("screenshot.capture", start);
+            TestRunner.getScreenshotPipeline().submit(screenshotName, screenshot, passed);
         }
-        return passed;
     }
 
     /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
+     * Runs a scenario for a test case, captures a screenshot, and returns the WebDriver to the pool.
+     * Every TestCases row naming a scenario is executed through this method, so adding a test case needs no new code.
+     * If the scenario fails on the infrastructure, as classified by RetryPolicy, the session is discarded
+     * instead of returned, so a retry borrows a fresh one, and no screenshot is taken of the broken session.
      *
-     * @param screenshotName The name to be used for the screenshot file.
+     * @param invocation The scenario named in the TestCases row, with the row's parameters.
+     * @param testCaseName The name of the test case, also used for the screenshot.
      * @return boolean indicating whether the test passed or failed.
+     * @throws Exception Anything that stopped the scenario, for the RetryPolicy to classify.
      */
-    public boolean method2(String screenshotName) {
+    public boolean runScenario(ScenarioInvocation invocation, String testCaseName) throws Exception {
         WebDriver driver = WebDriverManager.getDriver();
         boolean passed = false;
+        boolean sessionBroken = false;
         try {
-            StockPrice stockprice = new StockPrice(driver);
-            passed = stockprice.stockPriceSearch(driver, screenshotName);
+            passed = invocation.run(driver, testCaseName, TestRunner.getDatabaseReader(), TestRunner.getTestDataWriter());
         } catch (Exception e) {
-            e.printStackTrace();
+            sessionBroken = RetryPolicy.classify(e) == RetryPolicy.FailureKind.INFRASTRUCTURE;
+            throw e;
         } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method2: " + passed);
+            if (sessionBroken) {
+                WebDriverManager.quitDriver();
+            } else {
+                try {
+                    captureAndSaveScreenshot(testCaseName + "." + invocation.getScenario().getName(), passed);
+                } finally {
+                    WebDriverManager.releaseDriver();
+                }
+            }
+            System.out.println(invocation.getScenario().getName() + ": " + passed);
         }
         return passed;
     }
-
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method3(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method3: "+passed);
-        }
-		return passed;
-    }
-
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method4(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method4: "+passed);
-        }
-		return passed;
-    }
-
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method5(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method5: "+passed);
-        }
-		return passed;
-    }
-
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method6(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method6: "+passed);
-        }
-		return passed;
-    }
-
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method7(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method7: "+passed);
-        }
-		return passed;
-    }
-
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method8(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method8: "+passed);
-        }
-		return passed;
-    }
-    
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method9(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method7: "+passed);
-        }
-		return passed;
-    }
-    
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method10(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method7: "+passed);
-        }
-		return passed;
-    }
-    
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method11(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method7: "+passed);
-        }
-		return passed;
-	}
-    
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method12(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method7: "+passed);
-        }
-		return passed;
-	}
-    
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method13(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method7: "+passed);
-        }
-		return passed;
-	}
-    
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method14(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method7: "+passed);
-        }
-		return passed;
-	}
-    
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method15(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method7: "+passed);
-        }
-		return passed;
-	}
-    
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method16(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method7: "+passed);
-        }
-		return passed;
-	}
-    
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method17(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method7: "+passed);
-        }
-		return passed;
-	}
-    
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method18(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method7: "+passed);
-        }
-		return passed;
-	}
-    
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method19(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method7: "+passed);
-        }
-		return passed;
-	}
-    
-    /**
-     * Executes a specific test case, captures a screenshot, and quits the WebDriver.
-     * Another test method with similar functionality to method1 for demonstration purposes. It can be replaced or modified to fit specific test case needs.
-     *
-     * @param screenshotName The name to be used for the screenshot file.
-     * @return boolean indicating whether the test passed or failed.
-     */
-    public boolean method20(String screenshotName) {
-    	WebDriver driver = WebDriverManager.getDriver();
-        boolean passed = false;
-        try {
-        	StockPrice stockprice= new StockPrice(driver);
-        	passed=stockprice.stockPriceSearch(driver, screenshotName);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            captureAndSaveScreenshot(screenshotName, passed);
-            driver.quit();
-            System.out.println("method7: "+passed);
-        }
-		return passed;
-	}
 }
@@ -0,0 +1,104 @@
+package performancerequirementtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+
+import base.BasePage;
+import base.WebDriverManager;
+import base.WebDriverPool;
+import stubs.StubWebDriver;
+
+/**
+ * BasePageContentionTest runs page actions on many threads at once, each on the driver WebDriverManager
+ * hands its thread, and checks that no driver is shared between two threads and every action reaches its driver.
+ * How throughput scales with the number of threads is measured by WebDriverManagerBenchmark.
+ */
+public class BasePageContentionTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS_PER_THREAD = 20;
+    private static final int ACTIONS_PER_ROUND = 10;
+    // Simulated round trip of every driver command
+    private static final long COMMAND_LATENCY_MILLIS = 1;
+
+    private WebDriverPool pool;
+
+    @Before
+    public void useStubPool() {
+        pool = new WebDriverPool(() -> {
+            StubWebDriver driver = new StubWebDriver();
+            driver.setCommandLatencyMillis(COMMAND_LATENCY_MILLIS);
+            return driver;
+        }, THREADS, 5, 60000);
+        WebDriverManager.usePool(pool);
+    }
+
+    @After
+    public void closePool() {
+        WebDriverManager.shutdown();
+    }
+
+    @Test
+    public void threadsNeverShareADriver() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        Set<WebDriver> inUse = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        AtomicInteger shared = new AtomicInteger();
+        AtomicInteger lostCommands = new AtomicInteger();
+        for (int t = 0; t < THREADS; t++) {
+            executor.execute(() -> {
+                By locator = By.name("q");
+                try {
+                    start.await();
+                    for (int round = 0; round < ROUNDS_PER_THREAD; round++) {
+                        StubWebDriver driver = (StubWebDriver) WebDriverManager.getDriver();
+                        if (!inUse.add(driver)) {
+                            shared.incrementAndGet();
+                        }
+                        int before = driver.commands.get();
+                        BasePage page = new BasePage(driver);
+                        for (int i = 0; i < ACTIONS_PER_ROUND; i++) {
+                            page.getText(locator);
+                        }
+                        if (driver.commands.get() - before < ACTIONS_PER_ROUND) {
+                            lostCommands.incrementAndGet();
+                        }
+                        inUse.remove(driver);
+                        // Every fourth round ends like a failed test and quits its session
+                        if (round % 4 == 3) {
+                            WebDriverManager.quitDriver();
+                        } else {
+                            WebDriverManager.releaseDriver();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue("page actions did not finish", done.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals("drivers used by two threads at once", 0, shared.get());
+        assertEquals("rounds whose commands did not all reach their driver", 0, lostCommands.get());
+        assertEquals(0, pool.getActiveCount());
+    }
+}
@@ -0,0 +1,56 @@
+package performancerequirementtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.openqa.selenium.By;
+
+import base.PageWaits;
+import stubs.StubWebDriver;
+
+/**
+ * PageWaitsTest measures how long the condition-based waits used by the stockPriceSearch scenario take on a page
+ * that settles after a known delay, and compares it with the fixed sleeps they replace
+ * (3 s after typing, 5 s after submitting and 2 s per table row).
+ */
+public class PageWaitsTest {
+
+    // Time the simulated page keeps changing after each action
+    private static final long SETTLE_MILLIS = 400;
+    private static final long QUIET_MILLIS = 300;
+    private static final int TABLE_ROWS = 6;
+
+    @Test
+    public void waitsReturnSoonAfterThePageSettles() {
+        StubWebDriver driver = new StubWebDriver();
+        PageWaits waits = new PageWaits(driver, 10);
+
+        long start = System.currentTimeMillis();
+        // DOM keeps growing until the page settles
+        driver.setScriptHandler(script -> Math.min(System.currentTimeMillis() - start, SETTLE_MILLIS));
+        waits.forDomStable(QUIET_MILLIS);
+        long afterTyping = System.currentTimeMillis();
+
+        // Table rows keep appearing until the results have rendered
+        driver.setElementCount(() -> (int) Math.min(TABLE_ROWS, 1 + (System.currentTimeMillis() - afterTyping) / 50));
+        int rows = waits.forElementCountSettled(By.cssSelector(".CYGKSb tr"), QUIET_MILLIS);
+        long waited = System.currentTimeMillis() - start;
+
+        long slept = 3000 + 5000 + 2000L * rows;
+        System.out.printf("stockPriceSearch waits: %d ms condition-based vs %d ms fixed sleeps, %d ms saved per test%n",
+                waited, slept, slept - waited);
+        assertEquals(TABLE_ROWS, rows);
+        assertTrue("waited " + waited + " ms", waited < 2 * (SETTLE_MILLIS + QUIET_MILLIS) + 500);
+    }
+
+    @Test
+    public void jsPredicateIsPolledUntilTrue() {
+        StubWebDriver driver = new StubWebDriver();
+        long readyAt = System.currentTimeMillis() + 200;
+        driver.setScriptHandler(script -> System.currentTimeMillis() >= readyAt);
+        long start = System.currentTimeMillis();
+        new PageWaits(driver, 5).forJs("return !!window.appReady;");
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+}
@@ -1,6 +1,6 @@
 package performancerequirementtesting;
 
-import testcases.TestMethods;
+import testcases.TestCaseExecutor;
 
 /**
  * PerformanceTestCase contains methods for validating the execution time of test cases,
@@ -18,8 +18,7 @@ public class PerformanceTestCase {
      */
     public static boolean validateTestcaseExecutionTime(String testcaseName, long expectedTimeMillis) {
         long start = System.currentTimeMillis();
-        TestMethods methods = new TestMethods();
-        methods.method1(testcaseName);
+        TestCaseExecutor.executeTestCase("method1", testcaseName);
         long end = System.currentTimeMillis();
         return (end - start) <= expectedTimeMillis;
     }
@@ -0,0 +1,150 @@
+package performancerequirementtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.openqa.selenium.By;
+
+import base.BasePage;
+import core.GridCapacityScheduler;
+import core.WorkerThreads;
+import stubs.StubWebDriver;
+
+/**
+ * VirtualThreadModeTest compares the two execution modes with 500 tests queued on a grid with as many slots,
+ * each test blocked on stub driver commands with a simulated round trip. On platform threads every running
+ * test holds an OS thread; on virtual threads the OS thread count stays flat. The comparison needs a Java 21
+ * runtime and is skipped on older ones, where the virtual mode falls back to platform threads instead.
+ */
+public class VirtualThreadModeTest {
+
+    private static final int TESTS = 500;
+    // Simulated round trip of every driver command
+    private static final long COMMAND_LATENCY_MILLIS = 500;
+
+    @Test
+    public void platformThreadsGrowWithRunningTests() throws Exception {
+        Usage platform = run(WorkerThreads.Mode.PLATFORM);
+        System.out.println("platform threads: " + platform);
+        assertTrue(platform.toString(), platform.threads >= TESTS);
+    }
+
+    @Test
+    public void virtualThreadsUseFewerOsThreadsAndLessMemory() throws Exception {
+        Assume.assumeTrue("virtual threads need Java 21", javaFeatureVersion() >= 21 && WorkerThreads.isVirtualAvailable());
+        Usage platform = run(WorkerThreads.Mode.PLATFORM);
+        Usage virtual = run(WorkerThreads.Mode.VIRTUAL);
+        System.out.println("platform threads: " + platform);
+        System.out.println("virtual threads:  " + virtual);
+        assertTrue(virtual.toString(), virtual.threads < TESTS / 10);
+        assertTrue(virtual + " vs " + platform, virtual.threads < platform.threads);
+        if (platform.residentKib >= 0 && virtual.residentKib >= 0) {
+            assertTrue(virtual + " vs " + platform, virtual.residentKib < platform.residentKib);
+        }
+    }
+
+    @Test
+    public void virtualModeFallsBackToPlatformThreadsBeforeJava21() throws Exception {
+        Assume.assumeTrue(javaFeatureVersion() < 21);
+        Usage fallback = run(WorkerThreads.Mode.VIRTUAL);
+        assertTrue(fallback.toString(), fallback.threads >= TESTS);
+    }
+
+    /**
+     * Runs all tests on a scheduler in the given mode and measures the threads and memory
+     * added while every test is running.
+     */
+    private static Usage run(WorkerThreads.Mode mode) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.gc();
+        int threadsBefore = threads.getThreadCount();
+        long rssBefore = residentKib();
+        // The hub is unreachable, so the scheduler keeps the initial slot count
+        GridCapacityScheduler scheduler = new GridCapacityScheduler("http://127.0.0.1:9", TESTS, 60000, WorkerThreads.newExecutor(mode));
+        scheduler.start();
+        CountDownLatch started = new CountDownLatch(TESTS);
+        CountDownLatch done = new CountDownLatch(TESTS);
+        AtomicInteger passed = new AtomicInteger();
+        for (int i = 0; i < TESTS; i++) {
+            String query = "Stock" + i;
+            scheduler.submit(() -> {
+                try {
+                    StubWebDriver driver = new StubWebDriver();
+                    driver.setCommandLatencyMillis(COMMAND_LATENCY_MILLIS);
+                    BasePage page = new BasePage(driver);
+                    started.countDown();
+                    page.sendKeys(By.name("q"), query);
+                    page.getText(By.name("q"));
+                    passed.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue("tests did not start", started.await(30, TimeUnit.SECONDS));
+        Usage usage = new Usage(threads.getThreadCount() - threadsBefore, residentKib() - rssBefore);
+        assertTrue("tests did not finish", done.await(30, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        assertEquals(TESTS, passed.get());
+        // Let the worker threads exit so they are not counted by the next run
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (threads.getThreadCount() > threadsBefore + 2 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        return usage;
+    }
+
+    /**
+     * @return The feature version of the running Java, e.g. 8 for 1.8 and 21 for 21.0.2.
+     */
+    private static int javaFeatureVersion() {
+        String version = System.getProperty("java.specification.version");
+        return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+    }
+
+    /**
+     * Reads the resident memory of this process, or -1 where /proc is not available.
+     */
+    private static long residentKib() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Fall through
+        }
+        return -1;
+    }
+
+    /**
+     * Threads and resident memory added while all tests were running.
+     */
+    private static class Usage {
+        final int threads;
+        final long residentKib;
+
+        Usage(int threads, long residentKib) {
+            this.threads = threads;
+            this.residentKib = residentKib;
+        }
+
+        @Override
+        public String toString() {
+            return "+" + threads + " OS threads, +" + residentKib / 1024 + " MiB resident for " + TESTS + " running tests";
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package performancerequirementtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import core.FileWorkQueue;
+import stubs.QueueWorkerMain;
+
+/**
+ * WorkStealingShardingTest shares one run between three worker JVMs. The slow worker starts first and claims
+ * a large batch; the two fast workers drain the rest of the queue and then steal its waiting claims, so the
+ * run ends long before the slow worker could finish its batch alone. Every method must run exactly once.
+ */
+public class WorkStealingShardingTest {
+
+    private static final int METHODS = 60;
+    private static final long SLOW_MILLIS = 300;
+    private static final long FAST_MILLIS = 20;
+    private static final int SLOW_PREFETCH = 20;
+
+    @Test
+    public void idleWorkersStealFromASlowWorker() throws Exception {
+        Path dir = Files.createTempDirectory("queue");
+        List<Process> workers = new ArrayList<>();
+        try {
+            FileWorkQueue queue = new FileWorkQueue(dir);
+            List<FileWorkQueue.WorkItem> items = new ArrayList<>();
+            for (int i = 0; i < METHODS; i++) {
+                items.add(new FileWorkQueue.WorkItem(i, "TestCase" + i, "method" + i));
+            }
+            queue.enqueue(items);
+
+            long start = System.currentTimeMillis();
+            workers.add(startWorker(dir, "slow", 1, SLOW_PREFETCH, SLOW_MILLIS));
+            Path slowClaims = dir.resolve("claimed").resolve("slow");
+            while (!Files.isDirectory(slowClaims) || count(slowClaims) == 0) {
+                assertTrue("slow worker claimed nothing", System.currentTimeMillis() - start < 30000);
+                Thread.sleep(10);
+            }
+            workers.add(startWorker(dir, "fast1", 2, 2, FAST_MILLIS));
+            workers.add(startWorker(dir, "fast2", 2, 2, FAST_MILLIS));
+
+            TreeSet<Integer> sequences = new TreeSet<>();
+            Map<String, Integer> perWorker = new HashMap<>();
+            int stolen = 0;
+            int results = 0;
+            while (results < METHODS) {
+                assertTrue("only " + results + " results", System.currentTimeMillis() - start < 60000);
+                for (FileWorkQueue.Result result : queue.pollResults()) {
+                    results++;
+                    sequences.add(result.item.sequence);
+                    perWorker.merge(result.workerId, 1, Integer::sum);
+                    if (result.stolen) {
+                        stolen++;
+                    }
+                }
+                Thread.sleep(20);
+            }
+            long elapsed = System.currentTimeMillis() - start;
+
+            int ran = 0;
+            for (Process worker : workers) {
+                ran += ranCount(worker);
+            }
+            System.out.println("results per worker: " + perWorker + ", stolen: " + stolen + ", elapsed: " + elapsed + " ms");
+            assertEquals(METHODS, sequences.size());
+            assertEquals(Integer.valueOf(0), sequences.first());
+            assertEquals(Integer.valueOf(METHODS - 1), sequences.last());
+            assertEquals("every method ran exactly once", METHODS, ran);
+            assertTrue("nothing was stolen", stolen > 0);
+            assertTrue(perWorker.toString(), perWorker.get("slow") < SLOW_PREFETCH);
+            assertTrue(queue.isDrained());
+        } finally {
+            for (Process worker : workers) {
+                worker.destroyForcibly();
+            }
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    private static Process startWorker(Path dir, String workerId, int slots, int prefetch, long millis) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), QueueWorkerMain.class.getName(),
+                dir.toString(), workerId, String.valueOf(slots), String.valueOf(prefetch), String.valueOf(millis))
+                .redirectErrorStream(true)
+                .start();
+    }
+
+    /**
+     * Waits for a worker to exit and returns the number of methods it reported.
+     */
+    private static int ranCount(Process worker) throws IOException, InterruptedException {
+        int ran = -1;
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(worker.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.startsWith("ran ")) {
+                    ran = Integer.parseInt(line.substring(4));
+                } else {
+                    System.out.println(line);
+                }
+            }
+        }
+        assertEquals(0, worker.waitFor());
+        return ran;
+    }
+
+    private static long count(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
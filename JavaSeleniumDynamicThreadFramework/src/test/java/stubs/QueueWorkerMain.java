@@ -0,0 +1,35 @@
+package stubs;
+
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import core.FileWorkQueue;
+import core.QueueWorker;
+
+/**
+ * QueueWorkerMain is a worker process for multi-JVM tests: it takes methods from a FileWorkQueue like a runner
+ * started with -Drunner.role=worker, but each method just sleeps instead of driving a browser.
+ * Arguments: queue directory, worker id, slots, prefetch, milliseconds per method.
+ * Prints "ran N" when the queue is drained.
+ */
+public class QueueWorkerMain {
+
+    public static void main(String[] args) throws Exception {
+        int slots = Integer.parseInt(args[2]);
+        long millis = Long.parseLong(args[4]);
+        ExecutorService threads = Executors.newFixedThreadPool(slots);
+        int ran = new QueueWorker(new FileWorkQueue(Paths.get(args[0])), args[1], slots, Integer.parseInt(args[3]), 20)
+                .run(item -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        Thread.sleep(millis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new FileWorkQueue.Outcome(true, millis, null);
+                }, threads));
+        threads.shutdown();
+        System.out.println("ran " + ran);
+    }
+}
@@ -0,0 +1,231 @@
+package stubs;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/**
+ * StubWebDriver is an in-memory WebDriver that answers every command locally,
+ * so framework code can be exercised without a browser or a Selenium Grid.
+ */
+public class StubWebDriver implements WebDriver, JavascriptExecutor {
+
+    // Number of commands sent to this driver
+    public final AtomicInteger commands = new AtomicInteger();
+    // Number of times the cookies were cleared
+    public final AtomicInteger cookieResets = new AtomicInteger();
+    // Simulated round-trip time of each command to the grid
+    private volatile long commandLatencyMillis;
+    // Answers executeScript calls, by default with null
+    private volatile Function<String, Object> scriptHandler = script -> null;
+    // Number of elements findElements returns
+    private volatile IntSupplier elementCount = () -> 0;
+    private volatile String currentUrl = "about:blank";
+    private volatile boolean quit;
+    private volatile boolean broken;
+
+    /**
+     * Makes every following command fail as if the browser had crashed.
+     */
+    public void breakSession() {
+        broken = true;
+    }
+
+    /**
+     * Makes every command take the given time, as a round trip to a remote grid node would.
+     *
+     * @param millis The simulated latency in milliseconds.
+     */
+    public void setCommandLatencyMillis(long millis) {
+        commandLatencyMillis = millis;
+    }
+
+    /**
+     * Sets how executeScript calls are answered.
+     *
+     * @param handler Maps the script source to its result.
+     */
+    public void setScriptHandler(Function<String, Object> handler) {
+        scriptHandler = handler;
+    }
+
+    /**
+     * Sets how many elements findElements returns, which may change from call to call.
+     *
+     * @param count Supplies the number of elements.
+     */
+    public void setElementCount(IntSupplier count) {
+        elementCount = count;
+    }
+
+    /**
+     * @return true if quit has been called.
+     */
+    public boolean isQuit() {
+        return quit;
+    }
+
+    private void command() {
+        commands.incrementAndGet();
+        if (quit || broken) {
+            throw new NoSuchSessionException("Stub session is gone");
+        }
+        if (commandLatencyMillis > 0) {
+            try {
+                Thread.sleep(commandLatencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void get(String url) {
+        command();
+        currentUrl = url;
+    }
+
+    @Override
+    public String getCurrentUrl() {
+        command();
+        return currentUrl;
+    }
+
+    @Override
+    public String getTitle() {
+        command();
+        return "";
+    }
+
+    @Override
+    public List<WebElement> findElements(By by) {
+        command();
+        int count = elementCount.getAsInt();
+        List<WebElement> elements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            elements.add(element());
+        }
+        return elements;
+    }
+
+    @Override
+    public WebElement findElement(By by) {
+        command();
+        return element();
+    }
+
+    @Override
+    public String getPageSource() {
+        command();
+        return "<html></html>";
+    }
+
+    @Override
+    public void close() {
+        command();
+    }
+
+    @Override
+    public void quit() {
+        quit = true;
+    }
+
+    @Override
+    public Set<String> getWindowHandles() {
+        command();
+        return Collections.singleton("window-1");
+    }
+
+    @Override
+    public String getWindowHandle() {
+        command();
+        return "window-1";
+    }
+
+    @Override
+    public TargetLocator switchTo() {
+        command();
+        return stub(TargetLocator.class);
+    }
+
+    @Override
+    public Navigation navigate() {
+        command();
+        return stub(Navigation.class);
+    }
+
+    @Override
+    public Options manage() {
+        command();
+        return (Options) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Options.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("deleteAllCookies")) {
+                        cookieResets.incrementAndGet();
+                    }
+                    return null;
+                });
+    }
+
+    @Override
+    public Object executeScript(String script, Object... args) {
+        command();
+        return scriptHandler.apply(script);
+    }
+
+    @Override
+    public Object executeAsyncScript(String script, Object... args) {
+        command();
+        return null;
+    }
+
+    /**
+     * Creates a visible, enabled element whose commands go through this driver.
+     */
+    private WebElement element() {
+        return (WebElement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { WebElement.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "StubWebElement";
+                        default:
+                            break;
+                    }
+                    command();
+                    switch (method.getName()) {
+                        case "isDisplayed":
+                        case "isEnabled":
+                            return true;
+                        case "isSelected":
+                            return false;
+                        case "getText":
+                            return "";
+                        case "findElements":
+                            return Collections.emptyList();
+                        case "findElement":
+                            return element();
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private <T> T stub(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> null));
+    }
+}
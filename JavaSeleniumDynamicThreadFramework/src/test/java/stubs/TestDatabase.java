@@ -0,0 +1,55 @@
+package stubs;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import database.ConnectionPool;
+
+/**
+ * TestDatabase creates an embedded H2 database in MySQL mode with the TestCases and TestData tables
+ * of the QATestingDatabase schema, so database code can be tested without a MySQL server.
+ */
+public class TestDatabase {
+
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * Creates a fresh database with the given number of test cases, each with a TestData row.
+     *
+     * @param testCases The number of test cases to insert, named TestCase1..TestCaseN and mapped to method1..methodN.
+     * @param maxConnections The maximum size of the returned pool.
+     * @return A ConnectionPool for the new database.
+     * @throws SQLException If the schema cannot be created.
+     */
+    public static ConnectionPool create(int testCases, int maxConnections) throws SQLException {
+        return create(testCases, maxConnections, 60000);
+    }
+
+    /**
+     * Creates a fresh database with the given number of test cases, each with a TestData row.
+     *
+     * @param testCases The number of test cases to insert, named TestCase1..TestCaseN and mapped to method1..methodN.
+     * @param maxConnections The maximum size of the returned pool.
+     * @param maxIdleMillis The idle time after which the returned pool closes a connection.
+     * @return A ConnectionPool for the new database.
+     * @throws SQLException If the schema cannot be created.
+     */
+    public static ConnectionPool create(int testCases, int maxConnections, long maxIdleMillis) throws SQLException {
+        String url = "jdbc:h2:mem:QATestingDatabase" + counter.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        ConnectionPool pool = new ConnectionPool(url, "root", "root", maxConnections, maxIdleMillis);
+        try (Connection conn = pool.getConnection(); Statement statement = conn.createStatement()) {
+            statement.execute("CREATE TABLE TestCases (TestCaseID INT AUTO_INCREMENT PRIMARY KEY,"
+                    + " TestCaseName VARCHAR(255) NOT NULL UNIQUE, AssociatedMethod VARCHAR(255) NOT NULL)");
+            statement.execute("CREATE TABLE TestData (TestDataID INT AUTO_INCREMENT PRIMARY KEY,"
+                    + " TestCaseName VARCHAR(255) NOT NULL, stockname VARCHAR(255), OpenPrice VARCHAR(255),"
+                    + " HighPrice VARCHAR(255), LowPrice VARCHAR(255))");
+            for (int i = 1; i <= testCases; i++) {
+                statement.execute("INSERT INTO TestCases (TestCaseName, AssociatedMethod) VALUES ('TestCase" + i + "', 'method" + i + "')");
+                statement.execute("INSERT INTO TestData (TestCaseName, stockname) VALUES ('TestCase" + i + "', 'Stock" + i + "')");
+            }
+        }
+        return pool;
+    }
+}
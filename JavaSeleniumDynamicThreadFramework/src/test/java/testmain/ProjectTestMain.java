@@ -2,10 +2,11 @@ package testmain;
 
 import org.openqa.selenium.WebDriver;
 import base.WebDriverManager;
+import mainpackage.TestRunner;
 import blackboxtesting.BlackBoxTestCase;
 import businessrequirementtesting.BusinessRequirementTestCase;
 import performancerequirementtesting.PerformanceTestCase;
-import testcases.StockPrice;
+import testcases.TestCaseExecutor;
 import whiteboxtesting.WhiteBoxTestCase;
 
 /**
@@ -25,14 +26,15 @@ public class ProjectTestMain {
     public static void main(String[] args) {
         // Initialize WebDriver
         WebDriver driver = WebDriverManager.getDriver();
-        StockPrice stockPrice = new StockPrice(driver);
         
         // Test case: Verify URL after Search
         try {
-            stockPrice.stockPriceSearch(driver, "TestCase1");
+            TestCaseExecutor.getScenarios().resolve("stockPriceSearch")
+                    .run(driver, "TestCase1", TestRunner.getDatabaseReader(), TestRunner.getTestDataWriter());
+            TestRunner.getTestDataWriter().flush();
             boolean isUrlCorrect = BlackBoxTestCase.verifyUrlContainsStockName(driver, "Apple");
             System.out.println("Test 1: Verify URL after search: " + (isUrlCorrect ? "Passed" : "Failed"));
-        } catch (InterruptedException e) {
+        } catch (RuntimeException e) {
             e.printStackTrace();
         }
 
@@ -48,8 +50,9 @@ public class ProjectTestMain {
         boolean isPageLoadTimeValid = PerformanceTestCase.validateTestcaseExecutionTime("TestCase2", 40000);
         System.out.println("Test 4: Validate Page Load Time: " + (isPageLoadTimeValid ? "Passed" : "Failed"));
 
-        // Close the WebDriver
-        driver.quit();
+        // Close the WebDriver and any pooled sessions
+        WebDriverManager.releaseDriver();
+        WebDriverManager.shutdown();
     }    
 
 }
@@ -0,0 +1,107 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import core.AdaptiveConcurrencyLimiter;
+
+/**
+ * AdaptiveConcurrencyLimiterTest verifies the additive increase, multiplicative decrease
+ * and signal-based wake-up of the adaptive limiter.
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private final AtomicBoolean overloaded = new AtomicBoolean();
+
+    @Test
+    public void growsAdditivelyWhileHealthyAndHalvesOnSlowdown() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 16, overloaded::get);
+        limiter.acquire();
+        limiter.acquire();
+        limiter.onLatency("method1", 1000);
+        limiter.onLatency("method1", 1000);
+        limiter.onLatency("method1", 1000);
+        assertEquals(3, limiter.getLimit());
+
+        // method1 suddenly takes three times as long as usual
+        limiter.onLatency("method1", 3000);
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void halvesWhileHostIsOverloaded() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 16, overloaded::get);
+        overloaded.set(true);
+        limiter.onLoadChanged();
+        assertEquals(4, limiter.getLimit());
+        limiter.onLoadChanged();
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void waitsForTheCooldownBetweenDecreases() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(16, 1, 16, overloaded::get, 200);
+        overloaded.set(true);
+        limiter.onLoadChanged();
+        assertEquals(8, limiter.getLimit());
+        // The next sample and a test that ran under the old limit see the same congestion
+        limiter.onLoadChanged();
+        limiter.onLatency("method1", 1000);
+        assertEquals(8, limiter.getLimit());
+
+        Thread.sleep(250);
+        // Started before the decrease, so it still ran under the old limit
+        limiter.onLatency("method1", 1000);
+        assertEquals(8, limiter.getLimit());
+        limiter.onLoadChanged();
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void waitingTaskIsWokenWhenCapacityFrees() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 16, overloaded::get);
+        limiter.acquire();
+        CountDownLatch admitted = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire();
+                admitted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        assertFalse(admitted.await(200, TimeUnit.MILLISECONDS));
+        limiter.release();
+        assertTrue(admitted.await(1, TimeUnit.SECONDS));
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void waitingTaskIsWokenWhenLoadDrops() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 16, overloaded::get);
+        limiter.acquire();
+        overloaded.set(true);
+        CountDownLatch admitted = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire();
+                admitted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        assertFalse(admitted.await(200, TimeUnit.MILLISECONDS));
+        overloaded.set(false);
+        limiter.onLoadChanged();
+        assertTrue(admitted.await(1, TimeUnit.SECONDS));
+    }
+}
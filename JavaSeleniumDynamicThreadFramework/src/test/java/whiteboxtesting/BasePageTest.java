@@ -0,0 +1,44 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.openqa.selenium.NoSuchElementException;
+
+import base.BasePage;
+import stubs.StubWebDriver;
+
+/**
+ * BasePageTest verifies that a whole table is read in a single round trip to the browser
+ * and that a missing table is reported like any other missing element.
+ */
+public class BasePageTest {
+
+    @Test
+    public void readsTableTextInOneRoundTrip() {
+        StubWebDriver driver = new StubWebDriver();
+        driver.setScriptHandler(script -> Arrays.asList(
+                Arrays.asList("Open", "187.70"),
+                Arrays.asList("High", "189.10"),
+                Arrays.asList(),
+                Arrays.asList("Mkt cap", "2.91T")));
+        BasePage page = new BasePage(driver);
+        int before = driver.commands.get();
+
+        List<List<String>> rows = page.readTableText(".CYGKSb");
+
+        assertEquals(1, driver.commands.get() - before);
+        assertEquals(4, rows.size());
+        assertEquals(Arrays.asList("High", "189.10"), rows.get(1));
+        assertEquals(0, rows.get(2).size());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void missingTableThrows() {
+        BasePage page = new BasePage(new StubWebDriver());
+        page.readTableText(".missing");
+    }
+}
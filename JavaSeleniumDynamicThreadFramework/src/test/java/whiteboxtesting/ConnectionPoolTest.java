@@ -0,0 +1,121 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import database.ConnectionPool;
+import database.DatabaseReader;
+import stubs.TestDatabase;
+
+/**
+ * ConnectionPoolTest verifies connection reuse, the statement cache, bounded concurrency
+ * and idle eviction of the ConnectionPool against an embedded H2 database in MySQL mode.
+ */
+public class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @After
+    public void closePool() {
+        pool.close();
+    }
+
+    @Test
+    public void reusesConnectionsAcrossQueries() throws Exception {
+        pool = TestDatabase.create(3, 4);
+        DatabaseReader reader = new DatabaseReader(pool);
+        assertEquals(3, reader.readTable("TestCases").length);
+        for (int i = 0; i < 50; i++) {
+            reader.updateValue("TestData", "TestCase2", "OpenPrice", "187." + i);
+            assertEquals("187." + i, reader.getValue("TestData", "TestCase2", "OpenPrice"));
+        }
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(102, pool.getBorrowCount());
+    }
+
+    @Test
+    public void cachesPreparedStatementsPerConnection() throws Exception {
+        pool = TestDatabase.create(1, 1);
+        String sql = "SELECT stockname FROM TestData WHERE TestCaseName = ?";
+        PreparedStatement first;
+        try (Connection conn = pool.getConnection(); PreparedStatement statement = conn.prepareStatement(sql)) {
+            first = statement.unwrap(PreparedStatement.class);
+        }
+        try (Connection conn = pool.getConnection(); PreparedStatement statement = conn.prepareStatement(sql)) {
+            assertTrue(first == statement.unwrap(PreparedStatement.class));
+        }
+    }
+
+    @Test
+    public void ignoresCloseOnAStaleHandle() throws Exception {
+        pool = TestDatabase.create(1, 2);
+        Connection stale = pool.getConnection();
+        stale.close();
+        Connection current = pool.getConnection();
+        assertEquals(1, pool.getCreatedCount());
+        stale.close();
+        assertTrue(stale.isClosed());
+        assertFalse(current.isClosed());
+        assertEquals(1, pool.getActiveCount());
+        assertEquals(0, pool.getIdleCount());
+        try {
+            stale.createStatement();
+            fail("a stale handle must not reach the connection");
+        } catch (SQLException expected) {
+            // The connection belongs to the current borrower
+        }
+        // Only one more connection may be borrowed next to the current one
+        Connection second = pool.getConnection();
+        assertEquals(2, pool.getCreatedCount());
+        current.close();
+        second.close();
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    public void boundsConcurrentConnections() throws Exception {
+        pool = TestDatabase.create(8, 3);
+        DatabaseReader reader = new DatabaseReader(pool);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 1; t <= 8; t++) {
+            String testCase = "TestCase" + t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 25; i++) {
+                    reader.updateValue("TestData", testCase, "HighPrice", String.valueOf(i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(pool.getCreatedCount() <= 3);
+        assertEquals(0, pool.getActiveCount());
+        assertEquals("24", reader.getValue("TestData", "TestCase5", "HighPrice"));
+    }
+
+    @Test
+    public void evictsIdleConnections() throws Exception {
+        pool = TestDatabase.create(1, 2, 50);
+        pool.getConnection().close();
+        Thread.sleep(100);
+        pool.evictIdle();
+        assertEquals(0, pool.getIdleCount());
+        new DatabaseReader(pool).getValue("TestData", "TestCase1", "stockname");
+        assertEquals(2, pool.getCreatedCount());
+    }
+}
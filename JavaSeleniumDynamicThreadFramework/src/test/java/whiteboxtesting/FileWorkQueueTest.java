@@ -0,0 +1,186 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import core.FileWorkQueue;
+import core.QueueWorker;
+
+/**
+ * FileWorkQueueTest verifies the directory protocol shared by a coordinator and its workers: methods are taken
+ * in plan order, idle workers steal from the end of another worker's claims, results reach the coordinator once,
+ * and the methods of a worker that stopped are queued again.
+ */
+public class FileWorkQueueTest {
+
+    private Path dir;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("queue");
+    }
+
+    @After
+    public void deleteDir() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void takesMethodsInPlanOrderAndStealsFromTheEnd() throws IOException {
+        FileWorkQueue queue = new FileWorkQueue(dir);
+        assertNull("workers wait until the run is queued", queue.next("w1", 3));
+        queue.enqueue(items(5));
+
+        FileWorkQueue.Claim first = queue.next("w1", 3);
+        assertEquals(0, first.item.sequence);
+        assertEquals("TestCase0", first.item.testCase);
+        assertEquals("method0", first.item.methodName);
+        assertFalse(first.stolen);
+        // w1 claimed 0 to 2; w2 claims the rest
+        FileWorkQueue.Claim third = queue.next("w2", 3);
+        assertEquals(3, third.item.sequence);
+        FileWorkQueue.Claim fourth = queue.next("w2", 3);
+        assertEquals(4, fourth.item.sequence);
+        assertFalse(queue.isDrained());
+        // Nothing is pending, so w2 steals the last of w1's claims
+        FileWorkQueue.Claim stolen = queue.next("w2", 3);
+        assertEquals(2, stolen.item.sequence);
+        assertTrue(stolen.stolen);
+        FileWorkQueue.Claim second = queue.next("w1", 3);
+        assertEquals(1, second.item.sequence);
+        assertNull(queue.next("w1", 3));
+        assertFalse("methods are still running", queue.isDrained());
+
+        queue.complete(first, new FileWorkQueue.Outcome(true, 1500, "screenshots/ab.png"));
+        queue.complete(stolen, new FileWorkQueue.Outcome(false, 20, null));
+        List<FileWorkQueue.Result> results = queue.pollResults();
+        assertEquals(2, results.size());
+        assertEquals("w1", results.get(0).workerId);
+        assertTrue(results.get(0).outcome.passed);
+        assertEquals(1500, results.get(0).outcome.millis);
+        assertEquals("screenshots/ab.png", results.get(0).outcome.screenshotPath);
+        assertEquals("w2", results.get(1).workerId);
+        assertTrue(results.get(1).stolen);
+        assertNull(results.get(1).outcome.screenshotPath);
+        assertTrue(queue.pollResults().isEmpty());
+        for (FileWorkQueue.Claim claim : new FileWorkQueue.Claim[] { second, third, fourth }) {
+            queue.complete(claim, new FileWorkQueue.Outcome(true, 10, null));
+        }
+        assertTrue(queue.isDrained());
+    }
+
+    @Test
+    public void queuesTheMethodsOfAStoppedWorkerAgain() throws IOException {
+        FileWorkQueue queue = new FileWorkQueue(dir);
+        queue.enqueue(items(4));
+        queue.heartbeat("w1");
+        queue.heartbeat("w2");
+        queue.next("w1", 2);
+        queue.next("w2", 2);
+        assertEquals(0, queue.requeueStaleWorkers(10000));
+
+        // w1 stops sending heartbeats: its running method and its remaining claim go back to pending
+        Files.setLastModifiedTime(dir.resolve("workers").resolve("w1"), FileTime.fromMillis(System.currentTimeMillis() - 60000));
+        assertEquals(2, queue.requeueStaleWorkers(10000));
+        // w2 finishes its own claim before taking them
+        assertEquals(3, queue.next("w2", 2).item.sequence);
+        assertEquals(0, queue.next("w2", 2).item.sequence);
+        assertEquals(1, queue.next("w2", 2).item.sequence);
+        assertEquals(1, queue.countLiveWorkers(10000));
+    }
+
+    @Test
+    public void cancelLeavesOnlyTheRunningMethods() throws IOException {
+        FileWorkQueue queue = new FileWorkQueue(dir);
+        queue.enqueue(items(5));
+        FileWorkQueue.Claim running = queue.next("w1", 2);
+        assertEquals(4, queue.cancel());
+        assertNull(queue.next("w2", 2));
+        assertFalse(queue.isDrained());
+        queue.complete(running, new FileWorkQueue.Outcome(true, 10, null));
+        assertTrue(queue.isDrained());
+    }
+
+    @Test
+    public void workerStaysAliveThroughALongMethod() throws Exception {
+        FileWorkQueue queue = new FileWorkQueue(dir);
+        queue.enqueue(items(1));
+        Thread worker = new Thread(() -> {
+            try {
+                new QueueWorker(queue, "w1", 1, 1, 10).run(item -> CompletableFuture.supplyAsync(() -> {
+                    sleep(2500);
+                    return new FileWorkQueue.Outcome(true, 2500, null);
+                }));
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        worker.start();
+        // The heartbeat keeps going while the method holds the worker's only slot
+        for (int i = 0; i < 10; i++) {
+            sleep(200);
+            assertEquals(0, queue.requeueStaleWorkers(1500));
+        }
+        worker.join();
+        assertEquals(1, queue.pollResults().size());
+    }
+
+    @Test
+    public void workerRunsEverythingWithinItsSlots() throws Exception {
+        FileWorkQueue queue = new FileWorkQueue(dir);
+        queue.enqueue(items(12));
+        List<CompletableFuture<FileWorkQueue.Outcome>> started = new ArrayList<>();
+        int[] maxRunning = new int[1];
+        int ran = new QueueWorker(queue, "w1", 3, 2, 10).run(item -> {
+            CompletableFuture<FileWorkQueue.Outcome> outcome = new CompletableFuture<>();
+            synchronized (started) {
+                started.add(outcome);
+                long running = started.stream().filter(future -> !future.isDone()).count();
+                maxRunning[0] = (int) Math.max(maxRunning[0], running);
+            }
+            new Thread(() -> {
+                sleep(20);
+                outcome.complete(new FileWorkQueue.Outcome(item.sequence % 2 == 0, 20, null));
+            }).start();
+            return outcome;
+        });
+        assertEquals(12, ran);
+        assertTrue("ran " + maxRunning[0] + " at once", maxRunning[0] <= 3);
+        assertEquals(12, queue.pollResults().size());
+        assertTrue(queue.isDrained());
+    }
+
+    private static List<FileWorkQueue.WorkItem> items(int count) {
+        List<FileWorkQueue.WorkItem> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(new FileWorkQueue.WorkItem(i, "TestCase" + i, "method" + i));
+        }
+        return items;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
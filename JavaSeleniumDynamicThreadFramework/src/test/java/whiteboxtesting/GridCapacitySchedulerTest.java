@@ -0,0 +1,210 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import core.AdaptiveConcurrencyLimiter;
+import core.GridCapacityScheduler;
+
+/**
+ * GridCapacitySchedulerTest verifies the grid-aware scheduler against a local fake hub
+ * that serves a configurable Selenium Grid 4 /status response.
+ */
+public class GridCapacitySchedulerTest {
+
+    private HttpServer hub;
+    private volatile String status;
+    private final AtomicInteger polls = new AtomicInteger();
+    private GridCapacityScheduler scheduler;
+
+    @Before
+    public void startHub() throws IOException {
+        hub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        hub.createContext("/status", exchange -> {
+            polls.incrementAndGet();
+            byte[] body = status.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        hub.start();
+        scheduler = new GridCapacityScheduler("http://127.0.0.1:" + hub.getAddress().getPort(), 1, 60000);
+    }
+
+    @After
+    public void stopHub() {
+        scheduler.shutdown();
+        hub.stop(0);
+    }
+
+    @Test
+    public void resizesAsNodesJoinAndLeave() {
+        status = status(node("UP", 2, 0), node("UP", 3, 1));
+        scheduler.refreshFromHub();
+        // The busy slot belongs to another run
+        assertEquals(4, scheduler.getCapacity());
+        assertEquals(4, scheduler.getFreeSlots());
+
+        status = status(node("UP", 2, 0), node("UP", 3, 0), node("UP", 4, 0));
+        scheduler.refreshFromHub();
+        assertEquals(9, scheduler.getCapacity());
+        assertEquals(9, scheduler.getAvailablePermits());
+
+        status = status(node("UP", 2, 0), node("DOWN", 3, 0));
+        scheduler.refreshFromHub();
+        assertEquals(2, scheduler.getCapacity());
+        assertEquals(2, scheduler.getAvailablePermits());
+    }
+
+    @Test
+    public void countsTheSlotsOfItsOwnSessionsAsUsable() {
+        status = status(node("UP", 4, 3));
+        scheduler.setOwnSessions(() -> 2);
+        scheduler.refreshFromHub();
+        assertEquals(3, scheduler.getCapacity());
+        scheduler.setOwnSessions(() -> 5);
+        scheduler.refreshFromHub();
+        assertEquals(4, scheduler.getCapacity());
+    }
+
+    @Test
+    public void startsWithTheFirstTaskAndPollsBeforeDispatching() throws Exception {
+        status = status(node("UP", 3, 0));
+        Thread.sleep(100);
+        assertEquals("polled before any task was submitted", 0, polls.get());
+        scheduler.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        assertEquals(1, polls.get());
+        assertEquals(3, scheduler.getCapacity());
+    }
+
+    @Test
+    public void failsTasksSubmittedAfterShutdown() {
+        scheduler.shutdown();
+        CompletableFuture<Void> task = scheduler.submit(() -> { });
+        assertTrue(task.isCancelled());
+        assertEquals(0, scheduler.getQueueDepth());
+        assertEquals("a stopped scheduler contacted the hub", 0, polls.get());
+    }
+
+    @Test
+    public void keepsCapacityWhenHubIsUnreachable() {
+        status = status(node("UP", 3, 0));
+        scheduler.refreshFromHub();
+        hub.stop(0);
+        scheduler.refreshFromHub();
+        assertEquals(3, scheduler.getCapacity());
+    }
+
+    @Test
+    public void queuesTasksBeyondGridCapacity() throws InterruptedException {
+        status = status(node("UP", 2, 0));
+        scheduler.start();
+        waitFor(() -> scheduler.getCapacity() == 2);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(6);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        for (int i = 0; i < 6; i++) {
+            scheduler.submit(() -> {
+                peak.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    concurrent.decrementAndGet();
+                    finished.countDown();
+                }
+            });
+        }
+        waitFor(() -> concurrent.get() == 2);
+        assertEquals(2, scheduler.getRunningTasks());
+        assertEquals(4, scheduler.getQueueDepth());
+
+        // A node joins while tasks are queued
+        status = status(node("UP", 2, 0), node("UP", 2, 0));
+        scheduler.refreshFromHub();
+        waitFor(() -> concurrent.get() == 4);
+        assertEquals(4, scheduler.getRunningTasks());
+        assertEquals(2, scheduler.getQueueDepth());
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(4, peak.get());
+    }
+
+    @Test
+    public void admitsTasksBeforeTheyTakeASlotAndFailsThemOnShutdown() throws Exception {
+        status = status(node("UP", 2, 0));
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, () -> false);
+        GridCapacityScheduler admitting = new GridCapacityScheduler("http://127.0.0.1:" + hub.getAddress().getPort(), 2, 60000,
+                Executors.newCachedThreadPool(), limiter);
+        admitting.start();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        Runnable blocking = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        CompletableFuture<Void> first = admitting.submit(blocking);
+        CompletableFuture<Void> second = admitting.submit(blocking);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(1, admitting.getRunningTasks());
+        // The task waiting for admission holds no slot
+        assertEquals(1, admitting.getAvailablePermits());
+        assertEquals(1, admitting.getQueueDepth());
+
+        admitting.shutdown();
+        waitFor(second::isDone);
+        assertTrue("The task was run after the scheduler stopped", second.isCancelled());
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("condition not met in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static String status(String... nodes) {
+        return "{\"value\":{\"ready\":true,\"message\":\"Selenium Grid ready.\",\"nodes\":[" + String.join(",", nodes) + "]}}";
+    }
+
+    private static String node(String availability, int maxSessions, int busy) {
+        StringBuilder slots = new StringBuilder();
+        for (int i = 0; i < maxSessions; i++) {
+            if (i > 0) {
+                slots.append(',');
+            }
+            String session = i < busy ? "{\"sessionId\":\"s" + i + "\"}" : "null";
+            slots.append("{\"id\":{\"id\":\"slot").append(i).append("\"},\"session\":").append(session).append('}');
+        }
+        return "{\"availability\":\"" + availability + "\",\"maxSessions\":" + maxSessions + ",\"slots\":[" + slots + "]}";
+    }
+}
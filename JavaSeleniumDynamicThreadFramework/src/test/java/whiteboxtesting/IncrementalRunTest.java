@@ -0,0 +1,110 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import core.ResultCache;
+import database.ConnectionPool;
+import database.DatabaseReader;
+import stubs.TestDatabase;
+import testcases.InputFingerprinter;
+import testcases.TestCaseExecutor;
+import testcases.TestMethodRegistry;
+
+/**
+ * IncrementalRunTest verifies that a method's fingerprint changes exactly when one of its inputs does,
+ * and that the result cache replays a pass only for the inputs it passed with.
+ */
+public class IncrementalRunTest {
+
+    /**
+     * A target with one hand-written test method.
+     */
+    public static class Target {
+        public boolean handWritten(String testCaseName) {
+            return true;
+        }
+    }
+
+    private ConnectionPool pool;
+    private DatabaseReader reader;
+
+    @Before
+    public void createDatabase() throws SQLException {
+        pool = TestDatabase.create(2, 2);
+        reader = new DatabaseReader(pool);
+    }
+
+    @After
+    public void closeDatabase() {
+        pool.close();
+    }
+
+    private InputFingerprinter fingerprinter() {
+        return new InputFingerprinter(reader, new TestMethodRegistry(new Target()), TestCaseExecutor.getScenarios());
+    }
+
+    @Test
+    public void scenarioFingerprintFollowsOnlyItsInputs() {
+        String first = fingerprinter().fingerprint("TestCase1", "method1");
+        assertEquals(first, fingerprinter().fingerprint("TestCase1", "method1"));
+        assertNotEquals(first, fingerprinter().fingerprint("TestCase2", "method1"));
+        assertNotEquals(first, fingerprinter().fingerprint("TestCase1", "method2"));
+
+        // Prices scraped by the last run are outputs, not inputs
+        reader.updateValue("TestData", "TestCase1", "OpenPrice", "101.5");
+        assertEquals(first, fingerprinter().fingerprint("TestCase1", "method1"));
+
+        reader.updateValue("TestData", "TestCase1", "stockname", "Boeing");
+        String changed = fingerprinter().fingerprint("TestCase1", "method1");
+        assertNotEquals(first, changed);
+        // A parameter given in the row replaces the TestData value
+        String inRow = fingerprinter().fingerprint("TestCase1", "stockPriceSearch(stockname=Airbus)");
+        reader.updateValue("TestData", "TestCase1", "stockname", "Stock1");
+        assertEquals(inRow, fingerprinter().fingerprint("TestCase1", "stockPriceSearch(stockname=Airbus)"));
+    }
+
+    @Test
+    public void handWrittenMethodFingerprintFollowsItsInputColumns() {
+        String first = fingerprinter().fingerprint("TestCase1", "handWritten");
+        // Prices are stored by the scenarios' storeTable steps, so they are results, not inputs
+        reader.updateValue("TestData", "TestCase1", "HighPrice", "99");
+        assertEquals(first, fingerprinter().fingerprint("TestCase1", "handWritten"));
+        reader.updateValue("TestData", "TestCase1", "stockname", "Boeing");
+        assertNotEquals(first, fingerprinter().fingerprint("TestCase1", "handWritten"));
+    }
+
+    @Test
+    public void replaysOnlyPassesWithTheSameInputs() throws IOException {
+        Path dir = Files.createTempDirectory("results");
+        Path file = dir.resolve("results.properties");
+        try {
+            ResultCache cache = new ResultCache(file);
+            cache.record("TestCase1.method1", "aa11", true, "screenshots/ab 12.png");
+            cache.record("TestCase2.method2", "bb22", true, "No Screenshot");
+            cache.record("TestCase2.method2", "bb22", false, "No Screenshot");
+            cache.record("TestCase3.stockPriceSearch(stockname=Boeing)", "cc33", true, "No Screenshot");
+            cache.save();
+
+            ResultCache reloaded = new ResultCache(file);
+            assertEquals("screenshots/ab 12.png", reloaded.getReplayableScreenshot("TestCase1.method1", "aa11"));
+            assertNull("inputs changed", reloaded.getReplayableScreenshot("TestCase1.method1", "aa12"));
+            assertNull("failed last time", reloaded.getReplayableScreenshot("TestCase2.method2", "bb22"));
+            assertEquals("No Screenshot", reloaded.getReplayableScreenshot("TestCase3.stockPriceSearch(stockname=Boeing)", "cc33"));
+            assertNull(reloaded.getReplayableScreenshot("TestCase4.method4", "dd44"));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+}
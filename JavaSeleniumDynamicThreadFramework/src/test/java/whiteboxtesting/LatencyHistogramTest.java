@@ -0,0 +1,96 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+import base.BasePage;
+import core.LatencyHistogram;
+import core.StepTimer;
+import stubs.StubWebDriver;
+
+/**
+ * LatencyHistogramTest verifies that the histogram reports percentiles within its precision over the whole range,
+ * loses no recording under concurrent writers, and that page actions are timed per step type.
+ */
+public class LatencyHistogramTest {
+
+    @After
+    public void resetTimings() {
+        StepTimer.reset();
+    }
+
+    @Test
+    public void reportsPercentilesWithinThreePercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(42);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            // Spread over nanoseconds to minutes
+            values[i] = (long) Math.pow(10, 1 + random.nextDouble() * 10);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percentile : new double[] { 1, 50, 90, 95, 99, 99.9 }) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long actual = histogram.getPercentile(percentile);
+            assertTrue(percentile + ": " + actual + " vs " + expected, actual >= expected && actual <= expected * 1.03 + 1);
+        }
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(values[values.length - 1], histogram.getPercentile(100));
+    }
+
+    @Test
+    public void countsSmallValuesExactly() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 50; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-5);
+        assertEquals(25, histogram.getPercentile(50));
+        assertEquals(0, histogram.getPercentile(0));
+        assertEquals(50 * 51 / 2, histogram.getTotal());
+    }
+
+    @Test
+    public void keepsEveryRecordingOfConcurrentWriters() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            long base = t * 1_000_000L;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    histogram.record(base + i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(80000, histogram.getCount());
+        assertEquals(7_009_999, histogram.getMax());
+    }
+
+    @Test
+    public void timesPageActionsPerStep() {
+        StepTimer.reset();
+        StubWebDriver driver = new StubWebDriver();
+        BasePage page = new BasePage(driver);
+        page.navigateToUrl("https://example.com");
+        page.navigateToUrl("https://example.com/quote");
+        assertEquals(2, StepTimer.getHistogram("page.navigate").getCount());
+        assertEquals("[page.navigate]", StepTimer.getHistograms().keySet().toString());
+        assertTrue(StepTimer.summary().startsWith("page.navigate"));
+    }
+}
@@ -0,0 +1,139 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import core.DurationHistory;
+import core.LongestFirstPlanner;
+
+/**
+ * LongestFirstPlannerTest verifies that methods are queued by priority and then longest first,
+ * that the makespan is predicted from the durations of earlier runs, and that those durations
+ * survive between runs.
+ */
+public class LongestFirstPlannerTest {
+
+    private static final String[][] TEST_CASES = {
+            { "1", "TestCase1", "method1", "" },
+            { "2", "TestCase2", "method2", "method3" },
+            { "3", "TestCase3", "method4", null },
+            { "4", "TestCase4", "method5" } };
+
+    @Test
+    public void queuesLongestFirstAndPredictsTheMakespan() throws IOException {
+        DurationHistory history = history(10, 40, 20, 30, 50);
+        LongestFirstPlanner.Plan plan = new LongestFirstPlanner(history, Collections.emptyMap()).plan(TEST_CASES, 2);
+        assertEquals("[TestCase4.method5, TestCase2.method2, TestCase3.method4, TestCase2.method3, TestCase1.method1]",
+                plan.getTests().toString());
+        assertEquals(2, plan.getMethodCount("TestCase2"));
+        assertEquals(1, plan.getMethodCount("TestCase3"));
+        assertEquals(150, plan.getTotalWorkMillis());
+        // Slot 1: 50, 20, 10; slot 2: 40, 30
+        assertEquals(80, plan.getPredictedMakespanMillis());
+        assertEquals(75, plan.getIdealMakespanMillis());
+    }
+
+    @Test
+    public void queuesHigherPrioritiesFirst() throws IOException {
+        Map<String, Integer> priorities = new HashMap<>();
+        priorities.put("TestCase1", 5);
+        priorities.put("TestCase2.method3", 5);
+        priorities.put("TestCase4", -1);
+        LongestFirstPlanner.Plan plan = new LongestFirstPlanner(history(10, 40, 20, 30, 50), priorities).plan(TEST_CASES, 2);
+        assertEquals("[TestCase2.method3, TestCase1.method1, TestCase2.method2, TestCase3.method4, TestCase4.method5]",
+                plan.getTests().toString());
+    }
+
+    @Test
+    public void queuesQuarantinedMethodsLast() throws IOException {
+        Map<String, Integer> priorities = new HashMap<>();
+        priorities.put("TestCase4", 5);
+        Set<String> quarantined = new HashSet<>(Arrays.asList("TestCase4.method5", "TestCase2.method2"));
+        LongestFirstPlanner.Plan plan = new LongestFirstPlanner(history(10, 40, 20, 30, 50), priorities, quarantined).plan(TEST_CASES, 2);
+        assertEquals("[TestCase3.method4, TestCase2.method3, TestCase1.method1, TestCase4.method5, TestCase2.method2]",
+                plan.getTests().toString());
+        assertTrue(plan.getTests().get(3).quarantined);
+        assertFalse(plan.getTests().get(0).quarantined);
+    }
+
+    @Test
+    public void leavesReplayedMethodsOutOfThePlan() throws IOException {
+        LongestFirstPlanner.Plan plan = new LongestFirstPlanner(history(10, 40, 20, 30, 50), Collections.emptyMap()).plan(TEST_CASES, 2);
+        LongestFirstPlanner.Plan remaining = plan.without(new HashSet<>(Arrays.asList(plan.getTests().get(0), plan.getTests().get(2))));
+        assertEquals("[TestCase2.method2, TestCase2.method3, TestCase1.method1]", remaining.getTests().toString());
+        // Test cases keep their method count, so the report still names each method
+        assertEquals(2, remaining.getMethodCount("TestCase2"));
+        assertEquals(1, remaining.getMethodCount("TestCase4"));
+        // Slot 1: 40; slot 2: 20, 10
+        assertEquals(40, remaining.getPredictedMakespanMillis());
+    }
+
+    @Test
+    public void expectsNewMethodsToTakeTheAverage() throws IOException {
+        DurationHistory history = history(10, 40, 20, 30, 50);
+        String[][] withNew = { TEST_CASES[0], TEST_CASES[1], TEST_CASES[2], TEST_CASES[3], { "5", "TestCase5", "method6" } };
+        LongestFirstPlanner.Plan plan = new LongestFirstPlanner(history, Collections.emptyMap()).plan(withNew, 1);
+        assertEquals(30, plan.getTests().get(3).expectedMillis);
+        assertEquals("TestCase5.method6", plan.getTests().get(3).toString());
+        assertEquals(180, plan.getPredictedMakespanMillis());
+    }
+
+    @Test
+    public void keepsDurationsBetweenRuns() throws IOException {
+        Path dir = Files.createTempDirectory("durations");
+        Path file = dir.resolve("durations.properties");
+        try {
+            DurationHistory history = new DurationHistory(file);
+            assertNull(history.getMillis("TestCase1.method1"));
+            history.record("TestCase1.method1", 1000);
+            history.record("TestCase1.method1", 3000);
+            history.record("TestCase2.stockPriceSearch(stockname=Boeing)", 500);
+            history.save();
+
+            DurationHistory reloaded = new DurationHistory(file);
+            assertEquals(Long.valueOf(2000), reloaded.getMillis("TestCase1.method1"));
+            assertEquals(Long.valueOf(500), reloaded.getMillis("TestCase2.stockPriceSearch(stockname=Boeing)"));
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(1, files.count());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void loadsNoPrioritiesFromTheTemplate() throws IOException {
+        assertTrue(LongestFirstPlanner.loadPriorities("priorities.properties").isEmpty());
+        assertTrue(LongestFirstPlanner.loadPriorities("missing.properties").isEmpty());
+    }
+
+    /**
+     * Creates an in-memory history with the given durations for method1 to method5 of TEST_CASES.
+     */
+    private static DurationHistory history(long... millis) throws IOException {
+        // Never saved, so the file is not created
+        DurationHistory history = new DurationHistory(Paths.get("target", "unsaved-durations.properties"));
+        String[] keys = { "TestCase1.method1", "TestCase2.method2", "TestCase2.method3", "TestCase3.method4", "TestCase4.method5" };
+        for (int i = 0; i < keys.length; i++) {
+            history.record(keys[i], millis[i]);
+        }
+        return history;
+    }
+}
@@ -0,0 +1,121 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import core.LatencyHistogram;
+import reporting.MetricsServer;
+import reporting.RateMeter;
+import reporting.RunMetrics;
+
+/**
+ * MetricsServerTest verifies that registered metrics are served live in the Prometheus text format
+ * and that the per-second rates average over whole seconds.
+ */
+public class MetricsServerTest {
+
+    @Test
+    public void servesLiveValuesInPrometheusFormat() throws IOException {
+        AtomicInteger queueDepth = new AtomicInteger(3);
+        LatencyHistogram clicks = new LatencyHistogram();
+        clicks.record(2_000_000);
+        TreeMap<String, LatencyHistogram> steps = new TreeMap<>();
+        steps.put("page.click", clicks);
+        MetricsServer server = new MetricsServer(0)
+                .gauge("queue_depth", "Tasks waiting", queueDepth::get)
+                .gauge("cpu_percent", "CPU load", () -> 12.5)
+                .counter("tests_passed_total", "Tests passed", () -> 7)
+                .summary("step_duration_seconds", "Step durations", "step", () -> steps);
+        server.start();
+        try {
+            URL url = new URL("http://localhost:" + server.getPort() + "/metrics");
+            assertEquals("# HELP queue_depth Tasks waiting\n"
+                    + "# TYPE queue_depth gauge\n"
+                    + "queue_depth 3\n"
+                    + "# HELP cpu_percent CPU load\n"
+                    + "# TYPE cpu_percent gauge\n"
+                    + "cpu_percent 12.5\n"
+                    + "# HELP tests_passed_total Tests passed\n"
+                    + "# TYPE tests_passed_total counter\n"
+                    + "tests_passed_total 7\n"
+                    + "# HELP step_duration_seconds Step durations\n"
+                    + "# TYPE step_duration_seconds summary\n"
+                    + "step_duration_seconds{step=\"page.click\",quantile=\"0.5\"} 0.002\n"
+                    + "step_duration_seconds{step=\"page.click\",quantile=\"0.95\"} 0.002\n"
+                    + "step_duration_seconds{step=\"page.click\",quantile=\"0.99\"} 0.002\n"
+                    + "step_duration_seconds_sum{step=\"page.click\"} 0.002\n"
+                    + "step_duration_seconds_count{step=\"page.click\"} 1\n", get(url));
+            // Values are read when scraped, not when registered
+            queueDepth.set(0);
+            assertTrue(get(url).contains("\nqueue_depth 0\n"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void averagesRatesOverWholeSeconds() {
+        AtomicLong nanos = new AtomicLong(100_000_000_000L);
+        RateMeter meter = new RateMeter(10, nanos::get);
+        for (int second = 0; second < 10; second++) {
+            for (int i = 0; i < 5; i++) {
+                meter.mark();
+            }
+            nanos.addAndGet(1_000_000_000L);
+        }
+        assertEquals(5.0, meter.getRatePerSecond(), 0.0);
+        // The second in progress is not counted yet
+        for (int i = 0; i < 100; i++) {
+            meter.mark();
+        }
+        assertEquals(5.0, meter.getRatePerSecond(), 0.0);
+        // Seconds leave the window as time passes and their slots are reused
+        nanos.addAndGet(5_000_000_000L);
+        assertEquals((100 + 5 * 5) / 10.0, meter.getRatePerSecond(), 0.0);
+        meter.mark();
+        nanos.addAndGet(20_000_000_000L);
+        assertEquals(0.0, meter.getRatePerSecond(), 0.0);
+    }
+
+    @Test
+    public void countsTestOutcomes() {
+        long passed = RunMetrics.getPassedCount();
+        long failed = RunMetrics.getFailedCount();
+        RunMetrics.recordResult(true);
+        RunMetrics.recordResult(true);
+        RunMetrics.recordResult(false);
+        assertEquals(passed + 2, RunMetrics.getPassedCount());
+        assertEquals(failed + 1, RunMetrics.getFailedCount());
+    }
+
+    private static String get(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            assertEquals(200, connection.getResponseCode());
+            assertEquals("text/plain; version=0.0.4; charset=utf-8", connection.getContentType());
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+            }
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
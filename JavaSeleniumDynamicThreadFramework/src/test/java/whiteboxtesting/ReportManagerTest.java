@@ -0,0 +1,123 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import core.StepTimer;
+import reporting.ReportManager;
+import reporting.StreamingReportWriter;
+
+/**
+ * ReportManagerTest verifies that the HTML report is streamed to disk as results arrive
+ * and that the finished document has the expected structure, including the step timings of the run.
+ */
+public class ReportManagerTest {
+
+    private Path dir;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("report");
+    }
+
+    @After
+    public void deleteDir() throws IOException {
+        ReportManager.saveReport(dir.resolve("closed.html").toString());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void streamsRowsBeforeTheReportIsFinalized() throws IOException {
+        Path report = dir.resolve("report.html");
+        ReportManager.initReport(report.toString());
+        ReportManager.addTestResult("TestCase1", true, 12000, "TestCase1.png");
+        String partial = read(report);
+        assertTrue(partial.startsWith("<html><head><title>Test Report</title></head><body><h1 style='text-align:center;'>Test Execution Report ("));
+        assertTrue(partial.endsWith("<tr style='background-color:green'>"
+                + "<td style='text-align:center;' width='400' height='400'><b>TestCase1</b></td>"
+                + "<td style='text-align:center;' width='400' height='400'><b>12.00</b></td>"
+                + "<td style='text-align:center;'><a href='TestCase1.png'><img src='TestCase1_thumb.jpg'/></a></td></tr>"));
+
+        ReportManager.addTestResult("TestCase2", false, 3004, "No Screenshot");
+        ReportManager.finalizeReport();
+        ReportManager.addActualExecutionTime(9420);
+        ReportManager.addMakespan(9000, 7500, 9420, 2);
+        ReportManager.addIncrementalRun(18, 2);
+        ReportManager.saveReport(report.toString());
+        String full = read(report);
+        assertTrue(full.contains("<td style='text-align:center;'>No Screenshot</td></tr></table>"));
+        assertTrue(full.endsWith("<h2>Summary</h2>Total Test Cases Passed: 1<br/>Total Test Cases Failed: 1"
+                + "<br/>Total Execution Time: 15.00 Seconds</body></html>"
+                + "<h2>Actual Execution Time</h2>Total Actual Execution Time: 9.42 Seconds"
+                + "<h2>Makespan</h2>Predicted Makespan: 9.00 Seconds<br/>Ideal Makespan (Total Work / 2 Slots): 7.50 Seconds"
+                + "<br/>Actual Makespan: 9.42 Seconds"
+                + "<h2>Incremental Run</h2>Replayed Passes (Inputs Unchanged): 18<br/>Executed (Changed or Previously Failed): 2"));
+    }
+
+    @Test
+    public void movesTheReportWhenSavedElsewhere() throws IOException {
+        Path streamed = dir.resolve("streamed.html");
+        Path saved = dir.resolve("saved.html");
+        ReportManager.initReport(streamed.toString());
+        ReportManager.finalizeReport();
+        ReportManager.saveReport(saved.toString());
+        assertFalse(Files.exists(streamed));
+        assertTrue(read(saved).endsWith("Total Execution Time: 0.00 Seconds</body></html>"));
+    }
+
+    @Test
+    public void endsWithTheStepTimingsOfTheRun() throws IOException {
+        Path report = dir.resolve("timed.html");
+        StepTimer.recordNanos("page.click", 1_000_000);
+        ReportManager.initReport(report.toString());
+        ReportManager.addTestResult("TestCase1", true, 250, "No Screenshot");
+        for (int i = 1; i <= 100; i++) {
+            StepTimer.recordNanos("page.click", i * 1_000_000L);
+        }
+        StepTimer.recordNanos("db.getValue", 500_000);
+        ReportManager.finalizeReport();
+        ReportManager.saveReport(report.toString());
+        String full = read(report);
+        assertTrue(full.contains("<b>0.25</b>"));
+        // Steps timed before the report was started are not counted
+        assertTrue(full.endsWith("Total Execution Time: 0.25 Seconds<h2>Step Timings</h2><table border='1'><tr><th><b>Step</b></th>"
+                + "<th><b>Count</b></th><th><b>p50 (ms)</b></th><th><b>p95 (ms)</b></th><th><b>p99 (ms)</b></th><th><b>Max (ms)</b></th></tr>"
+                + "<tr><td>db.getValue</td><td>1</td><td>0.500</td><td>0.500</td><td>0.500</td><td>0.500</td></tr>"
+                + "<tr><td>page.click</td><td>100</td><td>50.332</td><td>96.469</td><td>100.000</td><td>100.000</td></tr>"
+                + "</table></body></html>"));
+    }
+
+    @Test
+    public void writesTextLargerThanItsBuffer() throws IOException {
+        Path file = dir.resolve("large.html");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40000; i++) {
+            text.append("Prix €").append(i);
+        }
+        try (StreamingReportWriter writer = new StreamingReportWriter(file)) {
+            writer.write(text.toString());
+            writer.write("</html>");
+        }
+        assertEquals(text + "</html>", read(file));
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
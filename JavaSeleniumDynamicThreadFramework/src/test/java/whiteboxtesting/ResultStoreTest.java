@@ -0,0 +1,127 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import reporting.ResultStore;
+
+/**
+ * ResultStoreTest verifies that results are kept per method, consumed in the order their tests were submitted
+ * whatever order they complete in, and summarized per test case, and that a slow consumer holds up no recording thread.
+ */
+public class ResultStoreTest {
+
+    @Test
+    public void keepsEveryMethodOfATestCase() {
+        ResultStore store = new ResultStore();
+        store.record("TestCase1", "method1", true, 4, "No Screenshot");
+        store.record("TestCase1", "method2", false, 6, "TestCase1.png");
+        store.record("TestCase2", "method3", true, 5, "No Screenshot");
+
+        List<String> consumed = new ArrayList<>();
+        store.drain(result -> consumed.add(result.sequence + ":" + result.testCase + "/" + result.methodName));
+        assertEquals("[0:TestCase1/method1, 1:TestCase1/method2, 2:TestCase2/method3]", consumed.toString());
+        assertEquals(2, store.getMethodCount("TestCase1"));
+        assertEquals(1, store.getPassedTestCases());
+        assertEquals(1, store.getFailedTestCases());
+        assertEquals(15, store.getTotalTime());
+    }
+
+    @Test
+    public void consumesResultsInSubmissionOrder() {
+        ResultStore store = new ResultStore();
+        long first = store.reserve();
+        long second = store.reserve();
+        long third = store.reserve();
+        List<String> consumed = new ArrayList<>();
+        store.record(third, "TestCase3", null, true, 1, CompletableFuture.completedFuture("No Screenshot"));
+        store.record(second, "TestCase2", null, true, 1, CompletableFuture.completedFuture("No Screenshot"));
+        store.drain(result -> consumed.add(result.testCase));
+        assertTrue("the first test is still running", consumed.isEmpty());
+        store.record(first, "TestCase1", null, false, 1, CompletableFuture.completedFuture("No Screenshot"));
+        store.drain(result -> consumed.add(result.testCase));
+        assertEquals("[TestCase1, TestCase2, TestCase3]", consumed.toString());
+    }
+
+    @Test
+    public void consumesEachResultOnceInSequenceOrder() throws InterruptedException {
+        ResultStore store = new ResultStore();
+        List<Long> consumed = new ArrayList<>();
+        long[] reserved = new long[16000];
+        for (int i = 0; i < reserved.length; i++) {
+            reserved[i] = store.reserve();
+        }
+        Thread[] threads = new Thread[16];
+        for (int t = 0; t < threads.length; t++) {
+            String testCase = "TestCase" + t;
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                // Each thread completes its share of the results from the last to the first
+                for (int i = 999; i >= 0; i--) {
+                    store.record(reserved[i * 16 + thread], testCase, "method" + i, true, 1, CompletableFuture.completedFuture("No Screenshot"));
+                    store.drain(result -> consumed.add(result.sequence));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        store.drainAll(result -> consumed.add(result.sequence));
+        assertEquals(16000, consumed.size());
+        for (int i = 0; i < consumed.size(); i++) {
+            assertEquals(i, consumed.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void recordsWhileAnotherThreadConsumes() throws InterruptedException {
+        ResultStore store = new ResultStore();
+        CountDownLatch consuming = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> consumed = new CopyOnWriteArrayList<>();
+        store.record("TestCase1", null, true, 1, "No Screenshot");
+        Thread drainer = new Thread(() -> store.drain(result -> {
+            consumed.add(result.testCase);
+            consuming.countDown();
+            try {
+                // A slow write of the report file
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        drainer.start();
+        assertTrue(consuming.await(5, TimeUnit.SECONDS));
+        // Neither recording nor draining waits for the thread that is writing
+        store.record("TestCase2", null, true, 1, "No Screenshot");
+        store.drain(result -> consumed.add("other thread: " + result.testCase));
+        assertEquals(2, store.getResultCount());
+        release.countDown();
+        drainer.join(5000);
+        store.drain(result -> consumed.add(result.testCase));
+        assertEquals("[TestCase1, TestCase2]", consumed.toString());
+    }
+
+    @Test
+    public void skipsRowsThatWereNeverRecorded() {
+        ResultStore store = new ResultStore();
+        store.reserve();
+        store.record("TestCase2", null, true, 1, "No Screenshot");
+        List<String> consumed = new ArrayList<>();
+        store.drain(result -> consumed.add(result.testCase));
+        assertTrue(consumed.isEmpty());
+        store.drainAll(result -> consumed.add(result.testCase));
+        assertEquals("[TestCase2]", consumed.toString());
+        assertEquals(1, store.getResultCount());
+    }
+}
@@ -0,0 +1,193 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+
+import base.WebDriverPool;
+import core.FlakinessTracker;
+import core.RetryPolicy;
+import stubs.StubWebDriver;
+
+/**
+ * RetryPolicyTest verifies that infrastructure failures are retried on a fresh session with a growing backoff,
+ * that failed checks are not retried, and that methods which keep needing retries are quarantined.
+ */
+public class RetryPolicyTest {
+
+    @Test
+    public void classifiesFailuresByTheirCauses() {
+        assertEquals(RetryPolicy.FailureKind.INFRASTRUCTURE, RetryPolicy.classify(new SessionNotCreatedException("grid full")));
+        // A wait that timed out found the page in the wrong state
+        assertEquals(RetryPolicy.FailureKind.ASSERTION, RetryPolicy.classify(new TimeoutException("page load")));
+        assertEquals(RetryPolicy.FailureKind.INFRASTRUCTURE,
+                RetryPolicy.classify(new TimeoutException("page load", new SocketTimeoutException("read timed out"))));
+        assertEquals(RetryPolicy.FailureKind.INFRASTRUCTURE,
+                RetryPolicy.classify(new TimeoutException("page load", new UnreachableBrowserException("hub gone"))));
+        assertEquals(RetryPolicy.FailureKind.INFRASTRUCTURE,
+                RetryPolicy.classify(new ExecutionException(new WebDriverException(new ConnectException("refused")))));
+        assertEquals(RetryPolicy.FailureKind.ASSERTION, RetryPolicy.classify(new NoSuchElementException("no price")));
+        assertEquals(RetryPolicy.FailureKind.ASSERTION, RetryPolicy.classify(new AssertionError("wrong price")));
+        assertEquals(RetryPolicy.FailureKind.ASSERTION, RetryPolicy.classify(new IllegalArgumentException("unknown scenario")));
+    }
+
+    @Test
+    public void retriesALostSessionOnAFreshOne() throws InterruptedException {
+        WebDriverPool pool = new WebDriverPool(StubWebDriver::new, 2, 10, 60000);
+        List<WebDriver> used = new ArrayList<>();
+        try {
+            RetryPolicy.Result result = new RetryPolicy(3, 1, 10).execute(() -> {
+                WebDriver driver = pool.borrow();
+                used.add(driver);
+                if (used.size() == 1) {
+                    ((StubWebDriver) driver).breakSession();
+                }
+                try {
+                    driver.get("https://www.google.com");
+                } catch (WebDriverException e) {
+                    // Discarded, as TestMethods does after an infrastructure failure
+                    pool.invalidate(driver);
+                    throw e;
+                }
+                pool.returnDriver(driver);
+                return true;
+            });
+            assertTrue(result.passed);
+            assertEquals(2, result.attempts);
+            assertNull(result.failureKind);
+            assertNotSame(used.get(0), used.get(1));
+            assertEquals(2, pool.getCreatedCount());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void failsAtOnceOnAFailedCheck() {
+        AtomicInteger attempts = new AtomicInteger();
+        RetryPolicy policy = new RetryPolicy(3, 1, 10);
+        RetryPolicy.Result checkFailed = policy.execute(() -> {
+            attempts.incrementAndGet();
+            return false;
+        });
+        assertFalse(checkFailed.passed);
+        assertEquals(1, checkFailed.attempts);
+        assertEquals(RetryPolicy.FailureKind.ASSERTION, checkFailed.failureKind);
+
+        NoSuchElementException missing = new NoSuchElementException("no price");
+        RetryPolicy.Result thrown = policy.execute(() -> {
+            attempts.incrementAndGet();
+            throw missing;
+        });
+        assertEquals(1, thrown.attempts);
+        assertSame(missing, thrown.failure);
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void passesOnErrorsThatAreNoTestOutcome() {
+        RetryPolicy policy = new RetryPolicy(3, 1, 10);
+        AssertionError wrongPrice = new AssertionError("wrong price");
+        RetryPolicy.Result result = policy.execute(() -> {
+            throw wrongPrice;
+        });
+        assertSame(wrongPrice, result.failure);
+        assertEquals(RetryPolicy.FailureKind.ASSERTION, result.failureKind);
+        try {
+            policy.execute(() -> {
+                throw new OutOfMemoryError("heap");
+            });
+            fail("an OutOfMemoryError was taken for a test failure");
+        } catch (OutOfMemoryError e) {
+            assertEquals("heap", e.getMessage());
+        }
+    }
+
+    @Test
+    public void givesUpAfterTheLastAttempt() {
+        AtomicInteger attempts = new AtomicInteger();
+        RetryPolicy.Result result = new RetryPolicy(3, 1, 10).execute(() -> {
+            attempts.incrementAndGet();
+            throw new SessionNotCreatedException("grid full");
+        });
+        assertFalse(result.passed);
+        assertEquals(3, result.attempts);
+        assertEquals(3, attempts.get());
+        assertEquals(RetryPolicy.FailureKind.INFRASTRUCTURE, result.failureKind);
+    }
+
+    @Test
+    public void backsOffExponentiallyWithJitter() {
+        RetryPolicy policy = new RetryPolicy(10, 1000, 8000);
+        for (int i = 0; i < 100; i++) {
+            assertBetween(500, 1000, policy.getBackoffMillis(1));
+            assertBetween(1000, 2000, policy.getBackoffMillis(2));
+            assertBetween(2000, 4000, policy.getBackoffMillis(3));
+            assertBetween(4000, 8000, policy.getBackoffMillis(5));
+            assertBetween(4000, 8000, policy.getBackoffMillis(40));
+        }
+    }
+
+    @Test
+    public void quarantinesChronicFlakersAndRemembersThem() throws IOException {
+        Path dir = Files.createTempDirectory("flakiness");
+        Path file = dir.resolve("flakiness.properties");
+        try {
+            FlakinessTracker tracker = new FlakinessTracker(file, 0.5);
+            for (int run = 0; run < 5; run++) {
+                // Needs a retry in every run
+                tracker.record("TestCase1.method1", true, 2);
+                // Fails every run, but consistently
+                tracker.record("TestCase2.method2", false, 1);
+                // Flips between passing and failing
+                tracker.record("TestCase3.method3", run % 2 == 0, 1);
+            }
+            tracker.record("TestCase4.method4", true, 3);
+            assertEquals(new TreeSet<>(Arrays.asList("TestCase1.method1", "TestCase3.method3")), tracker.getQuarantined());
+            assertEquals(0, tracker.getFlakiness("TestCase2.method2"), 0);
+            assertTrue(tracker.getFlakiness("TestCase4.method4") > 0);
+            assertFalse("too few runs", tracker.isQuarantined("TestCase4.method4"));
+            tracker.save();
+
+            FlakinessTracker reloaded = new FlakinessTracker(file, 0.5);
+            assertEquals(tracker.getQuarantined(), reloaded.getQuarantined());
+            assertEquals(tracker.getFlakiness("TestCase1.method1"), reloaded.getFlakiness("TestCase1.method1"), 0.0001);
+            // Steady runs bring a quarantined method back
+            for (int run = 0; run < 3; run++) {
+                reloaded.record("TestCase1.method1", true, 1);
+            }
+            assertFalse(reloaded.isQuarantined("TestCase1.method1"));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    private static void assertBetween(long min, long max, long actual) {
+        assertTrue(actual + " not in [" + min + ", " + max + "]", actual >= min && actual <= max);
+    }
+}
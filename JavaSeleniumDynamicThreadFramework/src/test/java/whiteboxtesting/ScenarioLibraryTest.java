@@ -0,0 +1,137 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import database.ConnectionPool;
+import database.DatabaseReader;
+import database.WriteBehindBuffer;
+import stubs.StubWebDriver;
+import stubs.TestDatabase;
+import testcases.ScenarioInvocation;
+import testcases.ScenarioLibrary;
+import testcases.TestCaseExecutor;
+
+/**
+ * ScenarioLibraryTest verifies that scenario definitions are compiled once, that TestCases cells are parsed once
+ * per distinct text, and that a compiled scenario drives the browser with the row's parameters
+ * and falls back to the TestData row for the others.
+ */
+public class ScenarioLibraryTest {
+
+    private static final String DEFINITIONS = String.join("\n",
+            "# Searches for a stock",
+            "scenario search",
+            "    open https://example.com/${site}",
+            "    type name=q \"${stockname} Stock Price\"",
+            "    storeTable \".prices table\" Price",
+            "",
+            "scenario empty",
+            "alias method1 method2 = search(site=finance)");
+
+    @Test
+    public void parsesEachCellOnce() throws IOException {
+        ScenarioLibrary library = new ScenarioLibrary(new StringReader(DEFINITIONS));
+        assertEquals("[search, empty]", library.getScenarioNames().toString());
+        assertEquals(3, library.getScenario("search").getStepCount());
+        assertEquals("[site, stockname]", library.getScenario("search").getParameters().toString());
+
+        ScenarioInvocation invocation = library.resolve("search(site=news, stockname=Boeing)");
+        assertSame(invocation, library.resolve("search(site=news, stockname=Boeing)"));
+        assertEquals("{site=news, stockname=Boeing}", invocation.getParameters().toString());
+        // An alias carries its own parameters, which the row may override
+        assertEquals("{site=finance}", library.resolve("method1").getParameters().toString());
+        assertEquals("{site=quotes}", library.resolve("method2(site=quotes)").getParameters().toString());
+        assertSame(library.getScenario("search"), library.resolve("method2").getScenario());
+
+        for (int i = 0; i < 10000; i++) {
+            library.resolve("search(stockname=Stock" + (i % 100) + ")");
+        }
+        assertEquals(104, library.getInvocationCount());
+        assertFalse(library.isDefined("missing"));
+        assertFalse(library.isDefined("search(site)"));
+        assertTrue(library.isOutputColumn("OPENPRICE"));
+        assertFalse(library.isOutputColumn("stockname"));
+    }
+
+    @Test
+    public void runsWithRowAndTestDataParameters() throws Exception {
+        ConnectionPool pool = TestDatabase.create(1, 2);
+        try {
+            DatabaseReader reader = new DatabaseReader(pool);
+            WriteBehindBuffer writer = new WriteBehindBuffer(reader, "TestData", 100, 60000);
+            StubWebDriver driver = new StubWebDriver();
+            driver.setScriptHandler(script -> Arrays.asList(
+                    Arrays.asList("Open", "1,187.70"),
+                    Arrays.asList("Mkt cap", "2.91T", "extra")));
+            ScenarioLibrary library = new ScenarioLibrary(new StringReader(DEFINITIONS));
+
+            // stockname is not in the cell, so it is read from TestData: Stock1
+            assertTrue(library.resolve("method1").run(driver, "TestCase1", reader, writer));
+            assertEquals("https://example.com/finance", driver.getCurrentUrl());
+            writer.flush();
+            assertEquals("1187.70", reader.getValue("TestData", "TestCase1", "OpenPrice"));
+            writer.close();
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void rejectsInvalidDefinitionsWithTheirLine() throws IOException {
+        String[][] invalid = {
+                { "scenario a\n    fly away", "line 2: Unknown step: fly" },
+                { "    open x", "line 1: Step outside of a scenario" },
+                { "scenario a\n    waitDomStable soon", "line 2: Expected milliseconds, got soon" },
+                { "scenario a\n\n    type name=q", "line 3: Expected type <locator> <text>" },
+                { "scenario a\n    open \"x", "line 2: Unclosed quote" },
+                { "alias b = c", "Alias b refers to unknown scenario c" } };
+        for (String[] definition : invalid) {
+            try {
+                new ScenarioLibrary(new StringReader(definition[0]));
+                fail("accepted " + definition[0]);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().endsWith(definition[1]));
+            }
+        }
+    }
+
+    @Test
+    public void parsesQuotedAndEscapedParameters() throws IOException {
+        ScenarioLibrary library = new ScenarioLibrary(new StringReader(DEFINITIONS));
+        assertEquals("{site=news, stockname=Johnson, Johnson}",
+                library.resolve("search(site=news, stockname=\"Johnson, Johnson\")").getParameters().toString());
+        assertEquals("{stockname= (A=B) }", library.resolve("search(stockname=\" (A=B) \")").getParameters().toString());
+        assertEquals("{stockname=a,b\"c}", library.resolve("search(stockname=a\\,b\\\"c)").getParameters().toString());
+        assertEquals("{stockname=}", library.resolve("search(stockname=\"\")").getParameters().toString());
+        try {
+            library.resolve("search(stockname=\"Boeing)");
+            fail("unclosed quote was accepted");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unclosed quote in search(stockname=\"Boeing)", e.getMessage());
+        }
+    }
+
+    @Test
+    public void mapsTheOriginalTestMethodsToTheStockPriceScenario() {
+        for (int i = 1; i <= 20; i++) {
+            assertEquals("stockPriceSearch", TestCaseExecutor.getScenarios().resolve("method" + i).getScenario().getName());
+        }
+        TestCaseExecutor.validateTestCases(new String[][] { { "1", "TestCase1", "method1" }, { "2", "TestCase2", "stockPriceSearch(stockname=Boeing)" } });
+        try {
+            TestCaseExecutor.validateTestCases(new String[][] { { "1", "TestCase1", "method21" } });
+            fail("unknown method was accepted");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown test methods in TestCases: [TestCase1.method21]", e.getMessage());
+        }
+    }
+}
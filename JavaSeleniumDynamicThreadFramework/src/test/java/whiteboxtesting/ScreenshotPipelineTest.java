@@ -0,0 +1,230 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import reporting.ScreenshotPipeline;
+import reporting.ScreenshotStore;
+
+/**
+ * ScreenshotPipelineTest verifies that screenshots are written in the background under their perceptual hash
+ * with a scaled JPEG thumbnail, that near-identical screenshots of a passed test are stored once while different pages,
+ * other tests' screenshots and those of failed tests are always kept,
+ * that a full queue drops screenshots of passed tests instead of blocking the caller but never those of failed tests,
+ * and that a closed pipeline takes screenshots again.
+ */
+public class ScreenshotPipelineTest {
+
+    private static final String TEST = "TestCase1.stockPriceSearch";
+
+    private Path dir;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("screenshots");
+    }
+
+    @After
+    public void deleteDir() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void writesOriginalAndThumbnailUnderTheHash() throws Exception {
+        ScreenshotPipeline pipeline = new ScreenshotPipeline(new ScreenshotStore(dir.toString(), 4), 2, 16, 350);
+        byte[] png = png(1400, 800, 0);
+        CompletableFuture<String> saved = pipeline.submit(TEST, png, true);
+        assertTrue(saved == pipeline.takeLastScreenshot());
+        assertEquals(null, pipeline.takeLastScreenshot());
+        String path = saved.get(10, TimeUnit.SECONDS);
+        assertTrue(pipeline.close(10000));
+
+        assertEquals(1, pipeline.getWrittenCount());
+        assertEquals(0, pipeline.getFailedCount());
+        assertTrue(path, path.endsWith("-0-TestCase1.stockPriceSearch.png"));
+        assertTrue(Arrays.equals(png, Files.readAllBytes(Paths.get(path))));
+        BufferedImage image = ImageIO.read(Paths.get(ScreenshotPipeline.thumbnailPath(path)).toFile());
+        assertEquals(350, image.getWidth());
+        assertEquals(200, image.getHeight());
+        assertTrue(Files.size(Paths.get(ScreenshotPipeline.thumbnailPath(path))) < png.length);
+    }
+
+    @Test
+    public void storesNearIdenticalScreenshotsOfATestOnceAndKeepsFailures() throws Exception {
+        ScreenshotStore store = new ScreenshotStore(dir.toString(), 4);
+        ScreenshotPipeline pipeline = new ScreenshotPipeline(store, 2, 16, 350);
+        List<CompletableFuture<String>> same = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            same.add(pipeline.submit(TEST, png(1400, 800, i % 2), true));
+        }
+        // A different page, and the same page taken by another test, are stored on their own
+        CompletableFuture<String> otherPage = pipeline.submit(TEST, otherPng(1400, 800), true);
+        CompletableFuture<String> otherTest = pipeline.submit("TestCase2.stockPriceSearch", png(1400, 800, 0), true);
+        // A failed test's screenshot is never replaced by a stored one, even an identical one
+        CompletableFuture<String> failed = pipeline.submit(TEST, png(1400, 800, 0), false);
+        CompletableFuture<String> failedAgain = pipeline.submit(TEST, png(1400, 800, 0), false);
+        assertTrue(pipeline.close(10000));
+
+        // The caret moved between the screenshots, yet they share one file
+        for (CompletableFuture<String> path : same) {
+            assertEquals(same.get(0).get(), path.get());
+        }
+        assertNotEquals(same.get(0).get(), otherPage.get());
+        assertNotEquals(same.get(0).get(), otherTest.get());
+        assertNotEquals(same.get(0).get(), failed.get());
+        assertNotEquals(failed.get(), failedAgain.get());
+        assertTrue(Arrays.equals(png(1400, 800, 0), Files.readAllBytes(Paths.get(failed.get()))));
+        assertEquals(5, pipeline.getWrittenCount());
+        assertEquals(4, store.getDuplicateCount());
+        // Five images with their thumbnails
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(10, files.count());
+        }
+
+        // A later run reuses the stored images of passed tests only
+        ScreenshotStore reopened = new ScreenshotStore(dir.toString(), 4);
+        assertEquals(3, reopened.getImageCount());
+        ScreenshotStore.Claim claim = reopened.claim(TEST, image(png(1400, 800, 1)));
+        assertFalse(claim.isOwner());
+        assertEquals(same.get(0).get(), claim.getPath());
+        assertTrue(reopened.claimUnique(TEST).isOwner());
+    }
+
+    @Test
+    public void confirmsCloseHashesWithARegionDiff() throws Exception {
+        ScreenshotStore store = new ScreenshotStore(dir.toString(), 4);
+        BufferedImage page = image(png(1400, 800, 0));
+        // A warning box in an empty part of the page barely changes the hash, but its region changes completely
+        BufferedImage warning = image(png(1400, 800, 0));
+        Graphics2D graphics = warning.createGraphics();
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(1000, 600, 90, 60);
+        graphics.dispose();
+        assertTrue(Long.bitCount(ScreenshotStore.hash(page) ^ ScreenshotStore.hash(warning)) <= 4);
+
+        ScreenshotStore.Claim first = store.claim(TEST, page);
+        ScreenshotStore.Claim second = store.claim(TEST, warning);
+        assertTrue(first.isOwner());
+        assertTrue(second.isOwner());
+        assertNotEquals(first.getPath(), second.getPath());
+        assertEquals(0, store.getDuplicateCount());
+    }
+
+    @Test
+    public void dropsOnlyScreenshotsOfPassedTestsWhenTheQueueIsFull() throws Exception {
+        ScreenshotPipeline pipeline = new ScreenshotPipeline(new ScreenshotStore(dir.toString(), 4), 1, 1, 350);
+        byte[] png = png(1920, 1080, 0);
+        List<CompletableFuture<String>> paths = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            paths.add(pipeline.submit(TEST, png, true));
+        }
+        List<CompletableFuture<String>> failures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            failures.add(pipeline.submit(TEST, png, false));
+        }
+        assertTrue(pipeline.close(30000));
+        assertTrue(pipeline.getDroppedCount() > 0);
+        long missing = 0;
+        for (CompletableFuture<String> path : paths) {
+            if (ScreenshotPipeline.NO_SCREENSHOT.equals(path.getNow(null))) {
+                missing++;
+            }
+        }
+        assertEquals(pipeline.getDroppedCount(), missing);
+        for (CompletableFuture<String> path : failures) {
+            assertTrue(Files.exists(Paths.get(path.getNow(ScreenshotPipeline.NO_SCREENSHOT))));
+        }
+        assertEquals(6, pipeline.getWrittenCount());
+    }
+
+    @Test
+    public void takesScreenshotsAgainAfterClose() throws Exception {
+        ScreenshotPipeline pipeline = new ScreenshotPipeline(new ScreenshotStore(dir.toString(), 4), 1, 4, 350);
+        String first = pipeline.submit(TEST, png(1400, 800, 0), true).get(10, TimeUnit.SECONDS);
+        assertTrue(pipeline.close(10000));
+        assertTrue(pipeline.close(10000));
+        String second = pipeline.submit(TEST, otherPng(1400, 800), true).get(10, TimeUnit.SECONDS);
+        assertTrue(pipeline.close(10000));
+        assertNotEquals(first, second);
+        assertTrue(Files.exists(Paths.get(second)));
+        assertEquals(2, pipeline.getWrittenCount());
+    }
+
+    /**
+     * Draws a results page: a header bar, a table of rows and a text caret whose position varies.
+     */
+    private static byte[] png(int width, int height, int caret) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(0, 0, width, height / 8);
+        graphics.setColor(Color.GRAY);
+        for (int row = 0; row < 6; row++) {
+            graphics.fillRect(width / 10, height / 4 + row * height / 10, width / 2, height / 40);
+        }
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(width / 3 + caret * 3, height / 16, 2, height / 32);
+        graphics.dispose();
+        return encode(image);
+    }
+
+    /**
+     * Draws a different page: a dark header over a grid of large tiles.
+     */
+    private static byte[] otherPng(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.LIGHT_GRAY);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.DARK_GRAY);
+        graphics.fillRect(0, 0, width, height / 4);
+        graphics.setColor(Color.RED);
+        for (int tile = 0; tile < 4; tile++) {
+            graphics.fillRect(width / 20 + tile * width / 4, height / 2, width / 6, height / 3);
+        }
+        graphics.dispose();
+        return encode(image);
+    }
+
+    private static BufferedImage image(byte[] png) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(png));
+    }
+
+    private static byte[] encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
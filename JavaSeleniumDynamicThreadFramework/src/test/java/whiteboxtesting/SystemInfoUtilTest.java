@@ -0,0 +1,34 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import core.SystemInfoUtil;
+
+/**
+ * SystemInfoUtilTest verifies that host load readings come from the cached snapshot
+ * instead of sampling the host on the caller's thread.
+ */
+public class SystemInfoUtilTest {
+
+    @Test
+    public void readsDoNotBlockOnSampling() {
+        SystemInfoUtil.getSnapshot();
+        long start = System.nanoTime();
+        for (int i = 0; i < 100000; i++) {
+            SystemInfoUtil.getSmoothedCpuLoad();
+            SystemInfoUtil.getMemoryUtilization();
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue("100000 reads took " + elapsedMillis + " ms", elapsedMillis < 1000);
+    }
+
+    @Test
+    public void snapshotValuesArePercentages() {
+        SystemInfoUtil.Snapshot snapshot = SystemInfoUtil.getSnapshot();
+        assertTrue(snapshot.cpuLoad >= 0 && snapshot.cpuLoad <= 100);
+        assertTrue(snapshot.smoothedCpuLoad >= 0 && snapshot.smoothedCpuLoad <= 100);
+        assertTrue(snapshot.memoryUtilization >= 0 && snapshot.memoryUtilization <= 100);
+    }
+}
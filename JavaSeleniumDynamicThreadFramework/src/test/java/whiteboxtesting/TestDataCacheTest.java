@@ -0,0 +1,167 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+
+import database.ConnectionPool;
+import database.DatabaseReader;
+import database.WriteBehindBuffer;
+import stubs.TestDatabase;
+
+/**
+ * TestDataCacheTest verifies that preloaded tables answer lookups from memory, stay consistent
+ * with the write path across refreshes and respect their size limit, against an embedded H2 database in MySQL mode.
+ */
+public class TestDataCacheTest {
+
+    private ConnectionPool pool;
+
+    @After
+    public void closePool() {
+        pool.close();
+    }
+
+    @Test
+    public void servesPreloadedTablesWithoutQueries() throws Exception {
+        pool = TestDatabase.create(50, 2);
+        DatabaseReader reader = new DatabaseReader(pool);
+        String[][] fromDatabase = reader.readTable("TestCases");
+        reader.preload(1000, 0, "TestCases", "TestData");
+
+        long borrowsBefore = pool.getBorrowCount();
+        for (int i = 1; i <= 50; i++) {
+            assertEquals("Stock" + i, reader.getValue("TestData", "TestCase" + i, "stockname"));
+            assertEquals("method" + i, reader.getValue("TestCases", "TestCase" + i, "AssociatedMethod"));
+        }
+        assertEquals(null, reader.getValue("TestData", "TestCase1", "OpenPrice"));
+        assertEquals("", reader.getValue("TestData", "TestCase51", "stockname"));
+        assertArrayEquals(fromDatabase, reader.readTable("TestCases"));
+        assertEquals(0, pool.getBorrowCount() - borrowsBefore);
+    }
+
+    @Test
+    public void keepsWrittenValuesAcrossRefreshes() throws Exception {
+        pool = TestDatabase.create(3, 2);
+        DatabaseReader reader = new DatabaseReader(pool);
+        reader.preload(1000, 0, "TestData");
+        WriteBehindBuffer buffer = new WriteBehindBuffer(reader, "TestData", 100, 60000);
+
+        reader.updateValue("TestData", "TestCase1", "OpenPrice", "187.70");
+        buffer.update("TestCase2", "HighPrice", "190.10");
+        // Visible before the buffer has written it
+        assertEquals("190.10", reader.getValue("TestData", "TestCase2", "HighPrice"));
+
+        // Changed by someone else, picked up by the refresh
+        try (Connection conn = pool.getConnection(); Statement statement = conn.createStatement()) {
+            statement.executeUpdate("UPDATE TestData SET stockname = 'Apple' WHERE TestCaseName = 'TestCase3'");
+        }
+        assertEquals("Stock3", reader.getValue("TestData", "TestCase3", "stockname"));
+        reader.getCache().refresh();
+        assertEquals("Apple", reader.getValue("TestData", "TestCase3", "stockname"));
+        assertEquals("187.70", reader.getValue("TestData", "TestCase1", "OpenPrice"));
+        assertEquals("190.10", reader.getValue("TestData", "TestCase2", "HighPrice"));
+
+        buffer.close();
+        reader.getCache().refresh();
+        assertEquals("190.10", reader.getValue("TestData", "TestCase2", "HighPrice"));
+    }
+
+    @Test
+    public void neverShowsAReloadWithoutTheWrittenValues() throws Exception {
+        pool = TestDatabase.create(20, 4);
+        DatabaseReader reader = new DatabaseReader(pool);
+        reader.preload(1000, 0, "TestData");
+        WriteBehindBuffer buffer = new WriteBehindBuffer(reader, "TestData", 1000, 60000);
+        buffer.update("TestCase1", "HighPrice", "190.10");
+
+        AtomicBoolean reloading = new AtomicBoolean(true);
+        Thread refresher = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                reader.getCache().refresh();
+            }
+            reloading.set(false);
+        });
+        refresher.start();
+        while (reloading.get()) {
+            assertEquals("190.10", reader.getValue("TestData", "TestCase1", "HighPrice"));
+        }
+        refresher.join();
+        buffer.close();
+    }
+
+    @Test
+    public void forgetsWrittenValuesOnceTheyAreInTheDatabase() throws Exception {
+        pool = TestDatabase.create(3, 2);
+        DatabaseReader reader = new DatabaseReader(pool);
+        reader.preload(1000, 0, "TestData");
+        WriteBehindBuffer buffer = new WriteBehindBuffer(reader, "TestData", 100, 60000);
+
+        reader.updateValue("TestData", "TestCase1", "OpenPrice", "187.70");
+        assertEquals(0, reader.getCache().getPendingWrites("TestData"));
+        buffer.update("TestCase2", "HighPrice", "190.10");
+        buffer.update("TestCase3", "LowPrice", "185.00");
+        assertEquals(2, reader.getCache().getPendingWrites("TestData"));
+        buffer.flush();
+        assertEquals(0, reader.getCache().getPendingWrites("TestData"));
+
+        reader.getCache().refresh();
+        assertEquals("187.70", reader.getValue("TestData", "TestCase1", "OpenPrice"));
+        assertEquals("190.10", reader.getValue("TestData", "TestCase2", "HighPrice"));
+        buffer.close();
+    }
+
+    @Test
+    public void matchesTestCaseNamesIgnoringCase() throws Exception {
+        pool = TestDatabase.create(3, 2);
+        DatabaseReader reader = new DatabaseReader(pool);
+        reader.preload(1000, 0, "TestData");
+        long borrowsBefore = pool.getBorrowCount();
+        assertEquals("Stock2", reader.getValue("TestData", "testcase2", "stockname"));
+        reader.updateValue("TestData", "TESTCASE2", "HighPrice", "190.10");
+        assertEquals("190.10", reader.getValue("TestData", "TestCase2", "HighPrice"));
+        // Only the update itself went to the database
+        assertEquals(1, pool.getBorrowCount() - borrowsBefore);
+    }
+
+    @Test
+    public void readsThroughRowsBeyondTheSizeLimit() throws Exception {
+        pool = TestDatabase.create(5, 2);
+        DatabaseReader reader = new DatabaseReader(pool);
+        reader.preload(2, 0, "TestData");
+        assertEquals(2, reader.getCache().getCachedRows("TestData"));
+
+        long borrowsBefore = pool.getBorrowCount();
+        assertEquals("Stock1", reader.getValue("TestData", "TestCase1", "stockname"));
+        assertEquals(0, pool.getBorrowCount() - borrowsBefore);
+        assertEquals("Stock5", reader.getValue("TestData", "TestCase5", "stockname"));
+        assertEquals(1, pool.getBorrowCount() - borrowsBefore);
+        // The table is full, so the row is not kept
+        assertEquals("Stock5", reader.getValue("TestData", "TestCase5", "stockname"));
+        assertEquals(2, pool.getBorrowCount() - borrowsBefore);
+        assertEquals(5, reader.readTable("TestData").length);
+    }
+
+    @Test
+    public void refreshesOnAnInterval() throws Exception {
+        pool = TestDatabase.create(1, 2);
+        DatabaseReader reader = new DatabaseReader(pool);
+        reader.preload(1000, 20, "TestData");
+        try (Connection conn = pool.getConnection(); Statement statement = conn.createStatement()) {
+            statement.executeUpdate("UPDATE TestData SET stockname = 'Tesla' WHERE TestCaseName = 'TestCase1'");
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!"Tesla".equals(reader.getValue("TestData", "TestCase1", "stockname"))) {
+            assertTrue("cache was not refreshed", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        reader.getCache().close();
+    }
+}
@@ -0,0 +1,111 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import testcases.TestMethodRegistry;
+
+/**
+ * TestMethodRegistryTest verifies that test methods are resolved once by name, dispatched to the target
+ * and that unknown method names in the TestCases table and overloaded test methods are rejected up front.
+ */
+public class TestMethodRegistryTest {
+
+    /**
+     * A target with two test methods and methods of other shapes that must be ignored.
+     */
+    public static class Target {
+        final List<String> calls = new ArrayList<>();
+
+        public boolean passing(String testCaseName) {
+            calls.add("passing:" + testCaseName);
+            return true;
+        }
+
+        public boolean failing(String testCaseName) {
+            throw new IllegalStateException(testCaseName + " failed");
+        }
+
+        public void captureAndSaveScreenshot(String screenshotName, boolean passed) {
+        }
+
+        public String describe(String testCaseName) {
+            return testCaseName;
+        }
+    }
+
+    @Test
+    public void resolvesOnlyTestMethods() {
+        TestMethodRegistry registry = new TestMethodRegistry(new Target());
+        assertEquals("[failing, passing]", new TreeSet<>(registry.getMethodNames()).toString());
+    }
+
+    @Test
+    public void dispatchesByName() throws Throwable {
+        Target target = new Target();
+        TestMethodRegistry registry = new TestMethodRegistry(target);
+        assertTrue(registry.invoke("passing", "TestCase1"));
+        assertTrue(registry.invoke("passing", "TestCase2"));
+        assertEquals("[passing:TestCase1, passing:TestCase2]", target.calls.toString());
+        try {
+            registry.invoke("failing", "TestCase3");
+            fail("exception of the test method was not passed on");
+        } catch (IllegalStateException e) {
+            assertEquals("TestCase3 failed", e.getMessage());
+        }
+        try {
+            registry.invoke("missing", "TestCase4");
+            fail("unknown method was dispatched");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown test method: missing", e.getMessage());
+        }
+    }
+
+    @Test
+    public void rejectsUnknownMethodsInTestCases() {
+        TestMethodRegistry registry = new TestMethodRegistry(new Target());
+        registry.validate(new String[][] { { "1", "TestCase1", "passing", "" }, { "2", "TestCase2", "failing", null } });
+        try {
+            registry.validate(new String[][] { { "1", "TestCase1", "passing", "pasing" }, { "2", "TestCase2", "method1" } });
+            fail("unknown methods were accepted");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown test methods in TestCases: [TestCase1.pasing, TestCase2.method1]", e.getMessage());
+        }
+    }
+
+    /**
+     * A target whose test method has an overload a TestCases row could not be told apart from.
+     */
+    public static class OverloadedTarget {
+        public boolean search(String testCaseName) {
+            return true;
+        }
+
+        public boolean search(String testCaseName, int retries) {
+            return true;
+        }
+    }
+
+    @Test
+    public void rejectsOverloadedTestMethods() {
+        try {
+            new TestMethodRegistry(new OverloadedTarget());
+            fail("an overloaded test method was accepted");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("search"));
+        }
+    }
+
+    @Test
+    public void acceptsNamesKnownToAnotherDispatcher() {
+        TestMethodRegistry registry = new TestMethodRegistry(new Target());
+        registry.validate(new String[][] { { "1", "TestCase1", "passing", "scenario(x=1)" } }, name -> name.startsWith("scenario"));
+    }
+}
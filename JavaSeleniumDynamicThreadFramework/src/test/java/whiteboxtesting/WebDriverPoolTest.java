@@ -0,0 +1,202 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.WebDriver;
+
+import base.WebDriverPool;
+import stubs.StubWebDriver;
+
+/**
+ * WebDriverPoolTest verifies session reuse, health checks, reuse caps, idle eviction, background openings
+ * and the session limit of the WebDriverPool against stub drivers.
+ */
+public class WebDriverPoolTest {
+
+    private final List<StubWebDriver> opened = new ArrayList<>();
+    private WebDriverPool pool;
+
+    private WebDriverPool pool(int maxSessions, int maxReuses, long maxIdleMillis) {
+        pool = new WebDriverPool(() -> {
+            StubWebDriver driver = new StubWebDriver();
+            opened.add(driver);
+            return driver;
+        }, maxSessions, maxReuses, maxIdleMillis);
+        return pool;
+    }
+
+    @After
+    public void closePool() {
+        pool.close();
+    }
+
+    @Test
+    public void reusesAndResetsReturnedSessions() throws InterruptedException {
+        pool(2, 10, 60000);
+        WebDriver first = pool.borrow();
+        first.get("https://www.google.com");
+        pool.returnDriver(first);
+        WebDriver second = pool.borrow();
+        assertSame(first, second);
+        assertEquals("about:blank", second.getCurrentUrl());
+        assertEquals(1, ((StubWebDriver) second).cookieResets.get());
+        assertEquals(1, pool.getCreatedCount());
+    }
+
+    @Test
+    public void replacesUnhealthySessionsOnBorrow() throws InterruptedException {
+        pool(2, 10, 60000);
+        WebDriver first = pool.borrow();
+        pool.returnDriver(first);
+        ((StubWebDriver) first).breakSession();
+        WebDriver second = pool.borrow();
+        assertNotSame(first, second);
+        assertTrue(((StubWebDriver) first).isQuit());
+    }
+
+    @Test
+    public void retiresSessionsAfterMaxReuses() throws InterruptedException {
+        pool(1, 2, 60000);
+        WebDriver first = pool.borrow();
+        pool.returnDriver(first);
+        assertSame(first, pool.borrow());
+        pool.returnDriver(first);
+        assertTrue(((StubWebDriver) first).isQuit());
+        assertNotSame(first, pool.borrow());
+    }
+
+    @Test
+    public void evictsIdleSessions() throws InterruptedException {
+        pool(2, 10, 50);
+        WebDriver first = pool.borrow();
+        pool.returnDriver(first);
+        assertEquals(1, pool.getIdleCount());
+        Thread.sleep(100);
+        pool.evictIdle();
+        assertEquals(0, pool.getIdleCount());
+        assertTrue(((StubWebDriver) first).isQuit());
+    }
+
+    @Test
+    public void boundsBorrowedSessions() throws InterruptedException {
+        pool(1, 10, 60000);
+        WebDriver first = pool.borrow();
+        Thread borrower = new Thread(() -> {
+            try {
+                pool.returnDriver(pool.borrow());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        borrower.start();
+        borrower.join(200);
+        assertTrue(borrower.isAlive());
+        pool.returnDriver(first);
+        borrower.join(1000);
+        assertEquals(1, pool.getCreatedCount());
+    }
+
+    @Test
+    public void prewarmsSessionsInParallelAndKeepsReserve() throws InterruptedException {
+        // Every prewarmed opening waits until all four are in progress, which only happens if they run in parallel
+        CountDownLatch allOpening = new CountDownLatch(4);
+        AtomicInteger serialOpenings = new AtomicInteger();
+        pool = new WebDriverPool(() -> {
+            allOpening.countDown();
+            try {
+                if (!allOpening.await(5, TimeUnit.SECONDS)) {
+                    serialOpenings.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new StubWebDriver();
+        }, 8, 10, 60000);
+        pool.prewarm(4);
+        List<WebDriver> drivers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            drivers.add(pool.borrow());
+        }
+        assertEquals(0, serialOpenings.get());
+        assertEquals(4, pool.getCreatedCount());
+
+        pool.setReserve(2);
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((pool.getIdleCount() < 2 || pool.getOpeningCount() > 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(6, pool.getCreatedCount());
+        for (WebDriver driver : drivers) {
+            pool.returnDriver(driver);
+        }
+    }
+
+    @Test
+    public void countsTheReserveAgainstTheGridSlots() throws InterruptedException {
+        pool(8, 10, 60000).setGridCapacity(3);
+        pool.setReserve(2);
+        List<WebDriver> drivers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            drivers.add(pool.borrow());
+            Thread.sleep(50);
+            assertTrue(pool.getSessionCount() + " sessions on 3 slots", pool.getSessionCount() <= 3);
+        }
+        Thread.sleep(100);
+        // All slots run tests, so no session is kept in reserve
+        assertEquals(3, pool.getSessionCount());
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(3, pool.getCreatedCount());
+        for (WebDriver driver : drivers) {
+            pool.returnDriver(driver);
+        }
+    }
+
+    @Test
+    public void failsFastWhenItsOpeningFails() throws InterruptedException {
+        SessionNotCreatedException gridFull = new SessionNotCreatedException("grid full");
+        AtomicInteger attempts = new AtomicInteger();
+        pool = new WebDriverPool(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                sleep(200);
+                throw gridFull;
+            }
+            return new StubWebDriver();
+        }, 2, 10, 60000);
+        pool.prewarm(1);
+        long start = System.currentTimeMillis();
+        try {
+            pool.borrow();
+            fail("the borrower waits for the failed opening");
+        } catch (SessionNotCreatedException e) {
+            assertSame(gridFull, e);
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(0, pool.getSessionCount());
+        // The next borrower opens its own session
+        pool.returnDriver(pool.borrow());
+        assertEquals(1, pool.getCreatedCount());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package whiteboxtesting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import database.ConnectionPool;
+import database.DatabaseReader;
+import database.WriteBehindBuffer;
+import stubs.TestDatabase;
+
+/**
+ * WriteBehindBufferTest verifies that buffered test-data updates are merged, written in batches
+ * and never lost, against an embedded H2 database in MySQL mode.
+ */
+public class WriteBehindBufferTest {
+
+    private ConnectionPool pool;
+
+    @After
+    public void closePool() {
+        pool.close();
+    }
+
+    @Test
+    public void mergesUpdatesPerTestCaseUntilFlushed() throws Exception {
+        pool = TestDatabase.create(2, 2);
+        DatabaseReader reader = new DatabaseReader(pool);
+        WriteBehindBuffer buffer = new WriteBehindBuffer(reader, "TestData", 100, 60000);
+        buffer.update("TestCase1", "OpenPrice", "100");
+        buffer.update("TestCase1", "OpenPrice", "101");
+        buffer.update("TestCase1", "HighPrice", "105");
+        buffer.update("TestCase2", "LowPrice", "90");
+        assertEquals(2, buffer.getPendingTestCases());
+        assertEquals(null, reader.getValue("TestData", "TestCase1", "OpenPrice"));
+
+        long borrowsBefore = pool.getBorrowCount();
+        buffer.flush();
+        // One statement per distinct column set
+        assertEquals(2, pool.getBorrowCount() - borrowsBefore);
+        assertEquals(0, buffer.getPendingTestCases());
+        assertEquals("101", reader.getValue("TestData", "TestCase1", "OpenPrice"));
+        assertEquals("105", reader.getValue("TestData", "TestCase1", "HighPrice"));
+        assertEquals("90", reader.getValue("TestData", "TestCase2", "LowPrice"));
+        buffer.close();
+    }
+
+    @Test
+    public void flushesInBackgroundOnceThresholdIsReached() throws Exception {
+        pool = TestDatabase.create(5, 2);
+        DatabaseReader reader = new DatabaseReader(pool);
+        WriteBehindBuffer buffer = new WriteBehindBuffer(reader, "TestData", 5, 60000);
+        for (int i = 1; i <= 5; i++) {
+            buffer.update("TestCase" + i, "OpenPrice", "1" + i);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        for (int i = 1; i <= 5; i++) {
+            while (!("1" + i).equals(reader.getValue("TestData", "TestCase" + i, "OpenPrice"))) {
+                assertTrue("threshold flush did not happen", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+        }
+        buffer.close();
+    }
+
+    @Test
+    public void closeWritesEveryConcurrentUpdate() throws Exception {
+        pool = TestDatabase.create(16, 4);
+        DatabaseReader reader = new DatabaseReader(pool);
+        WriteBehindBuffer buffer = new WriteBehindBuffer(reader, "TestData", 7, 5);
+        Thread[] writers = new Thread[16];
+        for (int t = 0; t < writers.length; t++) {
+            String testcase = "TestCase" + (t + 1);
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    buffer.update(testcase, "OpenPrice", String.valueOf(i));
+                    buffer.update(testcase, "LowPrice", testcase);
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        buffer.close();
+        assertEquals(0, buffer.getPendingTestCases());
+        for (int t = 1; t <= 16; t++) {
+            assertEquals("49", reader.getValue("TestData", "TestCase" + t, "OpenPrice"));
+            assertEquals("TestCase" + t, reader.getValue("TestData", "TestCase" + t, "LowPrice"));
+        }
+    }
+
+    @Test
+    public void keepsValidColumnsWhenBatchFails() throws Exception {
+        pool = TestDatabase.create(1, 2);
+        DatabaseReader reader = new DatabaseReader(pool);
+        WriteBehindBuffer buffer = new WriteBehindBuffer(reader, "TestData", 100, 60000);
+        buffer.update("TestCase1", "OpenPrice", "120");
+        buffer.update("TestCase1", "NoSuchColumn", "x");
+        buffer.close();
+        assertEquals("120", reader.getValue("TestData", "TestCase1", "OpenPrice"));
+    }
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import database.ConnectionPool;
+import database.DatabaseReader;
+import stubs.TestDatabase;
+
+/**
+ * DatabaseReaderBenchmark measures test data lookups against an in-memory H2 database in MySQL mode:
+ * a lookup that queries the database through the connection pool, and the same lookup served
+ * by the preloaded cache, as during a run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatabaseReaderBenchmark {
+
+    private static final int TEST_CASES = 1000;
+
+    private ConnectionPool pool;
+    private DatabaseReader uncached;
+    private DatabaseReader cached;
+    private String[] testCaseNames = new String[TEST_CASES];
+    private int next;
+
+    @Setup
+    public void setUp() throws SQLException {
+        pool = TestDatabase.create(TEST_CASES, 4);
+        uncached = new DatabaseReader(pool);
+        cached = new DatabaseReader(pool);
+        cached.preload("TestCases", "TestData");
+        for (int i = 0; i < TEST_CASES; i++) {
+            testCaseNames[i] = "TestCase" + (i + 1);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        cached.getCache().close();
+        pool.close();
+    }
+
+    private String nextTestCase() {
+        next = (next + 1) % TEST_CASES;
+        return testCaseNames[next];
+    }
+
+    @Benchmark
+    public String getValueFromDatabase() {
+        return uncached.getValue("TestData", nextTestCase(), "stockname");
+    }
+
+    @Benchmark
+    public String getValueFromCache() {
+        return cached.getValue("TestData", nextTestCase(), "stockname");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String[][] readTableFromCache() {
+        return cached.readTable("TestCases");
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.AdaptiveConcurrencyLimiter;
+import core.DynamicThreadManager;
+
+/**
+ * DynamicThreadManagerBenchmark measures the latency the scheduler adds before a test starts:
+ * from submitTask until the task runs, through the grid slot queue and the adaptive limiter,
+ * and the admission itself on an uncontended limiter. The hub URL points at a closed local port,
+ * so the scheduler keeps its initial slot count without a grid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dgrid.hub.url=http://127.0.0.1:9")
+public class DynamicThreadManagerBenchmark {
+
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @Setup
+    public void setUp() {
+        limiter = new AdaptiveConcurrencyLimiter(4, 1, 256, () -> false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        DynamicThreadManager.shutdown();
+    }
+
+    @Benchmark
+    public void submitUntilStarted() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        DynamicThreadManager.submitTask("TestCase1", "method1", started::countDown);
+        started.await();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void admitAndRelease() throws InterruptedException {
+        limiter.acquire();
+        limiter.release();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void recordLatency() {
+        limiter.onLatency("method1", 1000);
+    }
+}
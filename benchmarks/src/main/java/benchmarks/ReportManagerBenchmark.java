@@ -0,0 +1,110 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import reporting.ReportManager;
+
+/**
+ * ReportManagerBenchmark measures reporting: adding a result, which records it and streams its row to the
+ * report file in submission order, alone and with 64 threads reserving rows and adding results at once,
+ * and finalizing a report of a given size.
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReportManagerBenchmark {
+
+    /**
+     * A report open for the whole iteration, receiving every added result.
+     */
+    @State(Scope.Benchmark)
+    public static class OpenReport {
+        Path file;
+
+        @Setup(Level.Iteration)
+        public void open() throws IOException {
+            file = Files.createTempFile("report", ".html");
+            ReportManager.initReport(file.toString());
+        }
+
+        @TearDown(Level.Iteration)
+        public void close() throws IOException {
+            ReportManager.finalizeReport();
+            ReportManager.saveReport(file.toString());
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * A report holding a number of results, created anew before each finalization.
+     */
+    @State(Scope.Thread)
+    public static class FilledReport {
+        @Param({ "100", "10000" })
+        int results;
+        Path file;
+
+        @Setup(Level.Invocation)
+        public void fill() throws IOException {
+            file = Files.createTempFile("report", ".html");
+            ReportManager.initReport(file.toString());
+            for (int i = 0; i < results; i++) {
+                ReportManager.addTestResult("TestCase" + (i % 20), "method" + i, i % 10 != 0, 1, "No Screenshot");
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void delete() throws IOException {
+            ReportManager.saveReport(file.toString());
+            Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void addTestResult(OpenReport report) {
+        ReportManager.addTestResult("TestCase1", "method1", true, 1, "No Screenshot");
+    }
+
+    /**
+     * Each of 64 threads reserves and adds 2000 results per iteration, so the report holds a bounded
+     * number of results however fast they are added.
+     */
+    @Benchmark
+    @Threads(64)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10, batchSize = 2000)
+    @Warmup(iterations = 5, batchSize = 2000)
+    public void reserveRowAndAddTestResultContended(OpenReport report) {
+        long row = ReportManager.reserveRow();
+        ReportManager.addTestResult(row, "TestCase1", "method1", true, 1, null);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 20, batchSize = 1)
+    public void finalizeReport(FilledReport report) {
+        ReportManager.finalizeReport();
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.SystemInfoUtil;
+import oshi.SystemInfo;
+import oshi.hardware.CentralProcessor;
+import oshi.hardware.GlobalMemory;
+
+/**
+ * SystemInfoUtilBenchmark measures host load sampling: reading the published snapshot, which is all
+ * a test thread pays, and the OSHI calls the background sampler makes once per interval.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SystemInfoUtilBenchmark {
+
+    private CentralProcessor processor;
+    private GlobalMemory memory;
+    private long[] previousTicks;
+
+    @Setup
+    public void setUp() {
+        SystemInfo systemInfo = new SystemInfo();
+        processor = systemInfo.getHardware().getProcessor();
+        memory = systemInfo.getHardware().getMemory();
+        previousTicks = processor.getSystemCpuLoadTicks();
+    }
+
+    @Benchmark
+    public double readSmoothedCpuLoad() {
+        return SystemInfoUtil.getSmoothedCpuLoad();
+    }
+
+    @Benchmark
+    public SystemInfoUtil.Snapshot readSnapshot() {
+        return SystemInfoUtil.getSnapshot();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double sampleFromOshi() {
+        // What the sampler thread does once per -Dsysteminfo.sample.interval.ms
+        double cpuLoad = processor.getSystemCpuLoadBetweenTicks(previousTicks);
+        previousTicks = processor.getSystemCpuLoadTicks();
+        return cpuLoad + (double) memory.getAvailable() / memory.getTotal();
+    }
+}
@@ -0,0 +1,124 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import database.ConnectionPool;
+import database.DatabaseReader;
+import database.WriteBehindBuffer;
+import stubs.StubWebDriver;
+import stubs.TestDatabase;
+import testcases.ScenarioInvocation;
+import testcases.ScenarioLibrary;
+import testcases.TestCaseExecutor;
+import testcases.TestMethodRegistry;
+
+/**
+ * TestCaseExecutorBenchmark measures what it costs the framework to get from the name in a TestCases row
+ * to running the test: dispatching a hand-written test method through the method-handle registry,
+ * compared with the reflective lookup it replaced, resolving a scenario cell, and running a compiled scenario
+ * against the stub WebDriver, where every browser command answers at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TestCaseExecutorBenchmark {
+
+    // The stock price scenario without the waits, which only measure the page
+    private static final String SCENARIO = String.join("\n",
+            "scenario stockPriceSearch",
+            "    open https://www.google.com",
+            "    type name=q \"${stockname} Stock Price\"",
+            "    enter name=q",
+            "    storeTable .CYGKSb Price");
+
+    /**
+     * Test methods that do no work.
+     */
+    public static class EmptyTestMethods {
+        public boolean method1(String screenshotName) {
+            return screenshotName != null;
+        }
+
+        public boolean method20(String screenshotName) {
+            return screenshotName != null;
+        }
+    }
+
+    private String methodName = "method20";
+    private String testCaseName = "TestCase1";
+    private TestMethodRegistry registry;
+    private ConnectionPool pool;
+    private DatabaseReader reader;
+    private WriteBehindBuffer writer;
+    private StubWebDriver driver;
+    private ScenarioInvocation scenario;
+
+    @Setup
+    public void setUp() throws SQLException, IOException {
+        registry = new TestMethodRegistry(new EmptyTestMethods());
+        pool = TestDatabase.create(1, 2);
+        reader = new DatabaseReader(pool);
+        reader.preload("TestData");
+        writer = new WriteBehindBuffer(reader, "TestData", 1000, 1000);
+        driver = new StubWebDriver();
+        driver.setScriptHandler(script -> Arrays.asList(
+                Arrays.asList("Open", "187.70"), Arrays.asList("High", "189.10"), Arrays.asList("Low", "186.20")));
+        scenario = new ScenarioLibrary(new StringReader(SCENARIO)).resolve("stockPriceSearch");
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        writer.close();
+        reader.getCache().close();
+        pool.close();
+    }
+
+    @Benchmark
+    public boolean methodHandleRegistry() throws Throwable {
+        return registry.invoke(methodName, testCaseName);
+    }
+
+    @Benchmark
+    public boolean reflectionPerCall() throws Exception {
+        // The lookup TestCaseExecutor did on every call before the registry
+        Object[] args = { testCaseName };
+        Class<?> c = Class.forName(EmptyTestMethods.class.getName());
+        Object obj = c.getDeclaredConstructor().newInstance();
+        Class<?>[] argTypes = new Class[args.length];
+        for (int i = 0; i < args.length; i++) {
+            argTypes[i] = args[i].getClass();
+        }
+        Method method = c.getDeclaredMethod(methodName, argTypes);
+        return (boolean) method.invoke(obj, args);
+    }
+
+    @Benchmark
+    public ScenarioInvocation resolveScenarioCell() {
+        return TestCaseExecutor.getScenarios().resolve("method1");
+    }
+
+    @Benchmark
+    public boolean runScenarioOnStubDriver() {
+        return scenario.run(driver, testCaseName, reader, writer);
+    }
+}
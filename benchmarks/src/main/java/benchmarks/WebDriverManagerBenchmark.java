@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.WebDriver;
+
+import base.WebDriverManager;
+import base.WebDriverPool;
+import stubs.StubWebDriver;
+
+/**
+ * WebDriverManagerBenchmark measures how WebDriverManager scales when many test threads take and hand back
+ * their drivers at once: borrowing a session and returning it to the pool, as after a passed test,
+ * and borrowing one and quitting it, as after a failed test. The pool opens stub drivers, so no grid is needed
+ * and only the manager's and the pool's own synchronization is measured. Compare the score with -t 1.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class WebDriverManagerBenchmark {
+
+    @Setup
+    public void setUp() {
+        WebDriverManager.usePool(new WebDriverPool(StubWebDriver::new, 64, 20, 60000));
+    }
+
+    @TearDown
+    public void tearDown() {
+        WebDriverManager.shutdown();
+    }
+
+    @Benchmark
+    public WebDriver getAndReleaseDriver() {
+        WebDriver driver = WebDriverManager.getDriver();
+        WebDriverManager.releaseDriver();
+        return driver;
+    }
+
+    @Benchmark
+    public WebDriver getAndQuitDriver() {
+        WebDriver driver = WebDriverManager.getDriver();
+        WebDriverManager.quitDriver();
+        return driver;
+    }
+}